@@ -2,6 +2,8 @@
 from org.meteothink.data.meteodata import MeteoDataType
 from org.meteothink.ndarray import DataType
 from org.meteothink.data.meteodata import Attribute
+from org.meteothink.data.meteodata import TimeAxis, TimeAggregationDataInfo, MeteoDataInfo
+from org.meteothink.data.meteodata.netcdf import NCUtil
 from dimvariable import DimVariable, TDimVariable
 import numjy as np
 from numjy.core.dimarray import DimArray
@@ -11,6 +13,7 @@ from dataframejy.dataframe import DataFrame
 import numjy.miutil as miutil
 
 import datetime
+import bisect
 
 from java.util import Calendar
 from java.lang import Float
@@ -27,11 +30,25 @@ class DimDataFile(object):
             self.filename = dataset.getFileName()
             self.nvar = dataset.getDataInfo().getVariableNum()
             self.fill_value = dataset.getMissingValue()
-            self.proj = dataset.getCRS()
+        self._proj = None
         self.ncfile = ncfile
         self.arldata = arldata
         self.bufrdata = bufrdata
         
+    @property
+    def proj(self):
+        '''
+        Get projection - got on first access, so a header only opened file is not resolved 
+        until it is needed.
+        '''
+        if self._proj is None and not self.dataset is None:
+            self._proj = self.dataset.getCRS()
+        return self._proj
+        
+    @proj.setter
+    def proj(self, value):
+        self._proj = value
+        
     def __getitem__(self, key):
         if isinstance(key, basestring):
             vnames = self.dataset.getDataInfo().getVariableNames()
@@ -238,10 +255,28 @@ class DimDataFile(object):
         
         :returns: (*datetime*) The time
         '''
-        t = self.dataset.getDataInfo().getTimes().get(idx)     
+        t = self.dataset.getDataInfo().getTime(idx)
         t = miutil.pydate(t)
         return t
         
+    def timeaxis(self):
+        '''
+        Get time axis.
+        
+        :returns: (*TimeAxis*) Time axis - cached epoch milliseconds of the times.
+        '''
+        return self.dataset.getDataInfo().getTimeAxis()
+        
+    def timeindex(self, t):
+        '''
+        Get the index of the nearest time.
+        
+        :param t: (*datetime*) Given time
+        
+        :returns: (*int*) Time index
+        '''
+        return self.timeaxis().nearestIndex(miutil.jdate(t))
+        
     def gettimes(self):
         '''
         Get time list.
@@ -326,7 +361,7 @@ class DimDataFile(object):
         else:
             return datatype
  
-    def addvar(self, varname, datatype, dims, group=None):
+    def addvar(self, varname, datatype, dims, group=None, chunks=None):
         '''
         Add a variable.
         
@@ -334,9 +369,17 @@ class DimDataFile(object):
         :param datatype: (*string*) Data type [string | int | long | float | double |
             char].
         :param dims: (*list*) Dimensions.        
+        :param chunks: (*list or string*) Chunk shape of netCDF4 file, or data access pattern to derive
+            the chunk shape: ``map``, ``series`` or ``balanced``. Default is ``None``.
         '''
         dt = self.__getdatatype(datatype)        
-        return DimVariable(ncvariable=self.ncfile.addVariable(group, varname, dt, dims))
+        ncvariable = self.ncfile.addVariable(group, varname, dt, dims)
+        if not chunks is None:
+            if isinstance(chunks, basestring):
+                NCUtil.setChunkShape(ncvariable, chunks)
+            else:
+                NCUtil.setChunkShape(ncvariable, jarray.array(chunks, 'i'))
+        return DimVariable(ncvariable=ncvariable)
         
     def create(self):
         '''
@@ -589,40 +632,92 @@ class DimDataFile(object):
 class DimDataFiles(list):
     
     # dataset must be list of DimDataFile
-    def __init__(self, dataset=[]):
-        list.__init__([])
-        ndataset = []
-        ftimes = []
-        for ds in dataset:
-            if len(ndataset) == 0:
-                ndataset.append(ds)
-                ftimes.append(ds.gettime(0))
-            else:
-                idx = len(ndataset)
-                ftime = ds.gettime(0)
-                for i in range(len(ndataset)):                    
-                    if ftime < ftimes[i]:
-                        idx = i
-                        break
-                ndataset.insert(idx, ds)
-                ftimes.insert(idx, ftime)
-                
-        self.extend(ndataset)
-        self.times = []
+    # datainfo is the TimeAggregationDataInfo already joining the data files (by addfiles function)
+    def __init__(self, dataset=[], datainfo=None):
+        list.__init__(self)
         self.tnums = []
+        self.tstarts = []
         self.tnum = 0
-        for ds in ndataset:
-            tts = ds.gettimes()
-            self.times.extend(tts)
-            self.tnums.append(len(tts))
-            self.tnum += len(tts)
+        self._ftimes = []
+        self._taxis = None
+        self._times = None
+        self._datainfo = datainfo
+        self._joinfile = None
+        # Data files not joined by the Java data info yet
+        self._unjoined = []
+        for ds in dataset:
+            self.__insert(ds, datainfo is None)
+            
+    def __insert(self, ddf, join=True):
+        # Insert by the first time, the start time indices after it are shifted
+        taxis = ddf.timeaxis()
+        n = taxis.size()
+        idx = bisect.bisect_right(self._ftimes, taxis.getMillis(0))
+        list.insert(self, idx, ddf)
+        self._ftimes.insert(idx, taxis.getMillis(0))
+        self.tnums.insert(idx, n)
+        self.tstarts.insert(idx, self.tstarts[idx] if idx < len(self.tstarts) else self.tnum)
+        for i in range(idx + 1, len(self.tstarts)):
+            self.tstarts[i] += n
+        self.tnum += n
+        self._taxis = None
+        self._times = None
+        if join:
+            self._unjoined.append(ddf)
         
     def append(self, ddf):
-        self.append(ddf)
-        tts = ddf.gettimes()
-        self.times.extend(tts)
-        self.tnums.append(len(tts))
-        self.tnum += len(tts)
+        '''
+        Append a data file. It is added to the existing joined data files when they are read.
+        
+        :param ddf: (*DimDataFile*) The data file.
+        '''
+        self.__insert(ddf)
+        
+    @property
+    def datainfo(self):
+        '''
+        Get the Java data info joining the data files along time dimension, the variables are 
+        read by it. ``None`` if there is no data file.
+        '''
+        if len(self._unjoined) > 0:
+            dinfos = [ds.dataset.getDataInfo() for ds in self._unjoined]
+            if self._datainfo is None:
+                self._datainfo = TimeAggregationDataInfo()
+                self._datainfo.setDataInfos(dinfos)
+            else:
+                self._datainfo.addDataInfos(dinfos)
+            self._unjoined = []
+            self._joinfile = None
+        return self._datainfo
+        
+    @property
+    def joinfile(self):
+        '''
+        Get the joined data file.
+        '''
+        if self._joinfile is None and not self.datainfo is None:
+            meteodata = MeteoDataInfo()
+            meteodata.setDataInfo(self.datainfo)
+            self._joinfile = DimDataFile(meteodata)
+        return self._joinfile
+        
+    @property
+    def taxis(self):
+        '''
+        Get the joined time axis.
+        '''
+        if self._taxis is None:
+            self._taxis = TimeAxis.concat([ds.timeaxis() for ds in self])
+        return self._taxis
+        
+    @property
+    def times(self):
+        '''
+        Get time list.
+        '''
+        if self._times is None:
+            self._times = [miutil.pydate(t) for t in self.taxis.getTimes()]
+        return self._times
         
     def __getitem__(self, key):
         if isinstance(key, str):
@@ -652,14 +747,7 @@ class DimDataFiles(list):
         """
         if isinstance(t, datetime.datetime):
             t = self.timeindex(t)
-        nn = 0
-        idx = 0
-        for n in self.tnums:
-            nn += n
-            if t < nn:
-                break
-            idx += 1
-        return idx
+        return bisect.bisect_right(self.tstarts, t) - 1
         
     def datafile(self, t):
         """
@@ -682,18 +770,8 @@ class DimDataFiles(list):
         '''
         if isinstance(t, datetime.datetime):
             t = self.timeindex(t)
-        nn = 0
-        dfidx = 0
-        tidx = 0
-        sn = 0
-        for n in self.tnums:
-            nn += n
-            if t < nn:
-                tidx = t - sn
-                break
-            dfidx += 1
-            sn = nn
-        return dfidx, tidx
+        dfidx = bisect.bisect_right(self.tstarts, t) - 1
+        return dfidx, t - self.tstarts[dfidx]
         
     def timeindex(self, t):
         '''
@@ -701,14 +779,9 @@ class DimDataFiles(list):
         
         :param t: (*datetime*) Given time
         
-        :returns: (*int*) Time index
+        :returns: (*int*) Time index - the index of the nearest time
         '''
-        idx = 0
-        for tt in self.times:
-            if t >= tt:
-                break
-            idx += 1
-        return idx
+        return self.taxis.nearestIndex(miutil.jdate(t))
     
     def gettime(self, idx):
         '''
@@ -718,7 +791,7 @@ class DimDataFiles(list):
         
         :returns: (*datetime*) The time
         '''        
-        return self.times[idx]
+        return miutil.pydate(self.taxis.getTime(idx))
         
     def varnames(self):
         '''
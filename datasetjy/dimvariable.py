@@ -374,126 +374,29 @@ class DimVariable(object):
         self.ncvariable.addAttribute(Attribute(attrname, attrvalue))
 
 # Variable in multiple data files (DimDataFiles) - only time dimension is different.
-class TDimVariable():
+# The files are joined along the time dimension by the Java data info of DimDataFiles.
+class TDimVariable(DimVariable):
     
     # variable must be org.meteoinfo.data.meteodata.Variable
     # dataset is DimDataFiles
     def __init__(self, variable, dataset):
-        self.variable = variable
-        self.dataset = dataset
-        self.name = variable.getName()
-        self.datatype = variable.getDataType()        
-        self.ndim = variable.getDimNumber()
-        self.fill_value = variable.getFillValue()
-        self.scale_factor = variable.getScaleFactor()
-        self.add_offset = variable.getAddOffset()
-        dims = variable.getDimensions()
-        tdim = Dimension(DimensionType.T)
-        times = []
-        for t in self.dataset.times:
-            times.append(miutil.date2num(t))
-        tdim.setDimValues(times)
-        dims[0] = tdim
-        self.dims = dims
-        self.tnum = len(times)
+        DimVariable.__init__(self, dataset.datainfo.getVariable(variable.getName()), dataset.joinfile)
+        self.tnum = dataset.tnum
         
     def __getitem__(self, indices):
-        if len(indices) != self.ndim:
-            print 'indices must be ' + str(self.ndim) + ' dimensions!'
-            return None
-        
-        k = indices[0]
-        if isinstance(k, int):
-            sidx = k
-            eidx = k
-            step = 1
-        elif isinstance(k, slice):
-            sidx = 0 if k.start is None else k.start
-            if sidx < 0:
-                sidx = self.tnum + sidx
-            eidx = self.tnum if k.stop is None else k.stop
-            if eidx < 0:
-                eidx = self.tnum + eidx
-            eidx -= 1
-            step = 1 if k.step is None else k.step
-        elif isinstance(k, list):
-            sidx = self.dataset.timeindex(k[0])
-            if len(k) == 1:
-                eidx = sidx
-                step = 1
-            else:
-                eidx = self.dataset.timeindex(k[1])
-                if len(k) == 3:
-                    tt = self.dataset.timeindex(k[0] + k[3])
-                    step = tt - sidx
-                else:
-                    step = 1
-        
-        sfidx = self.dataset.datafileindex(sidx)
-        si = sidx
-        isfirst = True
-        times = []
-        fidx = sfidx
-        aa = None
-        var = None
-        for i in range(sidx, eidx + 1, step):
-            times.append(miutil.date2num(self.dataset.gettime(i)))
-            fidx = self.dataset.datafileindex(i) 
-            if fidx > sfidx:
-                ei = i - step
-                ddf = self.dataset[sfidx]
-                var = ddf[self.name]
-                ii, ssi = self.dataset.dftindex(si)
-                ii, eei = self.dataset.dftindex(ei)
-                eei += 1
-                nindices = list(indices)                
-                nindices[0] = slice(ssi, eei, step)
-                nindices = tuple(nindices)
-                aa = var.__getitem__(nindices)
-                if si == ei:
-                    aa.addtdim(self.dataset.gettime(si))
-                if isfirst:
-                    data = aa
-                    isfirst = False
-                else:
-                    data = np.concatenate([data, aa])
-                si = i
-                sfidx = fidx
-                
-        if si < eidx + 1:            
-            ei = eidx + 1 - step
-            ddf = self.dataset[sfidx]
-            var = ddf[self.name]
-            ii, ssi = self.dataset.dftindex(si)
-            ii, eei = self.dataset.dftindex(ei)
-            eei += 1
-            nindices = list(indices)
-            nindices[0] = slice(ssi, eei, step)
-            nindices = tuple(nindices)
-            aa = var.__getitem__(nindices)
-            if si == ei and eidx != sidx:
-                aa.addtdim(self.dataset.gettime(si))
-            if isfirst:
-                data = aa
-                isfirst = False
-            else:
-                data = np.concatenate([data, aa])
-        
-        if aa is None:
-            sfidx = self.dataset.datafileindex(sidx)
-            ddf = self.dataset[sfidx]
-            var = ddf[self.name]
-            ii, ssi = self.dataset.dftindex(sidx)
-            nindices = list(indices)
-            nindices[0] = slice(ssi, ssi, step)
-            nindices = tuple(nindices)
-            aa = var.__getitem__(nindices)            
-            return aa
-                
-        if isinstance(data, DimArray):
-            return data
-        else:
-            dims = aa.dims
-            dims[0].setDimValues(times)
-            r = DimArray(data, dims, aa.fill_value, aa.proj)
-            return r
\ No newline at end of file
+        # A datetime list of time dimension is a time range: [start], [start, end] or 
+        # [start, end, step] with timedelta step
+        if isinstance(indices, tuple):
+            indices = list(indices)
+            for i in range(len(indices)):
+                k = indices[i]
+                if i < self.ndim and self.dims[i].getDimType() == DimensionType.T and \
+                    isinstance(k, list) and len(k) > 0 and isinstance(k[0], datetime.datetime):
+                    if len(k) == 1:
+                        indices[i] = slice(k[0], k[0])
+                    elif len(k) == 2:
+                        indices[i] = slice(k[0], k[1])
+                    else:
+                        indices[i] = slice(k[0], k[1], k[2])
+            indices = tuple(indices)
+        return DimVariable.__getitem__(self, indices)
@@ -2,11 +2,11 @@
 import os
 import datetime
 
-from org.meteothink.data.meteodata import MeteoDataInfo
+from org.meteothink.data.meteodata import MeteoDataInfo, TimeAggregationDataInfo
 from org.meteothink.ndarray import Dimension, DimensionType, DataType
 from org.meteothink.data.meteodata.arl import ARLDataInfo
 from org.meteothink.data.meteodata.bufr import BufrDataInfo
-from org.meteothink.data.meteodata.netcdf import NetCDFDataInfo
+from org.meteothink.data.meteodata.netcdf import NetCDFDataInfo, NCUtil, NCConverter
 from org.meteothink.math import ArrayUtil
 from ucar.nc2 import NetcdfFileWriter
 
@@ -53,16 +53,38 @@ def __getfilename(fname):
             
 def addfiles(fnames):
     '''
-    Open multiple data files.
+    Open multiple data files. The netCDF, GRIB, HDF and ARL data files are opened in parallel 
+    and only their headers are read, other data files are opened one by one.
     
     :param fnames: (*list of string*) Data file names to be opened.
     
     :returns: (*DimDataFiles*) DimDataFiles object.
     '''
-    dfs = []
+    fns = []
     for fname in fnames:
-        dfs.append(addfile(fname))
-    return DimDataFiles(dfs)
+        fname, isweb = __getfilename(fname.strip())
+        if fname is None or isweb or not os.path.exists(fname):
+            fns = None
+            break
+        if os.path.splitext(fname)[1].lower() in ['.ctl', '.tif', '.awx', '.bil']:
+            fns = None
+            break
+        fns.append(fname)
+        
+    if fns is None or len(fns) == 0:
+        dfs = []
+        for fname in fnames:
+            dfs.append(addfile(fname))
+        return DimDataFiles(dfs)
+    
+    datainfo = TimeAggregationDataInfo()
+    datainfo.readDataInfo(fns)
+    dfs = []
+    for dinfo in datainfo.getDataInfos():
+        meteodata = MeteoDataInfo()
+        meteodata.setDataInfo(dinfo)
+        dfs.append(DimDataFile(meteodata))
+    return DimDataFiles(dfs, datainfo)
           
 def addfile(fname, access='r', dtype='netcdf', keepopen=False, **kwargs):
     """
@@ -73,6 +95,18 @@ def addfile(fname, access='r', dtype='netcdf', keepopen=False, **kwargs):
     :param dtype: (*string*) The data type of the data file. Default is ``netcdf``.
     :param keepopen: (*boolean*) If the file keep open after this function. Default is ``False``. The
         file need to be closed later if ``keepopen`` is ``True``.
+    :param headeronly: (*boolean*) Only read the header of netCDF/GRIB file, the times, projection and 
+        coordinate values are read on first access. Faster for scanning the metadata of many files. 
+        Default is ``False``.
+    :param mmap: (*boolean*) Read the data file by memory mapping or not, used by the data formats
+        supporting it (GrADS, AWX, BIL and MICAPS 131). Use ``addfile_micaps`` for MICAPS files, which
+        are not recognized by this function. Default is ``False``.
+    :param overview: (*boolean*) Read the strided slices of a GeoTiff file from its overviews or not.
+        Default is ``False``.
+    :param version: (*string*) Created netCDF file version: ``netcdf3`` or ``netcdf4``. Default is 
+        ``netcdf3``.
+    :param deflate: (*int*) Deflate level (0 - 9) of created netCDF4 file. Default is 0 - no compression.
+    :param shuffle: (*boolean*) Use shuffle filter of created netCDF4 file or not. Default is ``True``.
     
     :returns: (*DimDataFile*) Opened file object.
     """
@@ -88,18 +122,24 @@ def addfile(fname, access='r', dtype='netcdf', keepopen=False, **kwargs):
         if not os.path.exists(fname):
             raise IOError(fname)
         
+        mmap = kwargs.pop('mmap', False)
         fsufix = os.path.splitext(fname)[1].lower()
         if fsufix == '.ctl':
-            return addfile_grads(fname, False)
+            return addfile_grads(fname, False, mmap)
         elif fsufix == '.tif':
-            return addfile_geotiff(fname, False)
+            return addfile_geotiff(fname, False, kwargs.pop('overview', False))
         elif fsufix == '.awx':
-            return addfile_awx(fname, False)
+            return addfile_awx(fname, False, mmap)
         elif fsufix == '.bil':
-            return addfile_bil(fname, False)
+            return addfile_bil(fname, False, mmap)
         
+        headeronly = kwargs.pop('headeronly', False)
         meteodata = MeteoDataInfo()
-        meteodata.openData(fname, keepopen)
+        meteodata.openData(fname, keepopen, headeronly)
+        if mmap:
+            dinfo = meteodata.getDataInfo()
+            if hasattr(dinfo, 'setMemoryMapped'):
+                dinfo.setMemoryMapped(True)
         datafile = DimDataFile(meteodata, access=access)
         return datafile
     elif access == 'c':
@@ -123,7 +163,9 @@ def addfile(fname, access='r', dtype='netcdf', keepopen=False, **kwargs):
                 version = NetcdfFileWriter.Version.netcdf3
             else:
                 version = NetcdfFileWriter.Version.netcdf4
-            ncfile = NetcdfFileWriter.createNew(version, fname)
+            deflate = kwargs.pop('deflate', 0)
+            shuffle = kwargs.pop('shuffle', True)
+            ncfile = NCUtil.createNCFileWriter(fname, version, deflate, shuffle)
             largefile = kwargs.pop('largefile', None)
             if not largefile is None:
                 ncfile.setLargeFile(largefile)
@@ -143,13 +185,14 @@ def addfile(fname, access='r', dtype='netcdf', keepopen=False, **kwargs):
     else:
         return None
     
-def addfile_grads(fname, getfn=True):
+def addfile_grads(fname, getfn=True, mmap=False):
     '''
     Add a GrADS data file. use this function is GrADS control file has no ``.ctl`` suffix, otherwise use
     ``addfile`` function.
     
     :param fname: (*string*) GrADS control file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param mmap: (*boolean*) Read the data file by memory mapping or not. Default is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
@@ -157,6 +200,10 @@ def addfile_grads(fname, getfn=True):
         fname, isweb = __getfilename(fname)
     meteodata = MeteoDataInfo()
     meteodata.openGrADSData(fname)
+    if mmap:
+        dinfo = meteodata.getDataInfo()
+        if hasattr(dinfo, 'setMemoryMapped'):
+            dinfo.setMemoryMapped(True)
     datafile = DimDataFile(meteodata)
     return datafile
     
@@ -196,19 +243,21 @@ def addfile_grib(fname, getfn=True, version=None):
     datafile = DimDataFile(meteodata)
     return datafile
     
-def addfile_arl(fname, getfn=True):
+def addfile_arl(fname, getfn=True, indexcache=False):
     '''
     Add a ARL data file.
     
     :param fname: (*string*) The ARL file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param indexcache: (*boolean*) Cache the time index in a ``.tidx`` sidecar file or not. Default
+        is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
     if getfn:
         fname, isweb = __getfilename(fname)
     meteodata = MeteoDataInfo()
-    meteodata.openARLData(fname)
+    meteodata.openARLData(fname, indexcache)
     datafile = DimDataFile(meteodata)
     return datafile
     
@@ -265,12 +314,13 @@ def addfile_lonlat(fname, getfn=True, missingv=-9999.0):
     datafile = DimDataFile(meteodata)
     return datafile
     
-def addfile_micaps(fname, getfn=True):
+def addfile_micaps(fname, getfn=True, mmap=False):
     '''
     Add a MICAPS data file (Data formats from CMA).
     
     :param fname: (*string*) The MICAPS file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param mmap: (*boolean*) Read the data file by memory mapping or not. Default is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
@@ -278,6 +328,10 @@ def addfile_micaps(fname, getfn=True):
         fname, isweb = __getfilename(fname)
     meteodata = MeteoDataInfo()
     meteodata.openMICAPSData(fname)
+    if mmap:
+        dinfo = meteodata.getDataInfo()
+        if hasattr(dinfo, 'setMemoryMapped'):
+            dinfo.setMemoryMapped(True)
     datafile = DimDataFile(meteodata)
     return datafile
 
@@ -319,12 +373,15 @@ def addfile_hyconc(fname, getfn=True, big_endian=True):
     datafile = DimDataFile(meteodata)
     return datafile
     
-def addfile_geotiff(fname, getfn=True):
+def addfile_geotiff(fname, getfn=True, overview=False):
     '''
     Add a GeoTiff data file.
     
     :param fname: (*string*) The GeoTiff file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param overview: (*boolean*) Read the strided slices from the overviews of the file or not. The
+        coarsest overview not coarser than the stride is read, so the values are the resampled
+        overview pixels instead of the full resolution pixels. Default is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
@@ -334,15 +391,20 @@ def addfile_geotiff(fname, getfn=True):
         raise IOError('No such file: ' + fname)
     meteodata = MeteoDataInfo()
     meteodata.openGeoTiffData(fname)
+    if overview:
+        dinfo = meteodata.getDataInfo()
+        if hasattr(dinfo, 'setOverviewRead'):
+            dinfo.setOverviewRead(True)
     datafile = DimDataFile(meteodata)
     return datafile
     
-def addfile_bil(fname, getfn=True):
+def addfile_bil(fname, getfn=True, mmap=False):
     '''
     Add a bil data file.
     
     :param fname: (*string*) The bil file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param mmap: (*boolean*) Read the data file by memory mapping or not. Default is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
@@ -352,16 +414,21 @@ def addfile_bil(fname, getfn=True):
         raise IOError('No such file: ' + fname)
     meteodata = MeteoDataInfo()
     meteodata.openBILData(fname)
+    if mmap:
+        dinfo = meteodata.getDataInfo()
+        if hasattr(dinfo, 'setMemoryMapped'):
+            dinfo.setMemoryMapped(True)
     datafile = DimDataFile(meteodata)
     return datafile
     
-def addfile_awx(fname, getfn=True):
+def addfile_awx(fname, getfn=True, mmap=False):
     '''
     Add a AWX data file (Satellite data file format from CMA). use this function is the file has no ``.awx`` 
     suffix, otherwise use ``addfile`` function.
     
     :param fname: (*string*) The AWX file name.
     :param getfn: (*string*) If run ``__getfilename`` function or not. Default is ``True``.
+    :param mmap: (*boolean*) Read the data file by memory mapping or not. Default is ``False``.
     
     :returns: (*DimDataFile*) Opened file object.
     '''
@@ -371,6 +438,10 @@ def addfile_awx(fname, getfn=True):
         raise IOError('No such file: ' + fname)
     meteodata = MeteoDataInfo()
     meteodata.openAWXData(fname)
+    if mmap:
+        dinfo = meteodata.getDataInfo()
+        if hasattr(dinfo, 'setMemoryMapped'):
+            dinfo.setMemoryMapped(True)
     datafile = DimDataFile(meteodata)
     return datafile
     
@@ -405,17 +476,24 @@ def addtimedim(infn, outfn, t, tunit='hours'):
     '''
     NetCDFDataInfo.addTimeDimension(infn, outfn, miutil.jdate(t), tunit)
         
-def joinncfile(infns, outfn, tdimname):
+def joinncfile(infns, outfn, tdimname, version='netcdf3', deflate=0):
     '''
     Join several netCDF files to one netCDF file.
     
     :param infns: (*list*) Input netCDF file name list.
     :param outfn: (*string*) Output netCDF file name.
     :param tdimname: (*string*) Time dimension name.
+    :param version: (*string*) Output netCDF file version of joining time: ``netcdf3`` or ``netcdf4``. 
+        Default is ``netcdf3``.
+    :param deflate: (*int*) Deflate level (0 - 9) of netCDF4 output. Default is 0 - no compression.
     
     :returns: Joined netCDF file.
     '''
-    NetCDFDataInfo.joinDataFiles(infns, outfn, tdimname)
+    if version == 'netcdf4':
+        version = NetcdfFileWriter.Version.netcdf4
+    else:
+        version = NetcdfFileWriter.Version.netcdf3
+    NetCDFDataInfo.joinDataFiles(infns, outfn, tdimname, version, deflate)
     
 def numasciirow(filename):
     '''
@@ -550,14 +628,33 @@ def binwrite(fn, data, byteorder='little_endian', append=False, sequential=False
     """
     ArrayUtil.saveBinFile(fn, data.asarray(), byteorder, append, sequential)  
     
-def convert2nc(infn, outfn, version='netcdf3', writedimvar=False, largefile=False):
+def __getchunks(chunks, varname, ndim):
+    '''
+    Get chunk shape (or access pattern) of a variable.
+    '''
+    if isinstance(chunks, dict):
+        chunks = chunks.get(varname, None)
+    if isinstance(chunks, (list, tuple)) and len(chunks) != ndim:
+        return None
+    return chunks
+    
+def convert2nc(infn, outfn, version='netcdf3', writedimvar=False, largefile=False, deflate=0, 
+    shuffle=True, chunks=None, blocksize=None):
     """
     Convert data file (Grib, HDF...) to netCDF data file.
     
     :param infn: (*string or DimDataFile*) Input data file (or file name).
     :param outfn: (*string*) Output netCDF data file name.
+    :param version: (*string*) Output netCDF file version: ``netcdf3`` or ``netcdf4``.
     :param writedimvar: (*boolean*) Write dimension variables or not.
     :param largefile: (*boolean*) Create netCDF as large file or not.
+    :param deflate: (*int*) Deflate level (0 - 9) of netCDF4 output. Default is 0 - no compression.
+    :param shuffle: (*boolean*) Use shuffle filter of netCDF4 output or not.
+    :param chunks: (*list, string or dict*) Chunk shape of netCDF4 output variables, or data access
+        pattern to derive the chunk shape: ``map`` (2D fields), ``series`` (time series) or ``balanced``.
+        A dict of variable name and chunks is also supported. Default is ``None`` - the library default.
+    :param blocksize: (*int*) Maximum bytes of a data block. The variables are read in blocks in parallel
+        and written in order. Default is ``None`` - 16 MB.
     """
     if isinstance(infn, DimDataFile):
         f = infn
@@ -566,7 +663,10 @@ def convert2nc(infn, outfn, version='netcdf3', writedimvar=False, largefile=Fals
         f = addfile(infn)
         
     #New netCDF file
-    ncfile = addfile(outfn, 'c', version=version, largefile=largefile)
+    ncfile = addfile(outfn, 'c', version=version, largefile=largefile, deflate=deflate, 
+        shuffle=shuffle)
+    if version != 'netcdf4':
+        chunks = None
     
     #Add dimensions
     dims = []
@@ -635,7 +735,8 @@ def convert2nc(infn, outfn, version='netcdf3', writedimvar=False, largefile=Fals
                 break
         if missdim:
             continue
-        nvar = ncfile.addvar(var.getShortName(), var.getDataType(), vdims)
+        vchunks = __getchunks(chunks, var.getShortName(), len(vdims))
+        nvar = ncfile.addvar(var.getShortName(), var.getDataType(), vdims, chunks=vchunks)
         for attr in var.getAttributes():
             nvar.addattr(attr.getName(), attr.getValues())
         variables.append(nvar)
@@ -661,16 +762,20 @@ def convert2nc(infn, outfn, version='netcdf3', writedimvar=False, largefile=Fals
         ncfile.write(tvar, np.array(hours))
     
     #Write variable data
+    converter = NCConverter(f.dataset.getDataInfo(), ncfile.ncfile)
+    if not blocksize is None:
+        converter.setBlockBytes(blocksize)
     for var in variables:
         print 'Variable: ' + var.name
-        data = f[str(var.name)].read()
-        ncfile.write(var, data)    
+        converter.write(var.ncvariable)
         
     #Close netCDF file
     ncfile.close()
-    print 'Convert finished!'
+    print 'Convert finished! %.1f MB in %.1f s (%.1f MB/s)' % (converter.getBytes() / 1048576.0, 
+        converter.getElapsedTime(), converter.getThroughput())
     
-def grads2nc(infn, outfn, big_endian=None, largefile=False):
+def grads2nc(infn, outfn, big_endian=None, largefile=False, version='netcdf3', deflate=0, 
+    shuffle=True, chunks=None):
     """
     Convert GrADS data file to netCDF data file.
     
@@ -678,6 +783,11 @@ def grads2nc(infn, outfn, big_endian=None, largefile=False):
     :param outfn: (*string*) Output netCDF data file name.
     :param big_endian: (*boolean*) Is GrADS data big_endian or not.
     :param largefile: (*boolean*) Create netCDF as large file or not.
+    :param version: (*string*) Output netCDF file version: ``netcdf3`` or ``netcdf4``.
+    :param deflate: (*int*) Deflate level (0 - 9) of netCDF4 output. Default is 0 - no compression.
+    :param shuffle: (*boolean*) Use shuffle filter of netCDF4 output or not.
+    :param chunks: (*list, string or dict*) Chunk shape of netCDF4 output variables, or data access
+        pattern: ``map``, ``series`` or ``balanced``. See ``convert2nc``.
     """
     #Open GrADS file
     f = addfile_grads(infn)
@@ -685,7 +795,10 @@ def grads2nc(infn, outfn, big_endian=None, largefile=False):
         f.bigendian(big_endian)
 
     #New netCDF file
-    ncfile = addfile(outfn, 'c', largefile=largefile)
+    ncfile = addfile(outfn, 'c', largefile=largefile, version=version, deflate=deflate, 
+        shuffle=shuffle)
+    if version != 'netcdf4':
+        chunks = None
 
     #Add dimensions
     dims = []
@@ -735,7 +848,8 @@ def grads2nc(infn, outfn, big_endian=None, largefile=False):
                 if vdim.getShortName() == dim.getShortName():
                     vdims.append(dim)
         #print vdims
-        nvar = ncfile.addvar(var.getShortName(), var.getDataType(), vdims)
+        vchunks = __getchunks(chunks, var.getShortName(), len(vdims))
+        nvar = ncfile.addvar(var.getShortName(), var.getDataType(), vdims, chunks=vchunks)
         nvar.addattr('fill_value', -9999.0)
         for attr in var.getAttributes():
             nvar.addattr(attr.getName(), attr.getValues())
@@ -804,7 +918,8 @@ def dimension(dimvalue, dimname='null', dimtype=None):
     dim.setShortName(dimname)
     return dim
     
-def ncwrite(fn, data, varname, dims=None, attrs=None, gattrs=None, largefile=False):
+def ncwrite(fn, data, varname, dims=None, attrs=None, gattrs=None, largefile=False, version='netcdf3',
+    deflate=0, shuffle=True, chunks=None):
     """
     Write a netCDF data file from an array.
     
@@ -815,6 +930,11 @@ def ncwrite(fn, data, varname, dims=None, attrs=None, gattrs=None, largefile=Fal
     :param attrs: (*dict*) Variable attributes.
     :param gattrs: (*dict*) Global attributes.
     :param largefile: (*boolean*) Create netCDF as large file or not.
+    :param version: (*string*) Output netCDF file version: ``netcdf3`` or ``netcdf4``.
+    :param deflate: (*int*) Deflate level (0 - 9) of netCDF4 output. Default is 0 - no compression.
+    :param shuffle: (*boolean*) Use shuffle filter of netCDF4 output or not.
+    :param chunks: (*list or string*) Chunk shape of netCDF4 output variable, or data access pattern: 
+        ``map``, ``series`` or ``balanced``. See ``convert2nc``.
     """
     if dims is None:
         if isinstance(data, NDArray):
@@ -826,7 +946,9 @@ def ncwrite(fn, data, varname, dims=None, attrs=None, gattrs=None, largefile=Fal
         else:
             dims = data.dims
     #New netCDF file
-    ncfile = addfile(fn, 'c', largefile=largefile)
+    ncfile = addfile(fn, 'c', largefile=largefile, version=version, deflate=deflate, shuffle=shuffle)
+    if version != 'netcdf4':
+        chunks = None
     #Add dimensions
     ncdims = []
     for dim in dims:    
@@ -865,7 +987,7 @@ def ncwrite(fn, data, varname, dims=None, attrs=None, gattrs=None, largefile=Fal
             dimvars.append(var)
             wdims.append(midim)
     #Add variable
-    var = ncfile.addvar(varname, data.dtype, ncdims)
+    var = ncfile.addvar(varname, data.dtype, ncdims, chunks=__getchunks(chunks, varname, len(ncdims)))
     if attrs is None:    
         var.addattr('name', varname)
     else:
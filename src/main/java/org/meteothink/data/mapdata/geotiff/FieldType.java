@@ -33,6 +33,7 @@ public class FieldType {
     public static final FieldType SRATIONAL = new FieldType("SRATIONAL", 10, 8);
     public static final FieldType FLOAT = new FieldType("FLOAT", 11, 4);
     public static final FieldType DOUBLE = new FieldType("DOUBLE", 12, 8);
+    public static final FieldType LONG8 = new FieldType("LONG8", 16, 8);
     String name;
     int code;
     int size;
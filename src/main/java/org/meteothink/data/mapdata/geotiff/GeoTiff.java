@@ -23,22 +23,19 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.locationtech.proj4j.CoordinateReferenceSystem;
 import org.meteothink.data.mapdata.geotiff.compression.CompressionDecoder;
-import org.meteothink.data.mapdata.geotiff.compression.DeflateCompression;
-import org.meteothink.data.mapdata.geotiff.compression.LZWCompression;
-import org.meteothink.math.ArrayMath;
-import org.meteothink.util.DataConvert;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.util.BigDecimalUtil;
 import org.meteothink.common.projection.KnownCoordinateSystems;
 import org.meteothink.common.projection.ProjUtil;
 import org.meteothink.ndarray.Array;
-import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.Index;
 
 /**
  *
@@ -58,11 +55,16 @@ public class GeoTiff {
     private boolean debugReadGeoKey = false;
     private boolean showHeaderBytes = false;
     private int headerSize = 8;
+    private boolean bigTIFF = false;
     private int firstIFD = 0;
     private int lastIFD = 0;
     private int startOverflowData = 0;
     private int nextOverflowData = 0;
     private List<GeoKey> geokeys = new ArrayList();
+    private TiffImage image;
+    private List<TiffImage> overviews;
+    private final List<List<IFDEntry>> ifds = new ArrayList<>();
+    private boolean overviewRead = false;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -143,14 +145,27 @@ public class GeoTiff {
      * Write geo keys
      */
     private void writeGeoKeys() {
-        if (this.geokeys.isEmpty()) {
-            return;
+        for (IFDEntry ifd : getGeoKeyTags(this.geokeys)) {
+            addTag(ifd);
+        }
+    }
+
+    /**
+     * Get the tags of geo keys
+     *
+     * @param geokeys Geo keys
+     * @return GeoKeyDirectory, GeoDoubleParams and GeoAsciiParams tags
+     */
+    static List<IFDEntry> getGeoKeyTags(List<GeoKey> geokeys) {
+        List<IFDEntry> r = new ArrayList<>();
+        if (geokeys.isEmpty()) {
+            return r;
         }
 
         int extra_chars = 0;
         int extra_ints = 0;
         int extra_doubles = 0;
-        for (GeoKey geokey : this.geokeys) {
+        for (GeoKey geokey : geokeys) {
             if (geokey.isDouble) {
                 extra_doubles += geokey.count();
             } else if (geokey.isString) {
@@ -159,7 +174,7 @@ public class GeoTiff {
                 extra_ints += geokey.count();
             }
         }
-        int n = (this.geokeys.size() + 1) * 4;
+        int n = (geokeys.size() + 1) * 4;
         int[] values = new int[n + extra_ints];
         double[] dvalues = new double[extra_doubles];
         char[] cvalues = new char[extra_chars];
@@ -170,9 +185,9 @@ public class GeoTiff {
         values[0] = 1;
         values[1] = 1;
         values[2] = 0;
-        values[3] = this.geokeys.size();
+        values[3] = geokeys.size();
         int count = 4;
-        for (GeoKey geokey : this.geokeys) {
+        for (GeoKey geokey : geokeys) {
             values[(count++)] = geokey.tagCode();
 
             if (geokey.isDouble) {
@@ -205,13 +220,14 @@ public class GeoTiff {
             }
         }
 
-        addTag(new IFDEntry(Tag.GeoKeyDirectoryTag, FieldType.SHORT).setValue(values));
+        r.add(new IFDEntry(Tag.GeoKeyDirectoryTag, FieldType.SHORT).setValue(values));
         if (extra_doubles > 0) {
-            addTag(new IFDEntry(Tag.GeoDoubleParamsTag, FieldType.DOUBLE).setValue(dvalues));
+            r.add(new IFDEntry(Tag.GeoDoubleParamsTag, FieldType.DOUBLE).setValue(dvalues));
         }
         if (extra_chars > 0) {
-            addTag(new IFDEntry(Tag.GeoAsciiParamsTag, FieldType.ASCII).setValue(new String(cvalues)));
+            r.add(new IFDEntry(Tag.GeoAsciiParamsTag, FieldType.ASCII).setValue(new String(cvalues)));
         }
+        return r;
     }
 
     /**
@@ -516,8 +532,11 @@ public class GeoTiff {
             System.out.println("Opened file to read:'" + this.filename + "', size=" + this.channel.size());
         }
         this.readonly = true;
+        this.image = null;
+        this.overviews = null;
+        this.ifds.clear();
 
-        int nextOffset = readHeader(this.channel);
+        long nextOffset = readHeader(this.channel);
         while (nextOffset > 0) {
             nextOffset = readIFD(this.channel, nextOffset);
             parseGeoInfo();
@@ -785,266 +804,419 @@ public class GeoTiff {
     }
 
     /**
-     * Test read data
+     * Get the image layout
+     *
+     * @return Image layout
+     * @throws IOException
+     */
+    TiffImage getImage() throws IOException {
+        if (this.image == null) {
+            this.image = new TiffImage(this.ifds.isEmpty() ? this.tags : this.ifds.get(0));
+        }
+        return this.image;
+    }
+
+    /**
+     * Get the reduced resolution images (overviews) of the image, from the
+     * finest to the coarsest
+     *
+     * @return Overviews
+     * @throws IOException
+     */
+    List<TiffImage> getOverviews() throws IOException {
+        if (this.overviews == null) {
+            List<TiffImage> r = new ArrayList<>();
+            TiffImage img = getImage();
+            for (int i = 1; i < this.ifds.size(); i++) {
+                List<IFDEntry> ifd = this.ifds.get(i);
+                IFDEntry subfileType = null;
+                for (IFDEntry e : ifd) {
+                    if (e.tag == Tag.NewSubfileType) {
+                        subfileType = e;
+                    }
+                }
+                //Reduced resolution image but not a mask
+                if (subfileType == null || subfileType.value == null || (subfileType.value[0] & 5) != 1) {
+                    continue;
+                }
+                TiffImage ov;
+                try {
+                    ov = new TiffImage(ifd);
+                } catch (IOException ex) {
+                    continue;
+                }
+                if (ov.getSamplesPerPixel() == img.getSamplesPerPixel()
+                        && ov.getBitsPerSample() == img.getBitsPerSample()
+                        && ov.getSampleFormat() == img.getSampleFormat() && ov.getWidth() < img.getWidth()) {
+                    r.add(ov);
+                }
+            }
+            Collections.sort(r, new Comparator<TiffImage>() {
+                @Override
+                public int compare(TiffImage a, TiffImage b) {
+                    return b.getWidth() - a.getWidth();
+                }
+            });
+            this.overviews = r;
+        }
+        return this.overviews;
+    }
+
+    /**
+     * Get overview number
+     *
+     * @return Overview number
+     * @throws IOException
+     */
+    public int getOverviewNum() throws IOException {
+        return getOverviews().size();
+    }
+
+    /**
+     * Select the coarsest overview which resolution is not coarser than the
+     * stride
+     *
+     * @param yStride Y stride
+     * @param xStride X stride
+     * @return Overview index, -1 for the full resolution image
+     * @throws IOException
+     */
+    public int selectOverview(int yStride, int xStride) throws IOException {
+        TiffImage img = getImage();
+        List<TiffImage> ovs = getOverviews();
+        int idx = -1;
+        for (int i = 0; i < ovs.size(); i++) {
+            TiffImage ov = ovs.get(i);
+            double fy = (double) img.getHeight() / ov.getHeight();
+            double fx = (double) img.getWidth() / ov.getWidth();
+            if (fy <= yStride + 1e-6 && fx <= xStride + 1e-6) {
+                idx = i;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Get if the strided reads use the overviews
+     *
+     * @return Boolean
+     */
+    public boolean isOverviewRead() {
+        return this.overviewRead;
+    }
+
+    /**
+     * Set if the strided reads use the overviews. If true, a region read with
+     * stride takes the nearest pixels of the coarsest overview not coarser
+     * than the stride instead of the full resolution pixels.
+     *
+     * @param value Boolean
+     */
+    public void setOverviewRead(boolean value) {
+        this.overviewRead = value;
+    }
+
+    /**
+     * Read data array
      *
      * @return Data
      * @throws IOException
      */
     public Array readArray() throws IOException {
-        IFDEntry widthIFD = this.findTag(Tag.ImageWidth);
-        IFDEntry heightIFD = this.findTag(Tag.ImageLength);
-        int width = widthIFD.value[0];
-        int height = heightIFD.value[0];
-        IFDEntry samplesPerPixelTag = findTag(Tag.SamplesPerPixel);
-        int samplesPerPixel = samplesPerPixelTag.value[0];    //Number of bands
-        //int[] values = new int[width * height];
-        IFDEntry bitsPerSampleTag = findTag(Tag.BitsPerSample);
-        int bitsPerSample = bitsPerSampleTag.value[0];
+        TiffImage img = getImage();
         int[] shape;
-        if (samplesPerPixel == 1) {
-            shape = new int[]{height, width};
+        if (img.getSamplesPerPixel() == 1) {
+            shape = new int[]{img.getHeight(), img.getWidth()};
         } else {
-            shape = new int[]{height, width, samplesPerPixel};
+            shape = new int[]{img.getHeight(), img.getWidth(), img.getSamplesPerPixel()};
         }
-//        if (samplesPerPixel == 1) {
-//            shape = new int[]{width, height};
-//        } else {
-//            shape = new int[]{width, height, samplesPerPixel};
-//        }
-        DataType dataType = DataType.INT;
-        IFDEntry sampleFormatTag = findTag(Tag.SampleFormat);
-        int sampleFormat = 0;
-        if (sampleFormatTag != null) {
-            sampleFormat = sampleFormatTag.value[0];
-        }
-        switch (bitsPerSample) {
-            case 32:
-                switch (sampleFormat) {
-                    case 3:
-                        dataType = DataType.FLOAT;
-                        break;
+        int[] origin = new int[shape.length];
+        int[] stride = new int[shape.length];
+        Arrays.fill(stride, 1);
+
+        return readArray(origin, shape, stride);
+    }
+
+    /**
+     * Read data array of a region. The index is the same as readArray(), so
+     * the row 0 is the last image row. Only the tiles or strips intersecting
+     * the region are read and decoded, from an overview if overview read is
+     * set.
+     *
+     * @param origin The origin array - y, x (and band)
+     * @param size The size array
+     * @param stride The stride array
+     * @return Data
+     * @throws IOException
+     */
+    public Array readArray(int[] origin, int[] size, int[] stride) throws IOException {
+        TiffImage img = getImage();
+        int height = img.getHeight();
+        int spp = img.getSamplesPerPixel();
+        int ny = (size[0] - 1) / stride[0] + 1;
+        int nx = (size[1] - 1) / stride[1] + 1;
+        int nb = spp == 1 ? 1 : (size[2] - 1) / stride[2] + 1;
+        int[] rows = new int[ny];
+        for (int i = 0; i < ny; i++) {
+            rows[i] = height - 1 - (origin[0] + i * stride[0]);
+        }
+        int[] cols = new int[nx];
+        for (int i = 0; i < nx; i++) {
+            cols[i] = origin[1] + i * stride[1];
+        }
+        int[] bands = new int[nb];
+        for (int i = 0; i < nb; i++) {
+            bands[i] = spp == 1 ? 0 : origin[2] + i * stride[2];
+        }
+        if (rows[0] >= height || rows[ny - 1] < 0 || cols[0] < 0 || cols[nx - 1] >= img.getWidth()
+                || bands[0] < 0 || bands[nb - 1] >= spp) {
+            throw new IOException("The region is out of the image");
+        }
+
+        if (this.overviewRead) {
+            int level = selectOverview(stride[0], stride[1]);
+            if (level >= 0) {
+                //Nearest pixels of the overview
+                TiffImage ov = getOverviews().get(level);
+                double fy = (double) height / ov.getHeight();
+                double fx = (double) img.getWidth() / ov.getWidth();
+                for (int i = 0; i < ny; i++) {
+                    rows[i] = Math.min(ov.getHeight() - 1, (int) (rows[i] / fy));
                 }
-                break;
-        }
-        Array r = Array.factory(dataType, shape);
-        IFDEntry compressionTag = findTag(Tag.Compression);
-        CompressionDecoder cDecoder = null;
-        if (compressionTag != null){
-            int compression = compressionTag.value[0];
-            if (compression > 1){
-                switch (compression) {
-                    case 5:
-                        cDecoder = new LZWCompression();
-                        break;
-                    case 8:
-                        cDecoder = new DeflateCompression();
-                        break;
+                for (int i = 0; i < nx; i++) {
+                    cols[i] = Math.min(ov.getWidth() - 1, (int) (cols[i] / fx));
                 }
+                img = ov;
             }
         }
-        IFDEntry tileOffsetTag = findTag(Tag.TileOffsets);
-        ByteBuffer buffer;
-        if (tileOffsetTag != null) {
-            Index index = r.getIndex();
-            int tileOffset;
-            IFDEntry tileSizeTag = findTag(Tag.TileByteCounts);
-            IFDEntry tileLengthTag = findTag(Tag.TileLength);
-            IFDEntry tileWidthTag = findTag(Tag.TileWidth);
-            int tileWidth = tileWidthTag.value[0];
-            int tileHeight = tileLengthTag.value[0];
-            int hTileNum = (width + tileWidth - 1) / tileWidth;
-            int vTileNum = (height + tileHeight - 1) / tileHeight;
-            int tileSize;
-            //System.out.println("tileOffset =" + tileOffset + " tileSize=" + tileSize);
-            int tileIdx, vIdx, hIdx;
-            switch (bitsPerSample) {
-                case 8:
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            buffer = testReadData(tileOffset, tileSize);
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        break;
-                                    }
-                                    index.set0(vIdx);
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        r.setInt(index, DataConvert.byte2Int(buffer.get()));
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            r.setInt(index, DataConvert.byte2Int(buffer.get()));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 16:
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            buffer = testReadData(tileOffset, tileSize);
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        break;
-                                    }
-                                    index.set0(vIdx);
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        r.setInt(index, buffer.getShort());
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            r.setInt(index, buffer.getShort());
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 32:
-                    int size = tileHeight * tileWidth * 4;
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            if (tileSize == 0)
-                                continue;
-
-                            buffer = testReadData(tileOffset, tileSize);
-                            if (cDecoder != null){
-                                buffer = ByteBuffer.wrap(cDecoder.decode(buffer.array(), byteOrder));
-                                if (buffer.limit() < size){
-                                    ByteBuffer nbuffer = ByteBuffer.allocate(size);
-                                    nbuffer.put(buffer.array());
-                                    buffer = nbuffer;
-                                    ((Buffer)buffer).position(0);
-                                }
-                                buffer.order(byteOrder);
-                            }
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                index.set0(vIdx);
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        buffer.get(new byte[(tileWidth - w) * 4]);
-                                        break;
-                                    }
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        if (dataType == DataType.FLOAT) {
-                                            r.setFloat(index, buffer.getFloat());
-                                        } else {
-                                            r.setInt(index, buffer.getInt());
-                                        }
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            if (dataType == DataType.FLOAT) {
-                                                r.setFloat(index, buffer.getFloat());
-                                            } else {
-                                                r.setInt(index, buffer.getInt());
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+
+        return readImage(img, rows, cols, bands);
+    }
+
+    /**
+     * Read the data of the pixels of an image
+     *
+     * @param img The image
+     * @param rows Image rows of the output rows
+     * @param cols Image columns of the output columns
+     * @param bands Bands of the output bands
+     * @return Data
+     * @throws IOException
+     */
+    private Array readImage(final TiffImage img, final int[] rows, final int[] cols, int[] bands)
+            throws IOException {
+        int spp = img.getSamplesPerPixel();
+        int ny = rows.length;
+        final int nx = cols.length;
+        final int nb = bands.length;
+        int[] shape = spp == 1 ? new int[]{ny, nx} : new int[]{ny, nx, nb};
+        final Array r = Array.factory(img.getDataType(), shape);
+        final int[][] rowGroups = groupByBlock(rows, img.getBlockHeight(), img.getBlocksDown());
+        final int[][] colGroups = groupByBlock(cols, img.getBlockWidth(), img.getBlocksAcross());
+        int planeNum = img.isPlanar() ? spp : 1;
+        //Sample position in the block pixel and output band index of the bands
+        final int[][][] bandMaps = new int[planeNum][][];
+        List<int[]> blocks = new ArrayList<>();
+        for (int p = 0; p < planeNum; p++) {
+            bandMaps[p] = getBandMap(img, bands, p);
+            if (bandMaps[p][0].length == 0) {
+                continue;
+            }
+            for (int i = 0; i < img.getBlocksDown(); i++) {
+                if (rowGroups[i] == null) {
+                    continue;
+                }
+                for (int j = 0; j < img.getBlocksAcross(); j++) {
+                    if (colGroups[j] != null) {
+                        blocks.add(new int[]{p, i, j});
                     }
-                    break;
-                default:
-                    break;
+                }
             }
-        } else {
-            IFDEntry stripOffsetTag = findTag(Tag.StripOffsets);
-            if (stripOffsetTag != null) {
-                int stripNum = stripOffsetTag.count;
-                int stripOffset;
-                IFDEntry stripSizeTag = findTag(Tag.StripByteCounts);
-                int stripSize = stripSizeTag.value[0];
-                IFDEntry rowsPerStripTag = findTag(Tag.RowsPerStrip);
-                int rowNum = rowsPerStripTag.value[0];
-                //System.out.println("stripOffset =" + stripOffset + " stripSize=" + stripSize);
-                int idx = 0;
-                switch (bitsPerSample) {
-                    case 8:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    r.setInt(idx, DataConvert.byte2Int(buffer.get()));
-                                    idx += 1;
-                                }
-                            }
-                        }
-                        break;
-                    case 16:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    if (dataType == DataType.FLOAT) {
-                                        r.setFloat(idx, buffer.getFloat());
-                                    } else {
-                                        r.setInt(idx, buffer.getInt());
-                                    }
-                                    idx += 1;
-                                }
-                            }
-                        }
-                        break;
-                    case 32:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            stripSize = stripSizeTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            if (cDecoder != null){
-                                buffer = ByteBuffer.wrap(cDecoder.decode(buffer.array(), byteOrder));
-                                buffer.order(byteOrder);
-                            }
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    r.setFloat(idx, buffer.getFloat());
-                                    idx += 1;
-                                }
+        }
+
+        //The blocks are split into the tasks, each task has its own decoder
+        //and the blocks are copied to disjoint regions of the result
+        int taskNum = ParallelUtil.isParallel() ? Math.min(blocks.size(), 4 * ParallelUtil.getThreadNum()) : 1;
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < taskNum; t++) {
+            final List<int[]> part = blocks.subList(t * blocks.size() / taskNum, (t + 1) * blocks.size() / taskNum);
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CompressionDecoder decoder = img.createDecoder();
+                        for (int[] b : part) {
+                            ByteBuffer buffer = readBlock(img, img.getBlockIndex(b[0], b[1], b[2]), decoder);
+                            if (buffer != null) {
+                                copyBlock(img, buffer, b[1], b[2], rowGroups[b[1]], colGroups[b[2]], rows, cols,
+                                        bandMaps[b[0]], nx, nb, r);
                             }
                         }
-                        break;
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
                 }
+            });
+        }
+        try {
+            ParallelUtil.invokeAll(tasks);
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
             }
+            throw ex;
         }
 
-        r = ArrayMath.flip(r, 0);
         return r;
     }
 
+    /**
+     * Group the output indices by the blocks the image indices are in
+     *
+     * @param idx Image indices of the output
+     * @param blockLen Block length
+     * @param blockNum Block number
+     * @return Output indices of each block, null for the blocks not used
+     */
+    private static int[][] groupByBlock(int[] idx, int blockLen, int blockNum) {
+        int[] counts = new int[blockNum];
+        for (int i : idx) {
+            counts[i / blockLen] += 1;
+        }
+        int[][] groups = new int[blockNum][];
+        for (int i = 0; i < blockNum; i++) {
+            if (counts[i] > 0) {
+                groups[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+        }
+        for (int i = 0; i < idx.length; i++) {
+            int b = idx[i] / blockLen;
+            groups[b][counts[b]++] = i;
+        }
+        return groups;
+    }
+
+    private static int[][] getBandMap(TiffImage img, int[] bands, int plane) {
+        if (!img.isPlanar()) {
+            int[] outIdx = new int[bands.length];
+            for (int i = 0; i < bands.length; i++) {
+                outIdx[i] = i;
+            }
+            return new int[][]{bands.clone(), outIdx};
+        }
+
+        int n = 0;
+        for (int b : bands) {
+            if (b == plane) {
+                n += 1;
+            }
+        }
+        int[] pos = new int[n];
+        int[] outIdx = new int[n];
+        n = 0;
+        for (int i = 0; i < bands.length; i++) {
+            if (bands[i] == plane) {
+                outIdx[n++] = i;
+            }
+        }
+        return new int[][]{pos, outIdx};
+    }
+
+    /**
+     * Read and decode a block (tile or strip)
+     *
+     * @param img Image layout
+     * @param idx Block index
+     * @param decoder Compression decoder, null if not compressed
+     * @return Decoded block data, null if the block is empty
+     * @throws IOException
+     */
+    private ByteBuffer readBlock(TiffImage img, int idx, CompressionDecoder decoder) throws IOException {
+        int count = (int) img.getByteCount(idx);
+        if (count == 0) {
+            return null;
+        }
+        byte[] bytes = readBytes(img.getOffset(idx), count);
+        if (decoder != null) {
+            bytes = decoder.decode(bytes, byteOrder);
+        }
+        int blockBytes = img.getBlockBytes();
+        if (bytes.length < blockBytes) {
+            //The last strip or a truncated block
+            bytes = Arrays.copyOf(bytes, blockBytes);
+        }
+        img.unpredict(bytes, byteOrder);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.order(byteOrder);
+        return buffer;
+    }
+
+    /**
+     * Read bytes by positional reads of the file channel, so the file can be
+     * read by several threads
+     *
+     * @param offset File offset
+     * @param size Byte number
+     * @return Bytes
+     * @throws IOException
+     */
+    private byte[] readBytes(long offset, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            int n = this.channel.read(buffer, offset + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of file: " + this.filename);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Copy the decoded data of a block to the output array
+     */
+    private static void copyBlock(TiffImage img, ByteBuffer buffer, int blockRow, int blockCol,
+            int[] outRows, int[] outCols, int[] rows, int[] cols, int[][] bandMap, int nx, int nb, Array r) {
+        int bytes = img.getBytesPerSample();
+        int pixelBytes = img.getBlockSamples() * bytes;
+        int rowBytes = img.getBlockWidth() * pixelBytes;
+        int row0 = blockRow * img.getBlockHeight();
+        int col0 = blockCol * img.getBlockWidth();
+        int[] bandPos = bandMap[0];
+        int[] bandOut = bandMap[1];
+        boolean signed = img.getSampleFormat() == 2;
+        Object storage = r.getStorage();
+        for (int k : outRows) {
+            int rowPos = (rows[k] - row0) * rowBytes;
+            for (int l : outCols) {
+                int pos = rowPos + (cols[l] - col0) * pixelBytes;
+                int idx = (k * nx + l) * nb;
+                for (int b = 0; b < bandPos.length; b++) {
+                    int p = pos + bandPos[b] * bytes;
+                    int o = idx + bandOut[b];
+                    switch (img.getBitsPerSample()) {
+                        case 8:
+                            ((int[]) storage)[o] = signed ? buffer.get(p) : buffer.get(p) & 0xFF;
+                            break;
+                        case 16:
+                            ((int[]) storage)[o] = signed ? buffer.getShort(p) : buffer.getShort(p) & 0xFFFF;
+                            break;
+                        case 32:
+                            if (storage instanceof float[]) {
+                                ((float[]) storage)[o] = buffer.getFloat(p);
+                            } else {
+                                ((int[]) storage)[o] = buffer.getInt(p);
+                            }
+                            break;
+                        case 64:
+                            ((double[]) storage)[o] = buffer.getDouble(p);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Test read data
      *
@@ -1052,7 +1224,7 @@ public class GeoTiff {
      * @param size Size
      * @throws IOException
      */
-    private ByteBuffer testReadData(int offset, int size) throws IOException {
+    private ByteBuffer testReadData(long offset, int size) throws IOException {
         this.channel.position(offset);
         ByteBuffer buffer = ByteBuffer.allocate(size);
         buffer.order(this.byteOrder);
@@ -1070,13 +1242,13 @@ public class GeoTiff {
      * Read header
      *
      * @param channel File channel
-     * @return Int
+     * @return First IFD offset
      * @throws IOException
      */
-    private int readHeader(FileChannel channel) throws IOException {
+    private long readHeader(FileChannel channel) throws IOException {
         channel.position(0L);
 
-        ByteBuffer buffer = ByteBuffer.allocate(8);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
         channel.read(buffer);
         ((Buffer)buffer).flip();
         if (this.showHeaderBytes) {
@@ -1089,8 +1261,16 @@ public class GeoTiff {
             this.byteOrder = ByteOrder.LITTLE_ENDIAN;
         }
         buffer.order(this.byteOrder);
-        ((Buffer)buffer).position(4);
-        int firstIFD = buffer.getInt();
+        ((Buffer)buffer).position(2);
+        //BigTIFF has 43 version and 8 bytes offsets
+        this.bigTIFF = buffer.getShort() == 43;
+        long firstIFD;
+        if (this.bigTIFF) {
+            ((Buffer)buffer).position(8);
+            firstIFD = buffer.getLong();
+        } else {
+            firstIFD = buffer.getInt() & 0xFFFFFFFFL;
+        }
         if (this.debugRead) {
             System.out.println(" firstIFD == " + firstIFD);
         }
@@ -1103,27 +1283,30 @@ public class GeoTiff {
      *
      * @param channel File channel
      * @param start Start
-     * @return Int
+     * @return Next IFD offset
      * @throws IOException
      */
-    private int readIFD(FileChannel channel, int start) throws IOException {
+    private long readIFD(FileChannel channel, long start) throws IOException {
         channel.position(start);
 
-        ByteBuffer buffer = ByteBuffer.allocate(2);
+        int countSize = this.bigTIFF ? 8 : 2;
+        int entrySize = this.bigTIFF ? 20 : 12;
+        ByteBuffer buffer = ByteBuffer.allocate(countSize);
         buffer.order(this.byteOrder);
 
         int n = channel.read(buffer);
         ((Buffer)buffer).flip();
         if (this.showBytes) {
-            printBytes(System.out, "IFD", buffer, 2);
+            printBytes(System.out, "IFD", buffer, countSize);
             buffer.rewind();
         }
-        short nentries = buffer.getShort();
+        long nentries = this.bigTIFF ? buffer.getLong() : readUShortValue(buffer);
         if (this.debugRead) {
             System.out.println(" nentries = " + nentries);
         }
 
-        start += 2;
+        start += countSize;
+        List<IFDEntry> ifdTags = new ArrayList<>();
         for (int i = 0; i < nentries; i++) {
             IFDEntry ifd = readIFDEntry(channel, start);
             if (this.debugRead) {
@@ -1131,18 +1314,20 @@ public class GeoTiff {
             }
 
             this.tags.add(ifd);
-            start += 12;
+            ifdTags.add(ifd);
+            start += entrySize;
         }
+        this.ifds.add(ifdTags);
 
         if (this.debugRead) {
             System.out.println(" looking for nextIFD at pos == " + channel.position() + " start = " + start);
         }
         channel.position(start);
-        buffer = ByteBuffer.allocate(4);
+        buffer = ByteBuffer.allocate(this.bigTIFF ? 8 : 4);
         buffer.order(this.byteOrder);
         n = channel.read(buffer);
         ((Buffer)buffer).flip();
-        int nextIFD = buffer.getInt();
+        long nextIFD = this.bigTIFF ? buffer.getLong() : buffer.getInt() & 0xFFFFFFFFL;
         if (this.debugRead) {
             System.out.println(" nextIFD == " + nextIFD);
         }
@@ -1157,18 +1342,19 @@ public class GeoTiff {
      * @return IFDEntry
      * @throws IOException
      */
-    private IFDEntry readIFDEntry(FileChannel channel, int start) throws IOException {
+    private IFDEntry readIFDEntry(FileChannel channel, long start) throws IOException {
         if (this.debugRead) {
             System.out.println("readIFDEntry starting position to " + start);
         }
 
+        int entrySize = this.bigTIFF ? 20 : 12;
         channel.position(start);
-        ByteBuffer buffer = ByteBuffer.allocate(12);
+        ByteBuffer buffer = ByteBuffer.allocate(entrySize);
         buffer.order(this.byteOrder);
         channel.read(buffer);
         ((Buffer)buffer).flip();
         if (this.showBytes) {
-            printBytes(System.out, "IFDEntry bytes", buffer, 12);
+            printBytes(System.out, "IFDEntry bytes", buffer, entrySize);
         }
 
         ((Buffer)buffer).position(0);
@@ -1178,14 +1364,16 @@ public class GeoTiff {
             tag = new Tag(code);
         }
         FieldType type = FieldType.get(readUShortValue(buffer));
-        int count = buffer.getInt();
+        int count = this.bigTIFF ? (int) buffer.getLong() : buffer.getInt();
 
         IFDEntry ifd = new IFDEntry(tag, type, count);
 
-        if (ifd.count * ifd.type.size <= 4) {
+        //The values are in the entry if they fit the offset field
+        int inline = this.bigTIFF ? 8 : 4;
+        if (ifd.count * ifd.type.size <= inline) {
             readValues(buffer, ifd);
         } else {
-            int offset = buffer.getInt();
+            long offset = this.bigTIFF ? buffer.getLong() : buffer.getInt() & 0xFFFFFFFFL;
             if (this.debugRead) {
                 System.out.println("position to " + offset);
             }
@@ -1224,6 +1412,13 @@ public class GeoTiff {
             for (int i = 0; i < ifd.count; i++) {
                 ifd.valueD[i] = buffer.getDouble();
             }
+        } else if (ifd.type == FieldType.LONG8) {
+            ifd.valueL = new long[ifd.count];
+            ifd.value = new int[ifd.count];
+            for (int i = 0; i < ifd.count; i++) {
+                ifd.valueL[i] = buffer.getLong();
+                ifd.value[i] = (int) ifd.valueL[i];
+            }
         } else {
             ifd.value = new int[ifd.count];
             for (int i = 0; i < ifd.count; i++) {
@@ -0,0 +1,1029 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.mapdata.geotiff;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.meteothink.data.mapdata.geotiff.compression.CompressionDecoder;
+import org.meteothink.data.mapdata.geotiff.compression.CompressionEncoder;
+import org.meteothink.data.mapdata.geotiff.compression.DeflateCompression;
+import org.meteothink.data.mapdata.geotiff.compression.LZWCompression;
+import org.meteothink.data.mapdata.geotiff.compression.Predictor;
+import org.meteothink.data.util.ParallelUtil;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DataType;
+import org.meteothink.ndarray.IndexIterator;
+
+/**
+ * Streaming tiled GeoTIFF writer. The data is given by row blocks from the
+ * top image row or tile by tile. A tile is compressed and written as soon as
+ * it is complete, so only one row of tiles is kept in memory. The overviews
+ * (2x, 4x, 8x ... reduced resolution images) and the IFDs are written by
+ * close(), and the file is written as BigTIFF if it does not fit the 4 GB
+ * offsets of classic TIFF.
+ *
+ * @author Yaqiang Wang
+ */
+public class GeoTiffWriter {
+
+    // <editor-fold desc="Variables">
+    public static final int COMPRESSION_NONE = 1;
+    public static final int COMPRESSION_LZW = 5;
+    public static final int COMPRESSION_DEFLATE = 8;
+    private static final long CLASSIC_LIMIT = 0xFFFFFFFFL;
+    //Room of the BigTIFF header is kept before the data
+    private static final int HEADER_SIZE = 16;
+
+    private final String fileName;
+    private final int width;
+    private final int height;
+    private final int bandNum;
+    private final DataType dataType;
+    private final int bitsPerSample;
+    private final int sampleFormat;
+    private int tileWidth = 256;
+    private int tileHeight = 256;
+    private int compression = COMPRESSION_DEFLATE;
+    private boolean predictor = true;
+    private Boolean bigTIFF = null;
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private double[] transform = null;
+    private final List<GeoKey> geokeys = new ArrayList<>();
+    private String noData = null;
+    private double noDataValue = Double.NaN;
+    private int overviewNum = 0;
+    private Resampling resampling = Resampling.MEAN;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean closed = false;
+    private long position = HEADER_SIZE;
+    //Full resolution image and the overviews
+    private final List<Level> levels = new ArrayList<>();
+    private byte[] rowBuffer;
+    private int rowNum = 0;
+    private boolean tileMode = false;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param fileName File name
+     * @param width Image width
+     * @param height Image height
+     * @param bandNum Band number
+     * @param dataType Data type - BYTE, SHORT, INT, FLOAT or DOUBLE
+     */
+    public GeoTiffWriter(String fileName, int width, int height, int bandNum, DataType dataType) {
+        if (width <= 0 || height <= 0 || bandNum <= 0) {
+            throw new IllegalArgumentException("Image size and band number should be positive");
+        }
+        this.fileName = fileName;
+        this.width = width;
+        this.height = height;
+        this.bandNum = bandNum;
+        this.dataType = dataType;
+        switch (dataType) {
+            case BYTE:
+                bitsPerSample = 8;
+                sampleFormat = 1;
+                break;
+            case SHORT:
+                bitsPerSample = 16;
+                sampleFormat = 2;
+                break;
+            case INT:
+                bitsPerSample = 32;
+                sampleFormat = 2;
+                break;
+            case FLOAT:
+                bitsPerSample = 32;
+                sampleFormat = 3;
+                break;
+            case DOUBLE:
+                bitsPerSample = 64;
+                sampleFormat = 3;
+                break;
+            default:
+                throw new IllegalArgumentException("Not supported data type: " + dataType);
+        }
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get image width
+     *
+     * @return Image width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get image height
+     *
+     * @return Image height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get band number
+     *
+     * @return Band number
+     */
+    public int getBandNum() {
+        return bandNum;
+    }
+
+    /**
+     * Get tile width
+     *
+     * @return Tile width
+     */
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    /**
+     * Get tile height
+     *
+     * @return Tile height
+     */
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Set tile size
+     *
+     * @param tileWidth Tile width - multiple of 16
+     * @param tileHeight Tile height - multiple of 16
+     */
+    public void setTileSize(int tileWidth, int tileHeight) {
+        checkNotStarted();
+        if (tileWidth <= 0 || tileHeight <= 0 || tileWidth % 16 != 0 || tileHeight % 16 != 0) {
+            throw new IllegalArgumentException("Tile size should be positive multiple of 16");
+        }
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    /**
+     * Set compression
+     *
+     * @param value Compression - COMPRESSION_NONE, COMPRESSION_LZW or
+     * COMPRESSION_DEFLATE
+     */
+    public void setCompression(int value) {
+        checkNotStarted();
+        switch (value) {
+            case COMPRESSION_NONE:
+            case COMPRESSION_LZW:
+            case COMPRESSION_DEFLATE:
+                this.compression = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Not supported compression: " + value);
+        }
+    }
+
+    /**
+     * Set if using predictor - horizontal differencing for integer data and
+     * floating point predictor for floating point data. Only used with
+     * compression.
+     *
+     * @param value Boolean
+     */
+    public void setPredictor(boolean value) {
+        checkNotStarted();
+        this.predictor = value;
+    }
+
+    /**
+     * Set if writing BigTIFF
+     *
+     * @param value Boolean, null to write BigTIFF only if the file is larger
+     * than 4 GB
+     */
+    public void setBigTIFF(Boolean value) {
+        checkNotStarted();
+        this.bigTIFF = value;
+    }
+
+    /**
+     * Set byte order
+     *
+     * @param value Byte order
+     */
+    public void setByteOrder(ByteOrder value) {
+        checkNotStarted();
+        this.byteOrder = value;
+    }
+
+    /**
+     * Set transform
+     *
+     * @param xStart X coordinate of the first column
+     * @param yStart Y coordinate of the first (top) row
+     * @param xInc X inc
+     * @param yInc Y inc
+     */
+    public void setTransform(double xStart, double yStart, double xInc, double yInc) {
+        this.transform = new double[]{xStart, yStart, xInc, yInc};
+    }
+
+    /**
+     * Set geographic coordinate system of WGS84
+     */
+    public void setGeographic() {
+        this.geokeys.clear();
+        addGeoKey(new GeoKey(GeoKey.Tag.GTModelTypeGeoKey, GeoKey.TagValue.ModelType_Geographic));
+        addGeoKey(new GeoKey(GeoKey.Tag.GTRasterTypeGeoKey, GeoKey.TagValue.RasterType_Area));
+        addGeoKey(new GeoKey(GeoKey.Tag.GeographicTypeGeoKey, GeoKey.TagValue.GeographicType_WGS_84));
+    }
+
+    /**
+     * Set no data value
+     *
+     * @param value No data value
+     */
+    public void setNoData(double value) {
+        this.noData = value == Math.rint(value) && !Double.isInfinite(value)
+                ? String.valueOf((long) value) : String.valueOf(value);
+        this.noDataValue = value;
+    }
+
+    /**
+     * Get overview number
+     *
+     * @return Overview number, -1 for automatic
+     */
+    public int getOverviewNum() {
+        return overviewNum;
+    }
+
+    /**
+     * Set overview number. Each overview has half the width and height of the
+     * previous one.
+     *
+     * @param value Overview number, 0 for no overview and -1 to add overviews
+     * until the image fits in one tile
+     */
+    public void setOverviewNum(int value) {
+        if (value < -1) {
+            throw new IllegalArgumentException("Not valid overview number: " + value);
+        }
+        this.overviewNum = value;
+    }
+
+    /**
+     * Get resampling method of the overviews
+     *
+     * @return Resampling method
+     */
+    public Resampling getResampling() {
+        return resampling;
+    }
+
+    /**
+     * Set resampling method of the overviews. The no data and NaN values are
+     * not used by MEAN and MODE.
+     *
+     * @param value Resampling method
+     */
+    public void setResampling(Resampling value) {
+        this.resampling = value;
+    }
+
+    /**
+     * Get written bytes
+     *
+     * @return Written bytes
+     */
+    public long getBytes() {
+        return position;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Add geo key
+     *
+     * @param geokey Geo key
+     */
+    void addGeoKey(GeoKey geokey) {
+        this.geokeys.add(geokey);
+    }
+
+    private void checkNotStarted() {
+        if (this.file != null) {
+            throw new IllegalStateException("The writing is started");
+        }
+    }
+
+    private void start() throws IOException {
+        if (this.closed) {
+            throw new IOException("The writer is closed: " + this.fileName);
+        }
+        if (this.file != null) {
+            return;
+        }
+        this.file = new RandomAccessFile(this.fileName, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.levels.clear();
+        this.levels.add(new Level(width, height, tileWidth, tileHeight));
+    }
+
+    private int getTilesAcross() {
+        return (width + tileWidth - 1) / tileWidth;
+    }
+
+    private int getTilesDown() {
+        return (height + tileHeight - 1) / tileHeight;
+    }
+
+    private int getPixelBytes() {
+        return bandNum * bitsPerSample / 8;
+    }
+
+    /**
+     * Write a block of rows. The rows are following the rows written before,
+     * from the top image row.
+     *
+     * @param data Data array - [rows, width] or [rows, width, band]
+     * @throws IOException
+     */
+    public void writeRows(Array data) throws IOException {
+        if (tileMode) {
+            throw new IllegalStateException("The data is written by tiles");
+        }
+        int[] shape = data.getShape();
+        checkShape(shape, height - rowNum, width);
+        start();
+        int rowBytes = width * getPixelBytes();
+        if (rowBuffer == null) {
+            rowBuffer = new byte[tileHeight * rowBytes];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(rowBuffer).order(byteOrder);
+        IndexIterator ii = data.getIndexIterator();
+        int rowSamples = width * bandNum;
+        for (int r = 0; r < shape[0]; r++) {
+            ((Buffer) buffer).position((rowNum % tileHeight) * rowBytes);
+            for (int i = 0; i < rowSamples; i++) {
+                putSample(buffer, ii);
+            }
+            rowNum += 1;
+            if (rowNum % tileHeight == 0 || rowNum == height) {
+                flushTileRow((rowNum - 1) / tileHeight);
+            }
+        }
+    }
+
+    /**
+     * Write a tile
+     *
+     * @param tileRow Tile row index from the top
+     * @param tileCol Tile column index
+     * @param data Data array - [rows, columns] or [rows, columns, band], the
+     * edge tiles may only have the rows and columns in the image
+     * @throws IOException
+     */
+    public void writeTile(int tileRow, int tileCol, Array data) throws IOException {
+        if (rowNum > 0) {
+            throw new IllegalStateException("The data is written by rows");
+        }
+        if (tileRow < 0 || tileRow >= getTilesDown() || tileCol < 0 || tileCol >= getTilesAcross()) {
+            throw new IllegalArgumentException("Tile index out of range: " + tileRow + ", " + tileCol);
+        }
+        int[] shape = data.getShape();
+        checkShape(shape, tileHeight, Math.min(tileWidth, width - tileCol * tileWidth));
+        tileMode = true;
+        start();
+        int pixelBytes = getPixelBytes();
+        byte[] tile = new byte[tileWidth * tileHeight * pixelBytes];
+        ByteBuffer buffer = ByteBuffer.wrap(tile).order(byteOrder);
+        IndexIterator ii = data.getIndexIterator();
+        int rowSamples = shape[1] * bandNum;
+        for (int r = 0; r < shape[0]; r++) {
+            ((Buffer) buffer).position(r * tileWidth * pixelBytes);
+            for (int i = 0; i < rowSamples; i++) {
+                putSample(buffer, ii);
+            }
+        }
+        writeBlock(levels.get(0), tileRow * getTilesAcross() + tileCol, encodeTile(tile));
+    }
+
+    private void checkShape(int[] shape, int maxRows, int cols) {
+        int rank = bandNum == 1 ? 2 : 3;
+        if (shape.length != rank || shape[0] > maxRows || shape[1] != cols
+                || (rank == 3 && shape[2] != bandNum)) {
+            throw new IllegalArgumentException("The data shape is not right");
+        }
+    }
+
+    private void putSample(ByteBuffer buffer, IndexIterator ii) {
+        switch (dataType) {
+            case BYTE:
+                buffer.put((byte) ii.getIntNext());
+                break;
+            case SHORT:
+                buffer.putShort((short) ii.getIntNext());
+                break;
+            case INT:
+                buffer.putInt(ii.getIntNext());
+                break;
+            case FLOAT:
+                buffer.putFloat(ii.getFloatNext());
+                break;
+            case DOUBLE:
+                buffer.putDouble(ii.getDoubleNext());
+                break;
+        }
+    }
+
+    /**
+     * Split the buffered rows into tiles, encode the tiles in parallel and
+     * write them in order
+     */
+    private void flushTileRow(int tileRow) throws IOException {
+        final int rows = rowNum - tileRow * tileHeight;
+        final int tilesAcross = getTilesAcross();
+        final byte[][] encoded = new byte[tilesAcross][];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int j = 0; j < tilesAcross; j++) {
+            final int tileCol = j;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    encoded[tileCol] = encodeTile(extractTile(rows, tileCol));
+                }
+            });
+        }
+        ParallelUtil.invokeAll(tasks);
+        for (int j = 0; j < tilesAcross; j++) {
+            writeBlock(levels.get(0), tileRow * tilesAcross + j, encoded[j]);
+        }
+    }
+
+    private byte[] extractTile(int rows, int tileCol) {
+        int pixelBytes = getPixelBytes();
+        int rowBytes = width * pixelBytes;
+        int tileRowBytes = tileWidth * pixelBytes;
+        int n = Math.min(tileWidth, width - tileCol * tileWidth) * pixelBytes;
+        byte[] tile = new byte[tileHeight * tileRowBytes];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(rowBuffer, r * rowBytes + tileCol * tileRowBytes, tile, r * tileRowBytes, n);
+        }
+        return tile;
+    }
+
+    private byte[] encodeTile(byte[] tile) {
+        CompressionEncoder encoder = createEncoder();
+        if (encoder == null) {
+            return tile;
+        }
+        if (predictor) {
+            if (sampleFormat == 3) {
+                Predictor.encodeFloatingPoint(tile, byteOrder, tileWidth, tileHeight, bandNum, bitsPerSample / 8);
+            } else {
+                Predictor.encodeHorizontal(tile, byteOrder, tileWidth, tileHeight, bandNum, bitsPerSample / 8);
+            }
+        }
+        return encoder.encode(tile, byteOrder);
+    }
+
+    private CompressionEncoder createEncoder() {
+        switch (compression) {
+            case COMPRESSION_LZW:
+                return new LZWCompression();
+            case COMPRESSION_DEFLATE:
+                return new DeflateCompression();
+        }
+        return null;
+    }
+
+    private void writeBlock(Level level, int idx, byte[] data) throws IOException {
+        write(ByteBuffer.wrap(data), position);
+        level.offsets[idx] = position;
+        level.byteCounts[idx] = data.length;
+        position += data.length;
+        //Keep the blocks word aligned
+        position += position % 2;
+    }
+
+    private void write(ByteBuffer buffer, long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    /**
+     * Build the overviews, each from the tiles of the previous level written
+     * in the file. An overview tile is made of 2 x 2 tiles of the previous
+     * level, so the tiles of a tile row are built in parallel.
+     */
+    private void buildOverviews() throws IOException {
+        int num = overviewNum < 0 ? Integer.MAX_VALUE : overviewNum;
+        for (int k = 0; k < num; k++) {
+            final Level prev = levels.get(levels.size() - 1);
+            if ((prev.width == 1 && prev.height == 1)
+                    || (overviewNum < 0 && prev.width <= tileWidth && prev.height <= tileHeight)) {
+                break;
+            }
+            final Level level = new Level((prev.width + 1) / 2, (prev.height + 1) / 2, tileWidth, tileHeight);
+            levels.add(level);
+            final byte[][] encoded = new byte[level.tilesAcross][];
+            for (int i = 0; i < level.tilesDown; i++) {
+                final int tileRow = i;
+                List<Runnable> tasks = new ArrayList<>();
+                for (int j = 0; j < level.tilesAcross; j++) {
+                    final int tileCol = j;
+                    tasks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                encoded[tileCol] = encodeTile(reduceTile(prev, level, tileRow, tileCol));
+                            } catch (IOException ex) {
+                                throw new IllegalStateException(ex);
+                            }
+                        }
+                    });
+                }
+                try {
+                    ParallelUtil.invokeAll(tasks);
+                } catch (IllegalStateException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw ex;
+                }
+                for (int j = 0; j < level.tilesAcross; j++) {
+                    writeBlock(level, i * level.tilesAcross + j, encoded[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build an overview tile from the 2 x 2 tiles of the previous level
+     */
+    private byte[] reduceTile(Level prev, Level level, int tileRow, int tileCol) throws IOException {
+        CompressionDecoder decoder = createDecoder();
+        ByteBuffer[][] src = new ByteBuffer[2][2];
+        for (int a = 0; a < 2; a++) {
+            for (int b = 0; b < 2; b++) {
+                int r = tileRow * 2 + a;
+                int c = tileCol * 2 + b;
+                if (r < prev.tilesDown && c < prev.tilesAcross) {
+                    src[a][b] = readTile(prev, r * prev.tilesAcross + c, decoder);
+                }
+            }
+        }
+
+        int pixelBytes = getPixelBytes();
+        int sampleBytes = bitsPerSample / 8;
+        byte[] tile = new byte[tileWidth * tileHeight * pixelBytes];
+        ByteBuffer buffer = ByteBuffer.wrap(tile).order(byteOrder);
+        int rows = Math.min(tileHeight, level.height - tileRow * tileHeight);
+        int cols = Math.min(tileWidth, level.width - tileCol * tileWidth);
+        double[] v = new double[4];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                for (int band = 0; band < bandNum; band++) {
+                    int n = 0;
+                    for (int dy = 0; dy < 2; dy++) {
+                        int sy = (tileRow * tileHeight + y) * 2 + dy;
+                        for (int dx = 0; dx < 2; dx++) {
+                            int sx = (tileCol * tileWidth + x) * 2 + dx;
+                            if (sy >= prev.height || sx >= prev.width) {
+                                continue;
+                            }
+                            ByteBuffer s = src[sy / tileHeight - tileRow * 2][sx / tileWidth - tileCol * 2];
+                            if (s != null) {
+                                v[n++] = getSample(s, ((sy % tileHeight) * tileWidth + sx % tileWidth) * pixelBytes
+                                        + band * sampleBytes);
+                            }
+                        }
+                    }
+                    putSample(buffer, (y * tileWidth + x) * pixelBytes + band * sampleBytes, resample(v, n));
+                }
+            }
+        }
+
+        return tile;
+    }
+
+    /**
+     * Resample the values of the pixels of the previous level
+     *
+     * @param v Values
+     * @param n Value number
+     * @return Resampled value
+     */
+    private double resample(double[] v, int n) {
+        double empty = noData == null ? 0 : noDataValue;
+        if (resampling == Resampling.NEAREST) {
+            return n > 0 ? v[0] : empty;
+        }
+
+        //Move the valid values to the front
+        int valid = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(v[i]) && (noData == null || v[i] != noDataValue)) {
+                v[valid++] = v[i];
+            }
+        }
+        if (valid == 0) {
+            return n > 0 ? v[0] : empty;
+        }
+        if (resampling == Resampling.MODE) {
+            double mode = v[0];
+            int maxCount = 0;
+            for (int i = 0; i < valid; i++) {
+                int count = 0;
+                for (int j = 0; j < valid; j++) {
+                    if (v[j] == v[i]) {
+                        count += 1;
+                    }
+                }
+                if (count > maxCount) {
+                    maxCount = count;
+                    mode = v[i];
+                }
+            }
+            return mode;
+        }
+
+        double sum = 0;
+        for (int i = 0; i < valid; i++) {
+            sum += v[i];
+        }
+        double mean = sum / valid;
+        return sampleFormat == 3 ? mean : Math.round(mean);
+    }
+
+    private double getSample(ByteBuffer buffer, int pos) {
+        switch (dataType) {
+            case BYTE:
+                return buffer.get(pos) & 0xFF;
+            case SHORT:
+                return buffer.getShort(pos);
+            case INT:
+                return buffer.getInt(pos);
+            case FLOAT:
+                return buffer.getFloat(pos);
+            default:
+                return buffer.getDouble(pos);
+        }
+    }
+
+    private void putSample(ByteBuffer buffer, int pos, double v) {
+        switch (dataType) {
+            case BYTE:
+                buffer.put(pos, (byte) (int) v);
+                break;
+            case SHORT:
+                buffer.putShort(pos, (short) (int) v);
+                break;
+            case INT:
+                buffer.putInt(pos, (int) v);
+                break;
+            case FLOAT:
+                buffer.putFloat(pos, (float) v);
+                break;
+            case DOUBLE:
+                buffer.putDouble(pos, v);
+                break;
+        }
+    }
+
+    /**
+     * Read back and decode a written tile
+     *
+     * @param level The level of the tile
+     * @param idx Tile index
+     * @param decoder Decoder, null if not compressed
+     * @return Tile data, null if the tile is not written
+     * @throws IOException
+     */
+    private ByteBuffer readTile(Level level, int idx, CompressionDecoder decoder) throws IOException {
+        int count = (int) level.byteCounts[idx];
+        if (count == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, level.offsets[idx] + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of file: " + fileName);
+            }
+        }
+        byte[] bytes = buffer.array();
+        if (decoder != null) {
+            bytes = decoder.decode(bytes, byteOrder);
+            if (predictor) {
+                if (sampleFormat == 3) {
+                    Predictor.decodeFloatingPoint(bytes, byteOrder, tileWidth, tileHeight, bandNum, bitsPerSample / 8);
+                } else {
+                    Predictor.decodeHorizontal(bytes, byteOrder, tileWidth, tileHeight, bandNum, bitsPerSample / 8);
+                }
+            }
+        }
+        return ByteBuffer.wrap(bytes).order(byteOrder);
+    }
+
+    private CompressionDecoder createDecoder() {
+        switch (compression) {
+            case COMPRESSION_LZW:
+                return new LZWCompression(tileWidth * tileHeight * getPixelBytes());
+            case COMPRESSION_DEFLATE:
+                return new DeflateCompression();
+        }
+        return null;
+    }
+
+    /**
+     * Get the tags of a level
+     *
+     * @param level The level
+     * @param big BigTIFF or not
+     * @param overview The level is an overview or not - the overviews have no
+     * geo tags
+     * @return Tags
+     */
+    private List<IFDEntry> getTags(Level level, boolean big, boolean overview) {
+        List<IFDEntry> tags = new ArrayList<>();
+        if (overview) {
+            tags.add(new IFDEntry(Tag.NewSubfileType, FieldType.LONG).setValue(1));
+        }
+        tags.add(new IFDEntry(Tag.ImageWidth, FieldType.LONG).setValue(level.width));
+        tags.add(new IFDEntry(Tag.ImageLength, FieldType.LONG).setValue(level.height));
+        int[] bits = new int[bandNum];
+        int[] formats = new int[bandNum];
+        for (int i = 0; i < bandNum; i++) {
+            bits[i] = bitsPerSample;
+            formats[i] = sampleFormat;
+        }
+        tags.add(new IFDEntry(Tag.BitsPerSample, FieldType.SHORT).setValue(bits));
+        tags.add(new IFDEntry(Tag.Compression, FieldType.SHORT).setValue(compression));
+        tags.add(new IFDEntry(Tag.PhotometricInterpretation, FieldType.SHORT).setValue(1));
+        tags.add(new IFDEntry(Tag.SamplesPerPixel, FieldType.SHORT).setValue(bandNum));
+        tags.add(new IFDEntry(Tag.PlanarConfiguration, FieldType.SHORT).setValue(1));
+        if (predictor && compression != COMPRESSION_NONE) {
+            tags.add(new IFDEntry(Tag.Predictor, FieldType.SHORT).setValue(sampleFormat == 3 ? 3 : 2));
+        }
+        tags.add(new IFDEntry(Tag.TileWidth, FieldType.LONG).setValue(tileWidth));
+        tags.add(new IFDEntry(Tag.TileLength, FieldType.LONG).setValue(tileHeight));
+        if (big) {
+            tags.add(new IFDEntry(Tag.TileOffsets, FieldType.LONG8).setValue(level.offsets));
+            tags.add(new IFDEntry(Tag.TileByteCounts, FieldType.LONG8).setValue(level.byteCounts));
+        } else {
+            tags.add(new IFDEntry(Tag.TileOffsets, FieldType.LONG).setValue(toInts(level.offsets)));
+            tags.add(new IFDEntry(Tag.TileByteCounts, FieldType.LONG).setValue(toInts(level.byteCounts)));
+        }
+        if (bandNum > 1) {
+            tags.add(new IFDEntry(Tag.ExtraSamples, FieldType.SHORT).setValue(new int[bandNum - 1]));
+        }
+        tags.add(new IFDEntry(Tag.SampleFormat, FieldType.SHORT).setValue(formats));
+        if (overview) {
+            if (noData != null) {
+                tags.add(new IFDEntry(Tag.GDALNoData, FieldType.ASCII).setValue(noData + "\0"));
+            }
+            Collections.sort(tags);
+            return tags;
+        }
+        if (transform != null) {
+            tags.add(new IFDEntry(Tag.ModelPixelScaleTag, FieldType.DOUBLE).setValue(
+                    new double[]{transform[2], transform[3], 0.0D}));
+            tags.add(new IFDEntry(Tag.ModelTiepointTag, FieldType.DOUBLE).setValue(
+                    new double[]{0.0D, 0.0D, 0.0D, transform[0], transform[1], 0.0D}));
+        }
+        tags.addAll(GeoTiff.getGeoKeyTags(geokeys));
+        if (noData != null) {
+            tags.add(new IFDEntry(Tag.GDALNoData, FieldType.ASCII).setValue(noData + "\0"));
+        }
+        Collections.sort(tags);
+
+        return tags;
+    }
+
+    private static int[] toInts(long[] v) {
+        int[] r = new int[v.length];
+        for (int i = 0; i < v.length; i++) {
+            r[i] = (int) v[i];
+        }
+        return r;
+    }
+
+    /**
+     * Get value bytes of a tag
+     */
+    private byte[] getValueBytes(IFDEntry ifd) {
+        if (ifd.type == FieldType.ASCII) {
+            return ifd.valueS.getBytes(StandardCharsets.US_ASCII);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(ifd.count * ifd.type.size).order(byteOrder);
+        for (int i = 0; i < ifd.count; i++) {
+            if (ifd.type == FieldType.SHORT) {
+                buffer.putShort((short) ifd.value[i]);
+            } else if (ifd.type == FieldType.LONG) {
+                buffer.putInt(ifd.value[i]);
+            } else if (ifd.type == FieldType.LONG8) {
+                buffer.putLong(ifd.valueL[i]);
+            } else if (ifd.type == FieldType.DOUBLE) {
+                buffer.putDouble(ifd.valueD[i]);
+            } else if (ifd.type == FieldType.FLOAT) {
+                buffer.putFloat((float) ifd.valueD[i]);
+            } else {
+                buffer.put((byte) ifd.value[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Get the bytes of an IFD with the values not in the entries
+     *
+     * @param tags Tags
+     * @param start IFD position
+     * @param next Next IFD position, 0 for the last IFD
+     * @param big BigTIFF or not
+     * @return IFD bytes
+     */
+    private ByteBuffer getIFDBytes(List<IFDEntry> tags, long start, long next, boolean big) {
+        int countSize = big ? 8 : 2;
+        int entrySize = big ? 20 : 12;
+        int inline = big ? 8 : 4;
+        int n = tags.size();
+        int ifdSize = countSize + n * entrySize + inline;
+        List<byte[]> values = new ArrayList<>(n);
+        int size = ifdSize;
+        for (IFDEntry ifd : tags) {
+            byte[] v = getValueBytes(ifd);
+            values.add(v);
+            if (v.length > inline) {
+                size += v.length + v.length % 2;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(byteOrder);
+        if (big) {
+            buffer.putLong(n);
+        } else {
+            buffer.putShort((short) n);
+        }
+        int extra = ifdSize;
+        for (int i = 0; i < n; i++) {
+            IFDEntry ifd = tags.get(i);
+            byte[] v = values.get(i);
+            buffer.putShort((short) ifd.tag.getCode());
+            buffer.putShort((short) ifd.type.code);
+            if (big) {
+                buffer.putLong(v.length / ifd.type.size);
+            } else {
+                buffer.putInt(v.length / ifd.type.size);
+            }
+            if (v.length <= inline) {
+                buffer.put(v);
+                for (int k = v.length; k < inline; k++) {
+                    buffer.put((byte) 0);
+                }
+            } else {
+                if (big) {
+                    buffer.putLong(start + extra);
+                } else {
+                    buffer.putInt((int) (start + extra));
+                }
+                int pos = buffer.position();
+                ((Buffer) buffer).position(extra);
+                buffer.put(v);
+                ((Buffer) buffer).position(pos);
+                extra += v.length + v.length % 2;
+            }
+        }
+        if (big) {
+            buffer.putLong(next);
+        } else {
+            buffer.putInt((int) next);
+        }
+        ((Buffer) buffer).position(size);
+        ((Buffer) buffer).flip();
+
+        return buffer;
+    }
+
+    /**
+     * Flush the buffered rows, build the overviews, write the IFDs and the
+     * header and close the file. The tiles not written are left empty. Closing
+     * a closed writer has no effect.
+     *
+     * @throws IOException If the file is larger than 4 GB and BigTIFF is
+     * disabled, or writing failed
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        start();
+        closed = true;
+        try {
+            if (rowNum % tileHeight != 0 && rowNum < height) {
+                flushTileRow(rowNum / tileHeight);
+            }
+            buildOverviews();
+
+            long ifdStart = position;
+            boolean big = bigTIFF != null && bigTIFF;
+            if (!big) {
+                long size = 0;
+                for (int i = 0; i < levels.size(); i++) {
+                    size += getIFDBytes(getTags(levels.get(i), false, i > 0), 0, 0, false).limit();
+                }
+                if (ifdStart + size > CLASSIC_LIMIT) {
+                    if (bigTIFF != null) {
+                        //The 32 bit offsets of classic TIFF can not be truncated
+                        throw new IOException("The file is larger than 4 GB, it can not be written "
+                                + "without BigTIFF: " + fileName);
+                    }
+                    big = true;
+                }
+            }
+            //The IFD of the full resolution image is the first, followed by
+            //the IFDs of the overviews
+            long pos = ifdStart;
+            for (int i = 0; i < levels.size(); i++) {
+                List<IFDEntry> tags = getTags(levels.get(i), big, i > 0);
+                int size = getIFDBytes(tags, pos, 0, big).limit();
+                long next = i < levels.size() - 1 ? pos + size : 0;
+                ByteBuffer ifd = getIFDBytes(tags, pos, next, big);
+                write(ifd, pos);
+                pos += size;
+            }
+            position = pos;
+
+            ByteBuffer header = ByteBuffer.allocate(big ? 16 : 8).order(byteOrder);
+            header.put((byte) (byteOrder == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+            header.put((byte) (byteOrder == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+            if (big) {
+                header.putShort((short) 43);
+                header.putShort((short) 8);
+                header.putShort((short) 0);
+                header.putLong(ifdStart);
+            } else {
+                header.putShort((short) 42);
+                header.putInt((int) ifdStart);
+            }
+            ((Buffer) header).flip();
+            write(header, 0);
+        } finally {
+            channel.close();
+            file.close();
+        }
+    }
+    // </editor-fold>
+
+    /**
+     * Tiles of the full resolution image or an overview
+     */
+    private static class Level {
+
+        final int width;
+        final int height;
+        final int tilesAcross;
+        final int tilesDown;
+        final long[] offsets;
+        final long[] byteCounts;
+
+        Level(int width, int height, int tileWidth, int tileHeight) {
+            this.width = width;
+            this.height = height;
+            this.tilesAcross = (width + tileWidth - 1) / tileWidth;
+            this.tilesDown = (height + tileHeight - 1) / tileHeight;
+            this.offsets = new long[tilesAcross * tilesDown];
+            this.byteCounts = new long[tilesAcross * tilesDown];
+        }
+    }
+}
@@ -27,6 +27,7 @@ public class IFDEntry implements Comparable{
     protected FieldType type;
     protected int count;
     protected int[] value;
+    protected long[] valueL;
     protected double[] valueD;
     protected String valueS;
     protected List<GeoKey> geokeys = null;
@@ -116,6 +117,18 @@ public class IFDEntry implements Comparable{
         return this;
     }
 
+    /**
+     * Set value
+     *
+     * @param v Long value array
+     * @return IFDEntry
+     */
+    public IFDEntry setValue(long[] v) {
+        this.count = v.length;
+        this.valueL = ((long[]) v.clone());
+        return this;
+    }
+
     /**
      * Set value
      *
@@ -212,6 +225,11 @@ public class IFDEntry implements Comparable{
                 }
                 sbuf.append(new StringBuilder().append(this.value[i]).append("/").append(this.value[(i + 1)]).toString());
             }
+        } else if (this.type == FieldType.LONG8) {
+            int n = Math.min(this.count, 30);
+            for (int i = 0; i < n; i++) {
+                sbuf.append(new StringBuilder().append(this.valueL[i]).append(" ").toString());
+            }
         } else if ((this.type == FieldType.DOUBLE) || (this.type == FieldType.FLOAT)) {
             for (int i = 0; i < this.count; i++) {
                 sbuf.append(new StringBuilder().append(this.valueD[i]).append(" ").toString());
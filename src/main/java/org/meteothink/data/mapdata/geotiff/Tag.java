@@ -43,11 +43,13 @@ public class Tag implements Comparable {
     public static final Tag ResolutionUnit = new Tag("ResolutionUnit", 296);
     public static final Tag PageNumber = new Tag("PageNumber", 297);
     public static final Tag Software = new Tag("Software", 305);
+    public static final Tag Predictor = new Tag("Predictor", 317);
     public static final Tag ColorMap = new Tag("ColorMap", 320);
     public static final Tag TileWidth = new Tag("TileWidth", 322);
     public static final Tag TileLength = new Tag("TileLength", 323);
     public static final Tag TileOffsets = new Tag("TileOffsets", 324);
     public static final Tag TileByteCounts = new Tag("TileByteCounts", 325);
+    public static final Tag ExtraSamples = new Tag("ExtraSamples", 338);
     public static final Tag SampleFormat = new Tag("SampleFormat", 339);
     public static final Tag SMinSampleValue = new Tag("SMinSampleValue", 340);
     public static final Tag SMaxSampleValue = new Tag("SMaxSampleValue", 341);
@@ -0,0 +1,368 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.mapdata.geotiff;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.meteothink.data.mapdata.geotiff.compression.CompressionDecoder;
+import org.meteothink.data.mapdata.geotiff.compression.DeflateCompression;
+import org.meteothink.data.mapdata.geotiff.compression.LZWCompression;
+import org.meteothink.data.mapdata.geotiff.compression.Predictor;
+import org.meteothink.ndarray.DataType;
+
+/**
+ * Data layout of a TIFF image (IFD). Strips are handled as tiles of the image
+ * width, so a block is a tile or a strip.
+ *
+ * @author Yaqiang Wang
+ */
+class TiffImage {
+
+    // <editor-fold desc="Variables">
+    private final int width;
+    private final int height;
+    private final int samplesPerPixel;
+    private final int bitsPerSample;
+    private final int sampleFormat;
+    private final int compression;
+    private final int planarConfig;
+    private final int predictor;
+    private final boolean tiled;
+    private final int blockWidth;
+    private final int blockHeight;
+    private final int blocksAcross;
+    private final int blocksDown;
+    private final long[] offsets;
+    private final long[] byteCounts;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param tags The tags of the image
+     * @throws IOException
+     */
+    TiffImage(List<IFDEntry> tags) throws IOException {
+        this.width = getInt(tags, Tag.ImageWidth, 0);
+        this.height = getInt(tags, Tag.ImageLength, 0);
+        this.samplesPerPixel = getInt(tags, Tag.SamplesPerPixel, 1);
+        this.bitsPerSample = getInt(tags, Tag.BitsPerSample, 1);
+        this.sampleFormat = getInt(tags, Tag.SampleFormat, 1);
+        this.compression = getInt(tags, Tag.Compression, 1);
+        this.planarConfig = getInt(tags, Tag.PlanarConfiguration, 1);
+        this.predictor = getInt(tags, Tag.Predictor, 1);
+        IFDEntry offsetTag = find(tags, Tag.TileOffsets);
+        IFDEntry countTag;
+        if (offsetTag != null) {
+            this.tiled = true;
+            this.blockWidth = getInt(tags, Tag.TileWidth, width);
+            this.blockHeight = getInt(tags, Tag.TileLength, height);
+            countTag = find(tags, Tag.TileByteCounts);
+        } else {
+            this.tiled = false;
+            offsetTag = find(tags, Tag.StripOffsets);
+            this.blockWidth = width;
+            this.blockHeight = Math.min(height, getInt(tags, Tag.RowsPerStrip, height));
+            countTag = find(tags, Tag.StripByteCounts);
+        }
+        if (offsetTag == null || countTag == null || width <= 0 || height <= 0) {
+            throw new IOException("The image has no data blocks");
+        }
+        this.blocksAcross = (width + blockWidth - 1) / blockWidth;
+        this.blocksDown = (height + blockHeight - 1) / blockHeight;
+        this.offsets = getLongs(offsetTag);
+        this.byteCounts = getLongs(countTag);
+        if (offsets.length < getBlockNum() || byteCounts.length < getBlockNum()) {
+            throw new IOException("The block number of the image is not right");
+        }
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get image width
+     *
+     * @return Image width
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get image height
+     *
+     * @return Image height
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get samples per pixel (band number)
+     *
+     * @return Samples per pixel
+     */
+    int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    /**
+     * Get bits per sample
+     *
+     * @return Bits per sample
+     */
+    int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * Get bytes per sample
+     *
+     * @return Bytes per sample
+     */
+    int getBytesPerSample() {
+        return bitsPerSample / 8;
+    }
+
+    /**
+     * Get sample format - 1: unsigned integer, 2: signed integer, 3: floating
+     * point
+     *
+     * @return Sample format
+     */
+    int getSampleFormat() {
+        return sampleFormat;
+    }
+
+    /**
+     * Get predictor - 1: none, 2: horizontal differencing, 3: floating point
+     *
+     * @return Predictor
+     */
+    int getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Get if the bands are stored as separate planes
+     *
+     * @return Boolean
+     */
+    boolean isPlanar() {
+        return planarConfig == 2 && samplesPerPixel > 1;
+    }
+
+    /**
+     * Get if the image is tiled
+     *
+     * @return Boolean
+     */
+    boolean isTiled() {
+        return tiled;
+    }
+
+    /**
+     * Get block width
+     *
+     * @return Block width
+     */
+    int getBlockWidth() {
+        return blockWidth;
+    }
+
+    /**
+     * Get block height
+     *
+     * @return Block height
+     */
+    int getBlockHeight() {
+        return blockHeight;
+    }
+
+    /**
+     * Get horizontal block number
+     *
+     * @return Horizontal block number
+     */
+    int getBlocksAcross() {
+        return blocksAcross;
+    }
+
+    /**
+     * Get vertical block number
+     *
+     * @return Vertical block number
+     */
+    int getBlocksDown() {
+        return blocksDown;
+    }
+
+    /**
+     * Get block number of a plane
+     *
+     * @return Block number
+     */
+    int getBlockNum() {
+        return blocksAcross * blocksDown;
+    }
+
+    /**
+     * Get sample number of a block pixel
+     *
+     * @return Sample number
+     */
+    int getBlockSamples() {
+        return isPlanar() ? 1 : samplesPerPixel;
+    }
+
+    /**
+     * Get decoded byte number of a block
+     *
+     * @return Byte number
+     */
+    int getBlockBytes() {
+        return blockWidth * blockHeight * getBlockSamples() * getBytesPerSample();
+    }
+
+    /**
+     * Get file offset of a block
+     *
+     * @param idx Block index
+     * @return File offset
+     */
+    long getOffset(int idx) {
+        return offsets[idx];
+    }
+
+    /**
+     * Get stored byte number of a block
+     *
+     * @param idx Block index
+     * @return Byte number
+     */
+    long getByteCount(int idx) {
+        return byteCounts[idx];
+    }
+
+    /**
+     * Get data type of the read array
+     *
+     * @return Data type
+     * @throws IOException
+     */
+    DataType getDataType() throws IOException {
+        switch (bitsPerSample) {
+            case 8:
+            case 16:
+                return DataType.INT;
+            case 32:
+                return sampleFormat == 3 ? DataType.FLOAT : DataType.INT;
+            case 64:
+                if (sampleFormat == 3) {
+                    return DataType.DOUBLE;
+                }
+                break;
+        }
+        throw new IOException("Not supported bits per sample: " + bitsPerSample);
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Create a decoder of the image compression
+     *
+     * @return Decoder, null if the image is not compressed
+     * @throws IOException
+     */
+    CompressionDecoder createDecoder() throws IOException {
+        switch (compression) {
+            case 1:
+                return null;
+            case 5:
+                return new LZWCompression(getBlockBytes());
+            case 8:
+            case 32946:
+                return new DeflateCompression();
+        }
+        throw new IOException("Not supported compression: " + compression);
+    }
+
+    /**
+     * Undo the predictor of a decoded block
+     *
+     * @param bytes Decoded block bytes
+     * @param byteOrder Byte order
+     * @throws IOException
+     */
+    void unpredict(byte[] bytes, ByteOrder byteOrder) throws IOException {
+        switch (predictor) {
+            case 1:
+                break;
+            case 2:
+                Predictor.decodeHorizontal(bytes, byteOrder, blockWidth, blockHeight, getBlockSamples(),
+                        getBytesPerSample());
+                break;
+            case 3:
+                Predictor.decodeFloatingPoint(bytes, byteOrder, blockWidth, blockHeight, getBlockSamples(),
+                        getBytesPerSample());
+                break;
+            default:
+                throw new IOException("Not supported predictor: " + predictor);
+        }
+    }
+
+    /**
+     * Get block index
+     *
+     * @param plane Plane index (band of separate planes)
+     * @param blockRow Block row
+     * @param blockCol Block column
+     * @return Block index
+     */
+    int getBlockIndex(int plane, int blockRow, int blockCol) {
+        return plane * getBlockNum() + blockRow * blocksAcross + blockCol;
+    }
+
+    private static IFDEntry find(List<IFDEntry> tags, Tag tag) {
+        for (IFDEntry ifd : tags) {
+            if (ifd.tag == tag) {
+                return ifd;
+            }
+        }
+        return null;
+    }
+
+    private static int getInt(List<IFDEntry> tags, Tag tag, int def) {
+        IFDEntry ifd = find(tags, tag);
+        if (ifd == null || ifd.value == null || ifd.value.length == 0) {
+            return def;
+        }
+        return ifd.value[0];
+    }
+
+    private static long[] getLongs(IFDEntry ifd) {
+        if (ifd.valueL != null) {
+            return ifd.valueL;
+        }
+        long[] r = new long[ifd.count];
+        for (int i = 0; i < ifd.count; i++) {
+            //LONG values are unsigned
+            r[i] = ifd.value[i] & 0xFFFFFFFFL;
+        }
+        return r;
+    }
+    // </editor-fold>
+}
@@ -5,15 +5,15 @@
  */
 package org.meteothink.data.mapdata.geotiff.compression;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.logging.Logger;
 import java.nio.ByteOrder;
-import java.io.ByteArrayOutputStream;
 import java.util.logging.Level;
 
 /**
- * LZW Compression
+ * LZW Compression. The code table is kept in flat int arrays (prefix code,
+ * suffix byte, string length and first byte of each code) created for each
+ * call, so one instance can be used by several threads.
  *
  * @author osbornb
  */
@@ -35,253 +35,261 @@ public class LZWCompression implements CompressionDecoder, CompressionEncoder {
      */
     private static final int EOI_CODE = 257;
 
+    /**
+     * First code of the strings
+     */
+    private static final int FIRST_CODE = 258;
+
     /**
      * Min bits
      */
     private static final int MIN_BITS = 9;
 
     /**
-     * Table entries
+     * Max bits
      */
-    private Map<Integer, Integer[]> table = new HashMap<>();
+    private static final int MAX_BITS = 12;
 
     /**
-     * Current max table code
+     * Table size
      */
-    private int maxCode;
+    private static final int TABLE_SIZE = 1 << MAX_BITS;
 
     /**
-     * Current byte length
+     * Hash table size of the encoder - a prime larger than twice the table
+     * size
      */
-    private int byteLength;
+    private static final int HASH_SIZE = 9973;
 
     /**
-     * Current byte compression position
+     * Decoded byte number if known (the tile or strip size), 0 if unknown
      */
-    private int position;
+    private final int decodedSize;
+
+    /**
+     * Constructor
+     */
+    public LZWCompression() {
+        this(0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param decodedSize Decoded byte number of a tile or strip, 0 if unknown
+     */
+    public LZWCompression(int decodedSize) {
+        this.decodedSize = Math.max(0, decodedSize);
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public byte[] decode(byte[] bytes, ByteOrder byteOrder) {
+        return decode(bytes, decodedSize);
+    }
 
-        // Create the byte reader and decoded stream to write to
-        ByteReader reader = new ByteReader(bytes, byteOrder);
-        ByteArrayOutputStream decodedStream = new ByteArrayOutputStream();
-
-        // Initialize the table, starting position, and old code
-        initializeTable();
-        position = 0;
-        int oldCode = 0;
+    /**
+     * Decode the bytes
+     *
+     * @param bytes bytes to decode
+     * @param size decoded byte number, decoding stops when it is reached - 0
+     * if unknown
+     * @return decoded bytes
+     */
+    public byte[] decode(byte[] bytes, int size) {
+        int[] prefix = new int[TABLE_SIZE];
+        int[] suffix = new int[TABLE_SIZE];
+        int[] length = new int[TABLE_SIZE];
+        int[] first = new int[TABLE_SIZE];
+        for (int i = 0; i < 256; i++) {
+            prefix[i] = -1;
+            suffix[i] = i;
+            length[i] = 1;
+            first[i] = i;
+        }
 
-        // Read codes until end of input
-        int code = getNextCode(reader);
-        while (code != EOI_CODE) {
+        byte[] out = new byte[size > 0 ? size : Math.max(1024, bytes.length * 4)];
+        int pos = 0;
+        int nextCode = FIRST_CODE;
+        int bits = MIN_BITS;
+        int oldCode = -1;
+        int in = 0;
+        int acc = 0;
+        int accBits = 0;
+        while (size <= 0 || pos < size) {
+            // Read the next code, the bits are from the most significant
+            while (accBits < bits && in < bytes.length) {
+                acc = (acc << 8) | (bytes[in++] & 0xFF);
+                accBits += 8;
+            }
+            if (accBits < bits) {
+                logger.log(Level.WARNING,
+                        "End of data reached without an end of input code");
+                break;
+            }
+            accBits -= bits;
+            int code = (acc >>> accBits) & ((1 << bits) - 1);
+            acc &= (1 << accBits) - 1;
 
-            // If a clear code
+            if (code == EOI_CODE) {
+                break;
+            }
             if (code == CLEAR_CODE) {
+                nextCode = FIRST_CODE;
+                bits = MIN_BITS;
+                oldCode = -1;
+                continue;
+            }
 
-                // Reset the table
-                initializeTable();
-
-                // Read past clear codes
-                code = getNextCode(reader);
-                while (code == CLEAR_CODE) {
-                    code = getNextCode(reader);
-                }
-                if (code == EOI_CODE) {
-                    break;
-                }
-                if (code > CLEAR_CODE) {
+            if (oldCode < 0) {
+                if (code > 255) {
                     throw new TiffException("Corrupted code at scan line: "
                             + code);
                 }
-
-                // Write the code value
-                Integer[] value = table.get(code);
-                writeValue(decodedStream, value);
-                oldCode = code;
-
             } else {
-
-                // If already in the table
-                Integer[] value = table.get(code);
-                if (value != null) {
-
-                    // Write the code value
-                    writeValue(decodedStream, value);
-
-                    // Create new value and add to table
-                    Integer[] newValue = concat(table.get(oldCode),
-                            table.get(code)[0]);
-                    addToTable(newValue);
-                    oldCode = code;
-
-                } else {
-
-                    // Create and write new value from old value
-                    Integer[] oldValue = table.get(oldCode);
-                    Integer[] newValue = concat(oldValue, oldValue[0]);
-                    writeValue(decodedStream, newValue);
-
-                    // Write value to the table
-                    addToTable(code, newValue);
-                    oldCode = code;
+                if (code > nextCode) {
+                    throw new TiffException("Corrupted code at scan line: "
+                            + code);
+                }
+                // The new string is the old string and the first byte of
+                // the code string (or of the old string if the code is new)
+                if (nextCode < TABLE_SIZE) {
+                    prefix[nextCode] = oldCode;
+                    suffix[nextCode] = code == nextCode ? first[oldCode] : first[code];
+                    length[nextCode] = length[oldCode] + 1;
+                    first[nextCode] = first[oldCode];
+                    nextCode++;
+                }
+                if (nextCode >= (1 << bits) - 1 && bits < MAX_BITS) {
+                    bits++;
                 }
             }
 
-            // Get the next code
-            code = getNextCode(reader);
+            // Write the code string backwards from its last byte
+            int len = length[code];
+            if (pos + len > out.length) {
+                out = Arrays.copyOf(out, Math.max(pos + len, out.length * 2));
+            }
+            for (int i = pos + len - 1, c = code; i >= pos; i--) {
+                out[i] = (byte) suffix[c];
+                c = prefix[c];
+            }
+            pos += len;
+            oldCode = code;
         }
 
-        byte[] decoded = decodedStream.toByteArray();
-
-        return decoded;
+        if (size > 0) {
+            return out.length == size ? out : Arrays.copyOf(out, size);
+        }
+        return pos == out.length ? out : Arrays.copyOf(out, pos);
     }
 
     /**
-     * Initialize the table and byte length
+     * {@inheritDoc}
      */
-    private void initializeTable() {
-        table.clear();
-        for (int i = 0; i <= 257; i++) {
-            table.put(i, new Integer[]{i});
-        }
-        maxCode = 257;
-        byteLength = MIN_BITS;
+    @Override
+    public boolean rowEncoding() {
+        return false;
     }
 
     /**
-     * Check the byte length and increase if needed
+     * {@inheritDoc}
      */
-    private void checkByteLength() {
-        if (maxCode >= Math.pow(2, byteLength) - 2) {
-            byteLength++;
+    @Override
+    public byte[] encode(byte[] bytes, ByteOrder byteOrder) {
+        CodeWriter writer = new CodeWriter(bytes.length / 2 + 16);
+        int[] hashKeys = new int[HASH_SIZE];
+        int[] hashCodes = new int[HASH_SIZE];
+        Arrays.fill(hashKeys, -1);
+        int nextCode = FIRST_CODE;
+        int bits = MIN_BITS;
+        writer.write(CLEAR_CODE, bits);
+        if (bytes.length == 0) {
+            writer.write(EOI_CODE, bits);
+            return writer.toByteArray();
         }
-    }
 
-    /**
-     * Add the value to the table
-     *
-     * @param value value
-     */
-    private void addToTable(Integer[] value) {
-        addToTable(maxCode + 1, value);
-    }
+        int code = bytes[0] & 0xFF;
+        for (int i = 1; i < bytes.length; i++) {
+            int c = bytes[i] & 0xFF;
+            int key = (code << 8) | c;
+            int h = key % HASH_SIZE;
+            while (hashKeys[h] >= 0 && hashKeys[h] != key) {
+                h = h + 1 == HASH_SIZE ? 0 : h + 1;
+            }
+            if (hashKeys[h] == key) {
+                code = hashCodes[h];
+                continue;
+            }
 
-    /**
-     * Add the code and value to the table
-     *
-     * @param code code
-     * @param value value
-     */
-    private void addToTable(int code, Integer[] value) {
-        table.put(code, value);
-        maxCode = Math.max(maxCode, code);
-        checkByteLength();
-    }
+            writer.write(code, bits);
+            hashKeys[h] = key;
+            hashCodes[h] = nextCode++;
+            // The decoder adds its entries one code later, so the code
+            // length is increased one code later than its early change
+            if (nextCode == (1 << bits) && bits < MAX_BITS) {
+                bits++;
+            }
+            if (nextCode >= TABLE_SIZE - 2) {
+                writer.write(CLEAR_CODE, bits);
+                Arrays.fill(hashKeys, -1);
+                nextCode = FIRST_CODE;
+                bits = MIN_BITS;
+            }
+            code = c;
+        }
 
-    /**
-     * Concatenate the two values
-     *
-     * @param first first value
-     * @param second second value
-     * @return concatenated value
-     */
-    private Integer[] concat(Integer[] first, Integer second) {
-        return concat(first, new Integer[]{second});
-    }
+        writer.write(code, bits);
+        nextCode++;
+        if (nextCode == (1 << bits) && bits < MAX_BITS) {
+            bits++;
+        }
+        writer.write(EOI_CODE, bits);
 
-    /**
-     * Concatenate the two values
-     *
-     * @param first first value
-     * @param second second value
-     * @return concatenated value
-     */
-    private Integer[] concat(Integer[] first, Integer[] second) {
-        Integer[] combined = new Integer[first.length + second.length];
-        System.arraycopy(first, 0, combined, 0, first.length);
-        System.arraycopy(second, 0, combined, first.length, second.length);
-        return combined;
+        return writer.toByteArray();
     }
 
     /**
-     * Write the value to the decoded stream
-     *
-     * @param decodedStream decoded byte stream
-     * @param value value
+     * Writer of the codes, the bits are from the most significant
      */
-    private void writeValue(ByteArrayOutputStream decodedStream, Integer[] value) {
-        for (int i = 0; i < value.length; i++) {
-            decodedStream.write(value[i]);
-        }
-    }
+    private static class CodeWriter {
 
-    /**
-     * Get the next code
-     *
-     * @param reader byte reader
-     * @return code
-     */
-    private int getNextCode(ByteReader reader) {
-        int nextByte = getByte(reader);
-        position += byteLength;
-        return nextByte;
-    }
+        private byte[] out;
+        private int pos = 0;
+        private int acc = 0;
+        private int accBits = 0;
 
-    /**
-     * Get the next byte
-     *
-     * @param reader byte reader
-     * @return byte
-     */
-    private int getByte(ByteReader reader) {
-
-        int d = position % 8;
-        int a = (int) Math.floor(position / 8.0);
-        int de = 8 - d;
-        int ef = (position + byteLength) - ((a + 1) * 8);
-        int fg = 8 * (a + 2) - (position + byteLength);
-        int dg = (a + 2) * 8 - position;
-        fg = Math.max(0, fg);
-        if (a >= reader.byteLength()) {
-            logger.log(Level.WARNING,
-                    "End of data reached without an end of input code");
-            return EOI_CODE;
-        }
-        int chunk1 = ((int) reader.readUnsignedByte(a))
-                & ((int) (Math.pow(2, 8 - d) - 1));
-        chunk1 = chunk1 << (byteLength - de);
-        int chunks = chunk1;
-        if (a + 1 < reader.byteLength()) {
-            int chunk2 = reader.readUnsignedByte(a + 1) >>> fg;
-            chunk2 = chunk2 << Math.max(0, byteLength - dg);
-            chunks += chunk2;
+        CodeWriter(int capacity) {
+            this.out = new byte[capacity];
         }
-        if (ef > 8 && a + 2 < reader.byteLength()) {
-            int hi = (a + 3) * 8 - (position + byteLength);
-            int chunk3 = reader.readUnsignedByte(a + 2) >>> hi;
-            chunks += chunk3;
+
+        void write(int code, int bits) {
+            acc = (acc << bits) | code;
+            accBits += bits;
+            while (accBits >= 8) {
+                accBits -= 8;
+                put((acc >>> accBits) & 0xFF);
+            }
+            acc &= (1 << accBits) - 1;
         }
-        return chunks;
-    }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean rowEncoding() {
-        return false;
-    }
+        private void put(int b) {
+            if (pos == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            out[pos++] = (byte) b;
+        }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public byte[] encode(byte[] bytes, ByteOrder byteOrder) {
-        throw new TiffException("LZW encoder is not yet implemented");
+        byte[] toByteArray() {
+            if (accBits > 0) {
+                put((acc << (8 - accBits)) & 0xFF);
+                accBits = 0;
+                acc = 0;
+            }
+            return Arrays.copyOf(out, pos);
+        }
     }
 
 }
@@ -0,0 +1,167 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.mapdata.geotiff.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * TIFF predictors applied to the rows of a block before compression:
+ * horizontal differencing (predictor 2) of integer samples and floating
+ * point predictor (predictor 3) of the byte planes of floating point samples.
+ * The bytes are changed in place.
+ *
+ * @author Yaqiang Wang
+ */
+public class Predictor {
+
+    // <editor-fold desc="Methods">
+    /**
+     * Apply horizontal differencing
+     *
+     * @param bytes Block bytes
+     * @param byteOrder Byte order
+     * @param width Block width
+     * @param rows Row number
+     * @param samples Samples per pixel
+     * @param bytesPerSample Bytes per sample
+     */
+    public static void encodeHorizontal(byte[] bytes, ByteOrder byteOrder, int width, int rows,
+            int samples, int bytesPerSample) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(byteOrder);
+        int n = width * samples;
+        int rowBytes = n * bytesPerSample;
+        int d = samples * bytesPerSample;
+        for (int r = 0; r < rows && (r + 1) * rowBytes <= bytes.length; r++) {
+            int start = r * rowBytes + d;
+            for (int p = (r + 1) * rowBytes - bytesPerSample; p >= start; p -= bytesPerSample) {
+                switch (bytesPerSample) {
+                    case 1:
+                        bytes[p] = (byte) (bytes[p] - bytes[p - d]);
+                        break;
+                    case 2:
+                        buffer.putShort(p, (short) (buffer.getShort(p) - buffer.getShort(p - d)));
+                        break;
+                    case 4:
+                        buffer.putInt(p, buffer.getInt(p) - buffer.getInt(p - d));
+                        break;
+                    case 8:
+                        buffer.putLong(p, buffer.getLong(p) - buffer.getLong(p - d));
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Undo horizontal differencing
+     *
+     * @param bytes Block bytes
+     * @param byteOrder Byte order
+     * @param width Block width
+     * @param rows Row number
+     * @param samples Samples per pixel
+     * @param bytesPerSample Bytes per sample
+     */
+    public static void decodeHorizontal(byte[] bytes, ByteOrder byteOrder, int width, int rows,
+            int samples, int bytesPerSample) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(byteOrder);
+        int n = width * samples;
+        int rowBytes = n * bytesPerSample;
+        int d = samples * bytesPerSample;
+        for (int r = 0; r < rows && (r + 1) * rowBytes <= bytes.length; r++) {
+            int end = (r + 1) * rowBytes;
+            for (int p = r * rowBytes + d; p < end; p += bytesPerSample) {
+                switch (bytesPerSample) {
+                    case 1:
+                        bytes[p] = (byte) (bytes[p] + bytes[p - d]);
+                        break;
+                    case 2:
+                        buffer.putShort(p, (short) (buffer.getShort(p) + buffer.getShort(p - d)));
+                        break;
+                    case 4:
+                        buffer.putInt(p, buffer.getInt(p) + buffer.getInt(p - d));
+                        break;
+                    case 8:
+                        buffer.putLong(p, buffer.getLong(p) + buffer.getLong(p - d));
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply floating point predictor - the bytes of a row are split into
+     * planes from the most significant byte, then differenced
+     *
+     * @param bytes Block bytes
+     * @param byteOrder Byte order
+     * @param width Block width
+     * @param rows Row number
+     * @param samples Samples per pixel
+     * @param bytesPerSample Bytes per sample
+     */
+    public static void encodeFloatingPoint(byte[] bytes, ByteOrder byteOrder, int width, int rows,
+            int samples, int bytesPerSample) {
+        int n = width * samples;
+        int rowBytes = n * bytesPerSample;
+        boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+        byte[] tmp = new byte[rowBytes];
+        for (int r = 0; r < rows && (r + 1) * rowBytes <= bytes.length; r++) {
+            int start = r * rowBytes;
+            for (int i = 0; i < n; i++) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    int k = bigEndian ? b : bytesPerSample - 1 - b;
+                    tmp[b * n + i] = bytes[start + i * bytesPerSample + k];
+                }
+            }
+            for (int k = rowBytes - 1; k >= samples; k--) {
+                tmp[k] = (byte) (tmp[k] - tmp[k - samples]);
+            }
+            System.arraycopy(tmp, 0, bytes, start, rowBytes);
+        }
+    }
+
+    /**
+     * Undo floating point predictor
+     *
+     * @param bytes Block bytes
+     * @param byteOrder Byte order
+     * @param width Block width
+     * @param rows Row number
+     * @param samples Samples per pixel
+     * @param bytesPerSample Bytes per sample
+     */
+    public static void decodeFloatingPoint(byte[] bytes, ByteOrder byteOrder, int width, int rows,
+            int samples, int bytesPerSample) {
+        int n = width * samples;
+        int rowBytes = n * bytesPerSample;
+        boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+        byte[] tmp = new byte[rowBytes];
+        for (int r = 0; r < rows && (r + 1) * rowBytes <= bytes.length; r++) {
+            int start = r * rowBytes;
+            System.arraycopy(bytes, start, tmp, 0, rowBytes);
+            for (int k = samples; k < rowBytes; k++) {
+                tmp[k] = (byte) (tmp[k] + tmp[k - samples]);
+            }
+            for (int i = 0; i < n; i++) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    int k = bigEndian ? b : bytesPerSample - 1 - b;
+                    bytes[start + i * bytesPerSample + k] = tmp[b * n + i];
+                }
+            }
+        }
+    }
+    // </editor-fold>
+}
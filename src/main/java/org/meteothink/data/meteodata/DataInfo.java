@@ -47,6 +47,8 @@ public abstract class DataInfo {
     private double _missingValue = -9999.0;
     private CoordinateReferenceSystem crs = KnownCoordinateSystems.geographic.world.WGS1984;
     protected MeteoDataType dataType;
+    private TimeAxis timeAxis = null;
+    private List<Double> timeAxisValues = null;
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -71,6 +73,56 @@ public abstract class DataInfo {
         _fileName = name;
     }
 
+    /**
+     * Get the files the data is read from, which is the file of the data info
+     * by default. The slice cache checks these files for changes.
+     *
+     * @return Data file names
+     */
+    public List<String> getDataFileNames() {
+        List<String> fileNames = new ArrayList<>();
+        if (_fileName != null) {
+            fileNames.add(_fileName);
+        }
+        return fileNames;
+    }
+
+    /**
+     * Get the files a section of a variable is read from, which are all the
+     * data files by default
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Data file names
+     */
+    public List<String> getDataFileNames(String varName, int[] origin, int[] size, int[] stride) {
+        return getDataFileNames();
+    }
+
+    /**
+     * Get the read options changing the values read from the same file, such
+     * as byte order or the fill value of unpacking. The slice cache keeps the
+     * slices of different options apart.
+     *
+     * @return Read options
+     */
+    public String getReadOptions() {
+        return "";
+    }
+
+    /**
+     * Get if the data info can be read by several threads at the same time.
+     * Most readers share a file pointer or header state, so it is false by
+     * default.
+     *
+     * @return Boolean
+     */
+    public boolean isParallelRead() {
+        return false;
+    }
+
     /**
      * Get variables
      *
@@ -96,7 +148,7 @@ public abstract class DataInfo {
      */
     public List<Variable> getPlottableVariables() {
         List<Variable> vars = new ArrayList<>();
-        for (Variable var : _variables) {
+        for (Variable var : this.getVariables()) {
             if (var.isPlottable()) {
                 vars.add(var);
             }
@@ -129,7 +181,7 @@ public abstract class DataInfo {
      * @return Variable number
      */
     public int getVariableNum() {
-        return _variables.size();
+        return this.getVariables().size();
     }
 
     /**
@@ -139,7 +191,7 @@ public abstract class DataInfo {
      */
     public List<String> getVariableNames() {
         List<String> names = new ArrayList<>();
-        for (Variable var : _variables) {
+        for (Variable var : this.getVariables()) {
             names.add(var.getName());
         }
 
@@ -152,13 +204,52 @@ public abstract class DataInfo {
      * @return Times
      */
     public List<Date> getTimes() {
-        List<Double> values = _tDim.getDimValue();
-        List<Date> times = new ArrayList<>();
-        for (Double v : values) {
-            times.add(DateUtil.fromOADate(v));
+        return this.getTimeAxis().getTimes();
+    }
+
+    /**
+     * Get time axis - the times are decoded once and cached until
+     * resetTimeAxis() is called or the time dimension values are replaced
+     *
+     * @return Time axis
+     */
+    public synchronized TimeAxis getTimeAxis() {
+        List<Double> values = this.getTimeDimension().getDimValue();
+        if (timeAxis == null || values != timeAxisValues || values.size() != timeAxis.size()) {
+            timeAxis = new TimeAxis(values);
+            timeAxisValues = values;
         }
 
-        return times;
+        return timeAxis;
+    }
+
+    /**
+     * Reset the cached time axis. It must be called after the values of the
+     * time dimension are changed without setTimes() or setTimeDimension().
+     */
+    public synchronized void resetTimeAxis() {
+        timeAxis = null;
+        timeAxisValues = null;
+    }
+
+    /**
+     * Get time index
+     *
+     * @param time The time
+     * @return Time index, -1 if the time is not found
+     */
+    public int getTimeIndex(Date time) {
+        return this.getTimeAxis().indexOf(time);
+    }
+
+    /**
+     * Get the index of the nearest time
+     *
+     * @param time The time
+     * @return Time index
+     */
+    public int getNearestTimeIndex(Date time) {
+        return this.getTimeAxis().nearestIndex(time);
     }
 
     /**
@@ -168,7 +259,7 @@ public abstract class DataInfo {
      * @return Time
      */
     public Date getTime(int timeIdx) {
-        return DateUtil.fromOADate(_tDim.getDimValue().get(timeIdx));
+        return this.getTimeAxis().getTime(timeIdx);
     }
     
     /**
@@ -222,16 +313,12 @@ public abstract class DataInfo {
      * @return Time values
      */
     public List<Integer> getTimeValues(Date baseDate, String tDelta) {
-        List<Date> times = this.getTimes();
+        long[] times = this.getTimeAxis().getMillis();
         List<Integer> values = new ArrayList<>();
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(baseDate);
-        long sl = cal.getTimeInMillis();
-        long el, delta;
+        long sl = baseDate.getTime();
+        long delta;
         int value;
-        for (Date time : times) {
-            cal.setTime(time);
-            el = cal.getTimeInMillis();
+        for (long el : times) {
             delta = el - sl;
             if (tDelta.equalsIgnoreCase("hours")) {
                 value = (int) (delta / (60 * 60 * 1000));
@@ -257,6 +344,7 @@ public abstract class DataInfo {
             values.add(DateUtil.toOADate(t));
         }
         _tDim.setValues(values);
+        resetTimeAxis();
     }
 
     /**
@@ -282,8 +370,9 @@ public abstract class DataInfo {
      *
      * @param tDim Time dimension
      */
-    public void setTimeDimension(Dimension tDim) {
+    public synchronized void setTimeDimension(Dimension tDim) {
         _tDim = tDim;
+        resetTimeAxis();
     }
 
     /**
@@ -466,6 +555,12 @@ public abstract class DataInfo {
      */
     public void readDataInfo(String fileName, boolean keepOpen){    };
 
+    /**
+     * Close the data files opened by reading
+     */
+    public void close() {
+    }
+
     /**
      * Generate data info text
      *
@@ -561,7 +656,7 @@ public abstract class DataInfo {
      * @return The variable
      */
     public Variable getVariable(String varName) {
-        for (Variable var : _variables) {
+        for (Variable var : this.getVariables()) {
             if (var.getName().equalsIgnoreCase(varName)) {
                 return var;
             }
@@ -29,6 +29,7 @@ import org.meteothink.data.meteodata.micaps.MICAPSDataInfo;
 import org.meteothink.data.meteodata.netcdf.NetCDFDataInfo;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -172,6 +173,9 @@ public class MeteoDataInfo {
      * @return Data info text
      */
     public String getInfoText() {
+        if (_infoText == null && _dataInfo != null) {
+            _infoText = _dataInfo.generateInfoText();
+        }
         return _infoText;
     }
 
@@ -193,6 +197,15 @@ public class MeteoDataInfo {
         _timeIdx = value;
     }
 
+    /**
+     * Set time index by the nearest time of the data
+     *
+     * @param time The time
+     */
+    public void setTimeIndex(Date time) {
+        _timeIdx = _dataInfo.getNearestTimeIndex(time);
+    }
+
     /**
      * Get level index
      *
@@ -432,16 +445,7 @@ public class MeteoDataInfo {
      * @param fileName File name
      */
     public void openData(String fileName) {
-        try {
-            boolean canOpen = NetcdfFile.canOpen(fileName);
-            if (canOpen) {
-                this.openNetCDFData(fileName);
-            } else if (ARLDataInfo.canOpen(fileName)) {
-                this.openARLData(fileName);
-            }
-        } catch (IOException ex) {
-            Logger.getLogger(MeteoDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        this.openData(fileName, false, false);
     }
 
     /**
@@ -451,10 +455,22 @@ public class MeteoDataInfo {
      * @param keepOpen Keep the file opened or not
      */
     public void openData(String fileName, boolean keepOpen) {
+        this.openData(fileName, keepOpen, false);
+    }
+
+    /**
+     * Open data file
+     *
+     * @param fileName File name
+     * @param keepOpen Keep the file opened or not
+     * @param headerOnly Only read the header of a netCDF/GRIB file, the times,
+     * projection and coordinate values are resolved on first access
+     */
+    public void openData(String fileName, boolean keepOpen, boolean headerOnly) {
         try {
             boolean canOpen = NetcdfFile.canOpen(fileName);
             if (canOpen) {
-                this.openNetCDFData(fileName, keepOpen);
+                this.openNetCDFData(fileName, keepOpen, headerOnly);
             } else if (ARLDataInfo.canOpen(fileName)) {
                 this.openARLData(fileName);
             }
@@ -477,16 +493,7 @@ public class MeteoDataInfo {
      * Close opened file
      */
     public void close() {
-        if (this._dataInfo.getDataType() == MeteoDataType.NetCDF) {
-            NetCDFDataInfo dinfo = (NetCDFDataInfo) this._dataInfo;
-            if (dinfo.getFile() != null) {
-                try {
-                    dinfo.getFile().close();
-                } catch (IOException ex) {
-                    Logger.getLogger(MeteoDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-        }
+        this._dataInfo.close();
     }
 
     /**
@@ -515,7 +522,18 @@ public class MeteoDataInfo {
      * @param aFile File path
      */
     public void openARLData(String aFile) {
+        openARLData(aFile, false);
+    }
+
+    /**
+     * Open ARL packed meteorological data
+     *
+     * @param aFile File path
+     * @param indexCache If cache the time index in a sidecar file
+     */
+    public void openARLData(String aFile, boolean indexCache) {
         ARLDataInfo aDataInfo = new ARLDataInfo();
+        aDataInfo.setIndexCache(indexCache);
         aDataInfo.readDataInfo(aFile);
         _dataInfo = aDataInfo;
         IsLonLat = aDataInfo.isLatLon;
@@ -735,10 +753,24 @@ public class MeteoDataInfo {
      * @param keepOpen Keep file opened or not
      */
     public void openNetCDFData(String fileName, boolean keepOpen) {
+        this.openNetCDFData(fileName, keepOpen, false);
+    }
+
+    /**
+     * Open NetCDF data
+     *
+     * @param fileName File path
+     * @param keepOpen Keep file opened or not
+     * @param headerOnly Only read the file header, the times, projection and
+     * coordinate values are resolved on first access
+     */
+    public void openNetCDFData(String fileName, boolean keepOpen, boolean headerOnly) {
         NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
+        aDataInfo.setHeaderOnly(headerOnly);
         aDataInfo.readDataInfo(fileName, keepOpen);
         _dataInfo = aDataInfo;
-        _infoText = aDataInfo.generateInfoText();
+        //The information text is generated by getInfoText() in header only mode
+        _infoText = headerOnly ? null : aDataInfo.generateInfoText();
     }
 
     /**
@@ -902,6 +934,22 @@ public class MeteoDataInfo {
      * @return Array data
      */
     public DimArray read(String varName) {
+        if (SliceCache.isEnabled()) {
+            Variable var = this._dataInfo.getVariable(varName);
+            if (var != null) {
+                int n = var.getDimNumber();
+                int[] origin = new int[n];
+                int[] size = new int[n];
+                int[] stride = new int[n];
+                for (int i = 0; i < n; i++) {
+                    origin[i] = 0;
+                    size[i] = var.getDimLength(i);
+                    stride[i] = 1;
+                }
+                return SliceCache.read(this._dataInfo, varName, origin, size, stride);
+            }
+        }
+
         return this._dataInfo.read(varName);
     }
 
@@ -915,6 +963,10 @@ public class MeteoDataInfo {
      * @return Array data
      */
     public DimArray read(String varName, int[] origin, int[] size, int[] stride) {
+        if (SliceCache.isEnabled()) {
+            return SliceCache.read(this._dataInfo, varName, origin, size, stride);
+        }
+
         return this._dataInfo.read(varName, origin, size, stride);
     }
 
@@ -967,7 +1019,7 @@ public class MeteoDataInfo {
             }
         }
 
-        return this._dataInfo.read(varName, origin_a, size_a, stride_a);
+        return this.read(varName, origin_a, size_a, stride_a);
     }
 
     /**
@@ -0,0 +1,399 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DataType;
+import org.meteothink.ndarray.DimArray;
+import org.meteothink.ndarray.InvalidRangeException;
+import org.meteothink.ndarray.MAMath;
+import org.meteothink.ndarray.Range;
+import org.meteothink.ndarray.Section;
+
+/**
+ * Process wide LRU cache of decoded 2D (Y/X) slices. The cache size is
+ * bounded by bytes and the slices are keyed by canonical file path, the read
+ * options of the data info, variable name, the modified time and length of the
+ * data files the slice is read from, the indices of the leading dimensions and
+ * the Y/X window, so a changed data file never hits old slices. The cache is
+ * disabled until the maximum bytes is set.
+ *
+ * @author Yaqiang Wang
+ */
+public class SliceCache {
+
+    // <editor-fold desc="Variables">
+    private static final LinkedHashMap<String, Slice> slices = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<DataInfo, String[]> paths = new WeakHashMap<>();
+    private static long maxBytes = 0;
+    private static long bytes = 0;
+    private static long hitCount = 0;
+    private static long missCount = 0;
+    private static long evictionCount = 0;
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the cache is enabled
+     *
+     * @return Boolean
+     */
+    public static synchronized boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Get maximum bytes
+     *
+     * @return Maximum bytes
+     */
+    public static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set maximum bytes, 0 to disable the cache
+     *
+     * @param value Maximum bytes
+     */
+    public static synchronized void setMaxBytes(long value) {
+        maxBytes = Math.max(0, value);
+        evict();
+    }
+
+    /**
+     * Get the bytes of the cached slices
+     *
+     * @return Bytes
+     */
+    public static synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get cached slice number
+     *
+     * @return Slice number
+     */
+    public static synchronized int getSliceNum() {
+        return slices.size();
+    }
+
+    /**
+     * Get hit count
+     *
+     * @return Hit count
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get miss count
+     *
+     * @return Miss count
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get eviction count
+     *
+     * @return Eviction count
+     */
+    public static synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Remove all cached slices
+     */
+    public static synchronized void clear() {
+        slices.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Reset hit, miss and eviction counters
+     */
+    public static synchronized void resetCounters() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    private static synchronized Slice get(String key) {
+        Slice slice = slices.get(key);
+        if (slice == null) {
+            missCount += 1;
+        } else {
+            hitCount += 1;
+        }
+
+        return slice;
+    }
+
+    private static synchronized void put(String key, Slice slice) {
+        Slice old = slices.put(key, slice);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += slice.bytes;
+        evict();
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<String, Slice>> it = slices.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictionCount += 1;
+        }
+    }
+
+    private static long getBytes(Object storage) {
+        int n = java.lang.reflect.Array.getLength(storage);
+        Class<?> type = storage.getClass().getComponentType();
+        if (type == double.class || type == long.class) {
+            return n * 8L;
+        } else if (type == float.class || type == int.class) {
+            return n * 4L;
+        } else if (type == short.class || type == char.class) {
+            return n * 2L;
+        } else {
+            return n;
+        }
+    }
+
+    /**
+     * Read array data of a variable through the cache. The data is read by
+     * the data info if any of the 2D slices is not cached, and then all the
+     * slices are cached.
+     *
+     * @param dataInfo The data info
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Array data
+     */
+    public static DimArray read(DataInfo dataInfo, String varName, int[] origin, int[] size, int[] stride) {
+        String path = getCanonicalPath(dataInfo);
+        Variable var = dataInfo.getVariable(varName);
+        int rank = origin.length;
+        if (path == null || var == null || rank < 2) {
+            return dataInfo.read(varName, origin, size, stride);
+        }
+        for (int s : stride) {
+            if (s <= 0) {
+                return dataInfo.read(varName, origin, size, stride);
+            }
+        }
+
+        try {
+            Section section = new Section(origin, size, stride);
+            int[] shape = section.getShape();
+            int sliceSize = shape[rank - 2] * shape[rank - 1];
+            int sliceNum = 1;
+            for (int i = 0; i < rank - 2; i++) {
+                sliceNum *= shape[i];
+            }
+            if (sliceSize == 0) {
+                sliceNum = 0;
+            }
+            String prefix = path + "|" + dataInfo.getReadOptions() + "|" + varName;
+            String[] keys = getSliceKeys(dataInfo, varName, prefix, section, sliceNum);
+            if (keys == null) {
+                return dataInfo.read(varName, origin, size, stride);
+            }
+
+            //Look up the slices
+            Slice[] cached = new Slice[sliceNum];
+            boolean hit = sliceNum > 0;
+            for (int i = 0; i < sliceNum; i++) {
+                cached[i] = get(keys[i]);
+                if (cached[i] == null || (cached[0] != null && cached[i].dataType != cached[0].dataType)) {
+                    hit = false;
+                }
+            }
+            if (hit) {
+                Array data = Array.factory(cached[0].dataType, shape);
+                Object dest = data.getStorage();
+                for (int i = 0; i < sliceNum; i++) {
+                    System.arraycopy(cached[i].storage, 0, dest, i * sliceSize, sliceSize);
+                }
+                return new DimArray(data.reduce(), var.getDimensions(section));
+            }
+
+            //Read and cache the slices
+            DimArray r = dataInfo.read(varName, origin, size, stride);
+            if (r == null) {
+                return null;
+            }
+            Array a = r.getArray();
+            if (a.getSize() != (long) sliceNum * sliceSize) {
+                return r;
+            }
+            //The slices are copied from the storage of a contiguous array
+            Object src = a.getStorage();
+            if (!src.getClass().isArray() || java.lang.reflect.Array.getLength(src) != a.getSize()) {
+                Array data = Array.factory(a.getDataType(), shape);
+                MAMath.copy(data, a);
+                src = data.getStorage();
+            }
+            Class<?> type = src.getClass().getComponentType();
+            if (!type.isPrimitive()) {
+                return r;
+            }
+            long n = getBytes(src);
+            if (n > getMaxBytes()) {
+                return r;
+            }
+            for (int i = 0; i < sliceNum; i++) {
+                Object storage = java.lang.reflect.Array.newInstance(type, sliceSize);
+                System.arraycopy(src, i * sliceSize, storage, 0, sliceSize);
+                put(keys[i], new Slice(a.getDataType(), storage, n / sliceNum));
+            }
+
+            return r;
+        } catch (InvalidRangeException ex) {
+            Logger.getLogger(SliceCache.class.getName()).log(Level.SEVERE, null, ex);
+            return dataInfo.read(varName, origin, size, stride);
+        }
+    }
+
+    /**
+     * Get the canonical path of the data info file, which is kept for the data
+     * info until its file name is changed
+     */
+    private static String getCanonicalPath(DataInfo dataInfo) {
+        String fileName = dataInfo.getFileName();
+        if (fileName == null) {
+            return null;
+        }
+        synchronized (paths) {
+            String[] path = paths.get(dataInfo);
+            if (path != null && path[0].equals(fileName)) {
+                return path[1];
+            }
+        }
+        File file = new File(fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            String path = file.getCanonicalPath();
+            synchronized (paths) {
+                paths.put(dataInfo, new String[]{fileName, path});
+            }
+            return path;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the keys of the slices. Each key has the modified time and length of
+     * the data files the slice is read from, which may not be the data info
+     * file (such as the data file of a time of a GrADS template), a file is
+     * checked once for the slices of a read. Null if the data files are not
+     * known.
+     */
+    private static String[] getSliceKeys(DataInfo dataInfo, String varName, String prefix, Section section,
+            int sliceNum) {
+        int rank = section.getRank();
+        Range yRange = section.getRange(rank - 2);
+        Range xRange = section.getRange(rank - 1);
+        String window = "|" + yRange.first() + ":" + yRange.last() + ":" + yRange.stride()
+                + "|" + xRange.first() + ":" + xRange.last() + ":" + xRange.stride();
+        String[] keys = new String[sliceNum];
+        Map<String, String> stamps = new HashMap<>();
+        int[] counter = new int[rank - 2];
+        int[] sOrigin = new int[rank];
+        int[] sSize = new int[rank];
+        int[] sStride = new int[rank];
+        sOrigin[rank - 2] = yRange.first();
+        sSize[rank - 2] = yRange.last() - yRange.first() + 1;
+        sStride[rank - 2] = yRange.stride();
+        sOrigin[rank - 1] = xRange.first();
+        sSize[rank - 1] = xRange.last() - xRange.first() + 1;
+        sStride[rank - 1] = xRange.stride();
+        for (int i = 0; i < sliceNum; i++) {
+            StringBuilder idx = new StringBuilder();
+            for (int j = 0; j < rank - 2; j++) {
+                Range r = section.getRange(j);
+                sOrigin[j] = r.first() + counter[j] * r.stride();
+                sSize[j] = 1;
+                sStride[j] = 1;
+                idx.append("|").append(sOrigin[j]);
+            }
+            List<String> dataFileNames = dataInfo.getDataFileNames(varName, sOrigin, sSize, sStride);
+            if (dataFileNames == null || dataFileNames.isEmpty()) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder(prefix);
+            for (String dataFileName : dataFileNames) {
+                String stamp = stamps.get(dataFileName);
+                if (stamp == null) {
+                    //A missing data file has 0 modified time and length
+                    File dataFile = new File(dataFileName);
+                    stamp = "|" + dataFile.getAbsolutePath() + "|" + dataFile.lastModified() + "|"
+                            + dataFile.length();
+                    stamps.put(dataFileName, stamp);
+                }
+                sb.append(stamp);
+            }
+            sb.append(idx).append(window);
+            keys[i] = sb.toString();
+
+            //Next slice - the last leading dimension varies fastest
+            for (int j = rank - 3; j >= 0; j--) {
+                counter[j] += 1;
+                if (counter[j] < section.getRange(j).length()) {
+                    break;
+                }
+                counter[j] = 0;
+            }
+        }
+
+        return keys;
+    }
+    // </editor-fold>
+
+    private static class Slice {
+
+        final DataType dataType;
+        final Object storage;
+        final long bytes;
+
+        Slice(DataType dataType, Object storage, long bytes) {
+            this.dataType = dataType;
+            this.storage = storage;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,624 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ucar.nc2.NetcdfFile;
+import org.meteothink.data.meteodata.arl.ARLDataInfo;
+import org.meteothink.data.util.ParallelUtil;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DimArray;
+import org.meteothink.ndarray.Dimension;
+import org.meteothink.ndarray.DimensionType;
+import org.meteothink.ndarray.IndexIterator;
+import org.meteothink.ndarray.InvalidRangeException;
+import org.meteothink.ndarray.Range;
+import org.meteothink.ndarray.Section;
+
+/**
+ * Data info of several data files virtually joined along the time dimension.
+ * The files are sorted by their first time and should have the same
+ * variables and other dimensions. A read allocates the result array once and
+ * the part of each file is read directly into its offset, the files are read
+ * in parallel if parallel reading is enabled. The variables without time
+ * dimension are read from the first file.
+ *
+ * @author Yaqiang Wang
+ */
+public class TimeAggregationDataInfo extends DataInfo {
+
+    // <editor-fold desc="Variables">
+    private List<DataInfo> dataInfos = new ArrayList<>();
+    private List<String> fileNames = new ArrayList<>();
+    private int[] timeStarts = new int[0];
+    private int timeNum = 0;
+    private Dimension tDim = null;
+    private List<Variable> timeVars = new ArrayList<>();
+    private static final Comparator<DataInfo> FIRST_TIME = new Comparator<DataInfo>() {
+        @Override
+        public int compare(DataInfo a, DataInfo b) {
+            return Long.compare(a.getTimeAxis().getMillis(0), b.getTimeAxis().getMillis(0));
+        }
+    };
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     */
+    public TimeAggregationDataInfo() {
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get the data infos of the files in time order
+     *
+     * @return Data infos
+     */
+    public List<DataInfo> getDataInfos() {
+        return dataInfos;
+    }
+
+    /**
+     * Get the file names in time order
+     *
+     * @return File names
+     */
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    /**
+     * Get the start time index of each file
+     *
+     * @return Start time indices
+     */
+    public int[] getTimeStarts() {
+        return timeStarts;
+    }
+
+    /**
+     * Get global attributes - of the first file
+     *
+     * @return Global attributes
+     */
+    @Override
+    public List<Attribute> getGlobalAttributes() {
+        return dataInfos.isEmpty() ? new ArrayList<Attribute>() : dataInfos.get(0).getGlobalAttributes();
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Read data info. The file name may have wildcards (* and ?) in the file
+     * name part to join all the matched files of the folder.
+     *
+     * @param fileName File name
+     */
+    @Override
+    public void readDataInfo(String fileName) {
+        File file = new File(fileName);
+        String name = file.getName();
+        List<String> fns = new ArrayList<>();
+        if (name.contains("*") || name.contains("?")) {
+            File dir = file.getAbsoluteFile().getParentFile();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), name)) {
+                for (Path path : stream) {
+                    fns.add(path.toString());
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(TimeAggregationDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } else {
+            fns.add(fileName);
+        }
+        readDataInfo(fns);
+    }
+
+    /**
+     * Read data info of the files. The files are opened in parallel and only
+     * their headers are read if they are netCDF/GRIB files, the time axes
+     * are resolved in the same parallel tasks. Only netCDF/GRIB/HDF and ARL
+     * files are supported, the data infos of other formats can be joined by
+     * setDataInfos().
+     *
+     * @param fileNames File names
+     */
+    public void readDataInfo(List<String> fileNames) {
+        final DataInfo[] dis = new DataInfo[fileNames.size()];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < dis.length; i++) {
+            final int idx = i;
+            final String fn = fileNames.get(i);
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!NetcdfFile.canOpen(fn) && !ARLDataInfo.canOpen(fn)) {
+                            throw new IllegalArgumentException("Not supported data format to join by time "
+                                    + "(netCDF/GRIB/HDF or ARL): " + fn);
+                        }
+                    } catch (IOException ex) {
+                        throw new IllegalArgumentException("Can not open data file: " + fn, ex);
+                    }
+                    MeteoDataInfo meteoData = new MeteoDataInfo();
+                    meteoData.openData(fn, false, true);
+                    DataInfo di = meteoData.getDataInfo();
+                    if (di == null) {
+                        throw new IllegalArgumentException("Can not open data file: " + fn);
+                    }
+                    di.setFileName(fn);
+                    //Resolve the time axis here, so the files are not resolved
+                    //one by one by setDataInfos()
+                    if (di.getTimeDimension() != null && di.getTimeNum() > 0) {
+                        di.getTimeAxis();
+                    }
+                    dis[idx] = di;
+                }
+            });
+        }
+        try {
+            ParallelUtil.invokeAll(tasks);
+        } catch (RuntimeException ex) {
+            //Close the files opened before the failure
+            for (DataInfo di : dis) {
+                if (di != null) {
+                    di.close();
+                }
+            }
+            throw ex;
+        }
+
+        List<DataInfo> infos = new ArrayList<>();
+        Collections.addAll(infos, dis);
+        setDataInfos(infos);
+    }
+
+    /**
+     * Set the data infos of opened files and join them. The data infos are
+     * closed by close().
+     *
+     * @param infos Data infos
+     */
+    public void setDataInfos(List<DataInfo> infos) {
+        if (infos.isEmpty()) {
+            throw new IllegalArgumentException("No data file to join");
+        }
+
+        this.dataInfos = new ArrayList<>();
+        this.tDim = null;
+        addDataInfos(infos);
+    }
+
+    /**
+     * Add the data infos of opened files to the joined files. Only the new
+     * files are checked, the joined variables are kept and their time
+     * dimension is extended. The data infos are closed by close().
+     *
+     * @param infos Data infos
+     */
+    public void addDataInfos(List<DataInfo> infos) {
+        if (infos.isEmpty()) {
+            return;
+        }
+
+        //Sort the new files by their first time
+        List<DataInfo> added = new ArrayList<>(infos);
+        for (DataInfo di : added) {
+            if (di.getTimeDimension() == null || di.getTimeNum() == 0) {
+                throw new IllegalArgumentException("No time dimension: " + di.getFileName());
+            }
+        }
+        Collections.sort(added, FIRST_TIME);
+        if (this.tDim == null) {
+            initJoin(added.get(0));
+        }
+        for (Variable var : timeVars) {
+            int tIdx = getTimeDimIndex(var);
+            for (DataInfo di : added) {
+                checkVariable(var, tIdx, di);
+            }
+        }
+
+        //Merge them into the joined files
+        List<DataInfo> merged = new ArrayList<>(dataInfos.size() + added.size());
+        int i = 0, j = 0;
+        while (i < dataInfos.size() || j < added.size()) {
+            if (j == added.size() || (i < dataInfos.size()
+                    && FIRST_TIME.compare(dataInfos.get(i), added.get(j)) <= 0)) {
+                merged.add(dataInfos.get(i++));
+            } else {
+                merged.add(added.get(j++));
+            }
+        }
+        this.dataInfos = merged;
+
+        //Join the time axes
+        List<TimeAxis> axes = new ArrayList<>();
+        timeStarts = new int[merged.size()];
+        timeNum = 0;
+        fileNames = new ArrayList<>();
+        for (int k = 0; k < merged.size(); k++) {
+            DataInfo di = merged.get(k);
+            timeStarts[k] = timeNum;
+            timeNum += di.getTimeNum();
+            axes.add(di.getTimeAxis());
+            fileNames.add(di.getFileName());
+        }
+        tDim.setValues(TimeAxis.concat(axes).getValues());
+        resetTimeAxis();
+        for (Variable var : timeVars) {
+            var.resetShape();
+        }
+    }
+
+    /**
+     * Set the variables and dimensions of the joined files from the first
+     * file, the time dimension is replaced by the joined one
+     */
+    private void initJoin(DataInfo first) {
+        Dimension ftDim = first.getTimeDimension();
+        tDim = new Dimension(DimensionType.T);
+        tDim.setShortName(ftDim.getShortName());
+        tDim.setValues(first.getTimeAxis().getValues());
+
+        List<Variable> vars = new ArrayList<>();
+        timeVars = new ArrayList<>();
+        for (Variable var : first.getVariables()) {
+            int tIdx = getTimeDimIndex(var);
+            if (tIdx < 0) {
+                vars.add(var);
+                continue;
+            }
+            Variable nvar = (Variable) var.clone();
+            nvar.setName(var.getName());
+            nvar.setDataType(var.getDataType());
+            nvar.getAttributes().addAll(var.getAttributes());
+            nvar.setFillValue(var.getFillValue());
+            nvar.setScaleFactor(var.getScaleFactor());
+            nvar.setAddOffset(var.getAddOffset());
+            nvar.setStation(var.isStation());
+            nvar.setSwath(var.isSwath());
+            List<Dimension> dims = new ArrayList<>(var.getDimensions());
+            dims.set(tIdx, tDim);
+            nvar.setDimensions(dims);
+            nvar.resetShape();
+            vars.add(nvar);
+            timeVars.add(nvar);
+        }
+
+        List<Dimension> dims = new ArrayList<>();
+        for (Dimension dim : first.getDimensions()) {
+            dims.add(dim == ftDim ? tDim : dim);
+        }
+        if (!dims.contains(tDim)) {
+            dims.add(0, tDim);
+        }
+
+        this.setDimensions(dims);
+        this.setVariables(vars);
+        for (Attribute attr : first.getGlobalAttributes()) {
+            this.addAttribute(attr);
+        }
+        this.setTimeDimension(tDim);
+        this.setXDimension(first.getXDimension());
+        this.setYDimension(first.getYDimension());
+        this.setZDimension(first.getZDimension());
+        this.setXReverse(first.isXReverse());
+        this.setYReverse(first.isYReverse());
+        this.setGlobal(first.isGlobal());
+        this.setMissingValue(first.getMissingValue());
+        this.setCRS(first.getCRS());
+        this.setDataType(first.getDataType());
+    }
+
+    private static int getTimeDimIndex(Variable var) {
+        for (int i = 0; i < var.getDimNumber(); i++) {
+            if (var.getDimension(i).getDimType() == DimensionType.T) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void checkVariable(Variable var, int tIdx, DataInfo di) {
+        Variable v = di.getVariable(var.getName());
+        if (v == null) {
+            throw new IllegalArgumentException("Variable " + var.getName() + " not exist in " + di.getFileName());
+        }
+        if (v.getDimNumber() != var.getDimNumber() || getTimeDimIndex(v) != tIdx) {
+            throw new IllegalArgumentException("Dimensions of variable " + var.getName() + " are different in "
+                    + di.getFileName());
+        }
+        for (int i = 0; i < var.getDimNumber(); i++) {
+            if (i != tIdx && v.getDimLength(i) != var.getDimLength(i)) {
+                throw new IllegalArgumentException("Dimension " + var.getDimension(i).getShortName()
+                        + " of variable " + var.getName() + " is different in " + di.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Get the file index of a time index
+     *
+     * @param timeIdx Time index
+     * @return File index
+     */
+    public int getFileIndex(int timeIdx) {
+        int lo = 0, hi = timeStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (timeStarts[mid] <= timeIdx) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Get if the data info can be read by several threads at the same time -
+     * all the data files can be
+     *
+     * @return Boolean
+     */
+    @Override
+    public boolean isParallelRead() {
+        for (DataInfo di : dataInfos) {
+            if (!di.isParallelRead()) {
+                return false;
+            }
+        }
+        return !dataInfos.isEmpty();
+    }
+
+    /**
+     * Close the data files
+     */
+    @Override
+    public void close() {
+        for (DataInfo di : dataInfos) {
+            di.close();
+        }
+    }
+
+    @Override
+    public String generateInfoText() {
+        String text = super.generateInfoText();
+        int idx = text.indexOf(System.getProperty("line.separator"));
+        String head = "File Names: " + fileNames.size() + " files";
+        if (!fileNames.isEmpty()) {
+            head += " (" + fileNames.get(0) + " ... " + fileNames.get(fileNames.size() - 1) + ")";
+        }
+
+        return idx < 0 ? head : head + text.substring(idx);
+    }
+
+    /**
+     * Read array data of a variable
+     *
+     * @param varName Variable name
+     * @return Array data
+     */
+    @Override
+    public DimArray read(String varName) {
+        Variable var = this.getVariable(varName);
+        if (var == null) {
+            return null;
+        }
+        int n = var.getDimNumber();
+        int[] origin = new int[n];
+        int[] size = new int[n];
+        int[] stride = new int[n];
+        for (int i = 0; i < n; i++) {
+            size[i] = var.getDimLength(i);
+            stride[i] = 1;
+        }
+
+        return read(varName, origin, size, stride);
+    }
+
+    /**
+     * Read array data of a variable
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Array data
+     */
+    @Override
+    public DimArray read(final String varName, int[] origin, int[] size, int[] stride) {
+        Variable var = this.getVariable(varName);
+        if (var == null) {
+            return null;
+        }
+        final int tIdx = getTimeDimIndex(var);
+        if (tIdx < 0) {
+            return readFile(dataInfos.get(0), varName, origin, size, stride);
+        }
+
+        try {
+            //A reversed time selection is read forward and flipped, the other
+            //reversed dimensions are flipped by the file reads
+            boolean flip = stride[tIdx] < 0;
+            int tStride = Math.abs(stride[tIdx]);
+            int[] rStride = stride.clone();
+            rStride[tIdx] = tStride;
+            int[] pStride = new int[stride.length];
+            for (int i = 0; i < stride.length; i++) {
+                pStride[i] = Math.abs(stride[i]);
+            }
+            Section section = new Section(origin, size, pStride);
+            Range tRange = section.getRange(tIdx);
+            int tCount = tRange.length();
+            int outer = 1, inner = 1;
+            for (int i = 0; i < tIdx; i++) {
+                outer *= section.getRange(i).length();
+            }
+            for (int i = tIdx + 1; i < section.getRank(); i++) {
+                inner *= section.getRange(i).length();
+            }
+
+            //The part of each file - time offset in the result and file range
+            List<int[]> parts = new ArrayList<>();
+            int pos = 0;
+            int t = tRange.first();
+            while (t <= tRange.last()) {
+                int fIdx = getFileIndex(t);
+                int fStart = timeStarts[fIdx];
+                int fEnd = fIdx + 1 < timeStarts.length ? timeStarts[fIdx + 1] : timeNum;
+                int last = Math.min(tRange.last(), fEnd - 1);
+                int n = (last - t) / tStride + 1;
+                parts.add(new int[]{fIdx, t - fStart, n, pos});
+                pos += n;
+                t += n * tStride;
+            }
+
+            //The dimensions of a reversed selection have reversed time values
+            List<Dimension> dims = var.getDimensions(section);
+            if (flip && tCount > 1) {
+                int dIdx = 0;
+                for (int i = 0; i < tIdx; i++) {
+                    if (section.getRange(i).length() > 1) {
+                        dIdx += 1;
+                    }
+                }
+                Dimension dim = dims.get(dIdx);
+                List<Double> values = new ArrayList<>(dim.getDimValue());
+                Collections.reverse(values);
+                Dimension rDim = new Dimension(DimensionType.T);
+                rDim.setShortName(dim.getShortName());
+                rDim.setValues(values);
+                dims.set(dIdx, rDim);
+            }
+
+            //A single forward part is the result
+            final int[] fOrigin = origin.clone();
+            final int[] fSize = size.clone();
+            final int[] fStride = rStride;
+            if (parts.size() == 1 && !flip) {
+                return new DimArray(readPart(varName, tIdx, parts.get(0), fOrigin, fSize, fStride), dims);
+            }
+
+            //The parts are read in parallel and each is copied to its offset
+            //of the result, which is created by the first part read
+            final int[] shape = section.getShape();
+            final int fOuter = outer, fInner = inner, fTCount = tCount;
+            final boolean fFlip = flip;
+            final Array[] result = new Array[1];
+            List<Runnable> tasks = new ArrayList<>();
+            for (final int[] p : parts) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        Array a = readPart(varName, tIdx, p, fOrigin, fSize, fStride);
+                        Array r;
+                        synchronized (result) {
+                            if (result[0] == null) {
+                                result[0] = Array.factory(a.getDataType(), shape);
+                            }
+                            r = result[0];
+                        }
+                        copyPart(a, r, p[3], p[2], fOuter, fInner, fTCount, fFlip);
+                    }
+                });
+            }
+            ParallelUtil.invokeAll(tasks);
+
+            return new DimArray(result[0].reduce(), dims);
+        } catch (InvalidRangeException ex) {
+            Logger.getLogger(TimeAggregationDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    private Array readPart(String varName, int tIdx, int[] part, int[] origin, int[] size, int[] stride) {
+        int[] o = origin.clone();
+        int[] s = size.clone();
+        o[tIdx] = part[1];
+        s[tIdx] = (part[2] - 1) * stride[tIdx] + 1;
+        DataInfo di = dataInfos.get(part[0]);
+        DimArray da = readFile(di, varName, o, s, stride);
+        if (da == null) {
+            throw new IllegalStateException("Failed to read variable " + varName + " from " + di.getFileName());
+        }
+
+        return da.getArray();
+    }
+
+    private static DimArray readFile(DataInfo di, String varName, int[] origin, int[] size, int[] stride) {
+        if (SliceCache.isEnabled()) {
+            return SliceCache.read(di, varName, origin, size, stride);
+        }
+
+        return di.read(varName, origin, size, stride);
+    }
+
+    /**
+     * Copy the array of a file part to its offset of the result array
+     *
+     * @param a Part array - [outer][n][inner] in index order
+     * @param r Result array - [outer][tCount][inner] in index order
+     * @param tPos Time position of the part in the result
+     * @param n Time number of the part
+     * @param flip If the times are copied in reversed order
+     */
+    private static void copyPart(Array a, Array r, int tPos, int n, int outer, int inner, int tCount,
+            boolean flip) {
+        Object src = a.getStorage();
+        Object dest = r.getStorage();
+        if (a.getDataType() == r.getDataType() && src.getClass().isArray()
+                && java.lang.reflect.Array.getLength(src) == a.getSize()) {
+            for (int i = 0; i < outer; i++) {
+                if (flip) {
+                    for (int j = 0; j < n; j++) {
+                        System.arraycopy(src, (i * n + j) * inner, dest,
+                                (i * tCount + tCount - 1 - tPos - j) * inner, inner);
+                    }
+                } else {
+                    System.arraycopy(src, i * n * inner, dest, (i * tCount + tPos) * inner, n * inner);
+                }
+            }
+            return;
+        }
+
+        //Converted by the result array if the data types are different
+        IndexIterator ii = a.getIndexIterator();
+        for (int i = 0; i < outer; i++) {
+            for (int j = 0; j < n; j++) {
+                int t = flip ? tCount - 1 - tPos - j : tPos + j;
+                int p = (i * tCount + t) * inner;
+                for (int k = 0; k < inner; k++) {
+                    r.setObject(p + k, ii.getObjectNext());
+                }
+            }
+        }
+    }
+    // </editor-fold>
+}
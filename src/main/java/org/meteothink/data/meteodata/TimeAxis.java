@@ -0,0 +1,328 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.meteothink.util.DateUtil;
+
+/**
+ * Time coordinate backed by epoch milliseconds. The times are decoded once,
+ * and the index lookups are binary searches if the times are ascending
+ * (linear scans otherwise).
+ *
+ * @author Yaqiang Wang
+ */
+public class TimeAxis {
+
+    // <editor-fold desc="Variables">
+    private final long[] millis;
+    private final double[] values;
+    private final boolean ascending;
+    private List<Date> times = null;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param values OA date values
+     */
+    public TimeAxis(List<Double> values) {
+        int n = values.size();
+        this.values = new double[n];
+        this.millis = new long[n];
+        for (int i = 0; i < n; i++) {
+            this.values[i] = values.get(i);
+            this.millis[i] = DateUtil.fromOADate(this.values[i]).getTime();
+        }
+        this.ascending = isAscending(this.millis);
+    }
+
+    private TimeAxis(long[] millis, double[] values) {
+        this.millis = millis;
+        this.values = values;
+        this.ascending = isAscending(millis);
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get time number
+     *
+     * @return Time number
+     */
+    public int size() {
+        return millis.length;
+    }
+
+    /**
+     * Get if the times are ascending
+     *
+     * @return Boolean
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Get epoch milliseconds of the times - should not be modified
+     *
+     * @return Epoch milliseconds
+     */
+    public long[] getMillis() {
+        return millis;
+    }
+
+    /**
+     * Get epoch milliseconds of a time
+     *
+     * @param idx Time index
+     * @return Epoch milliseconds
+     */
+    public long getMillis(int idx) {
+        return millis[idx];
+    }
+
+    /**
+     * Get OA date values of the times
+     *
+     * @return OA date values
+     */
+    public List<Double> getValues() {
+        List<Double> r = new ArrayList<>(values.length);
+        for (double v : values) {
+            r.add(v);
+        }
+
+        return r;
+    }
+
+    /**
+     * Get OA date value of a time
+     *
+     * @param idx Time index
+     * @return OA date value
+     */
+    public double getValue(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Get a time
+     *
+     * @param idx Time index
+     * @return Time
+     */
+    public Date getTime(int idx) {
+        return new Date(millis[idx]);
+    }
+
+    /**
+     * Get the times
+     *
+     * @return Times
+     */
+    public synchronized List<Date> getTimes() {
+        if (times == null) {
+            List<Date> r = new ArrayList<>(millis.length);
+            for (long t : millis) {
+                r.add(new Date(t));
+            }
+            times = Collections.unmodifiableList(r);
+        }
+
+        return new ArrayList<>(times);
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    private static boolean isAscending(long[] millis) {
+        for (int i = 1; i < millis.length; i++) {
+            if (millis[i] <= millis[i - 1]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Join time axes
+     *
+     * @param axes Time axes
+     * @return Joined time axis
+     */
+    public static TimeAxis concat(List<TimeAxis> axes) {
+        int n = 0;
+        for (TimeAxis axis : axes) {
+            n += axis.size();
+        }
+        long[] millis = new long[n];
+        double[] values = new double[n];
+        int pos = 0;
+        for (TimeAxis axis : axes) {
+            System.arraycopy(axis.millis, 0, millis, pos, axis.size());
+            System.arraycopy(axis.values, 0, values, pos, axis.size());
+            pos += axis.size();
+        }
+
+        return new TimeAxis(millis, values);
+    }
+
+    /**
+     * Get time index
+     *
+     * @param time The time
+     * @return Time index, -1 if the time is not found
+     */
+    public int indexOf(Date time) {
+        return indexOf(time.getTime());
+    }
+
+    /**
+     * Get time index
+     *
+     * @param t Epoch milliseconds
+     * @return Time index, -1 if the time is not found
+     */
+    public int indexOf(long t) {
+        if (ascending) {
+            int idx = Arrays.binarySearch(millis, t);
+            return idx >= 0 ? idx : -1;
+        }
+
+        for (int i = 0; i < millis.length; i++) {
+            if (millis[i] == t) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the index of the nearest time
+     *
+     * @param time The time
+     * @return Time index, -1 if the axis is empty
+     */
+    public int nearestIndex(Date time) {
+        return nearestIndex(time.getTime());
+    }
+
+    /**
+     * Get the index of the nearest time
+     *
+     * @param t Epoch milliseconds
+     * @return Time index, -1 if the axis is empty
+     */
+    public int nearestIndex(long t) {
+        int n = millis.length;
+        if (n == 0) {
+            return -1;
+        }
+
+        if (ascending) {
+            int idx = Arrays.binarySearch(millis, t);
+            if (idx >= 0) {
+                return idx;
+            }
+            idx = -idx - 1;
+            if (idx == 0) {
+                return 0;
+            } else if (idx == n) {
+                return n - 1;
+            }
+            return t - millis[idx - 1] <= millis[idx] - t ? idx - 1 : idx;
+        }
+
+        int idx = 0;
+        long min = Math.abs(millis[0] - t);
+        for (int i = 1; i < n; i++) {
+            long d = Math.abs(millis[i] - t);
+            if (d < min) {
+                min = d;
+                idx = i;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Get the index of the last time not after a time
+     *
+     * @param t Epoch milliseconds
+     * @return Time index, -1 if all times are after the time
+     */
+    public int floorIndex(long t) {
+        if (ascending) {
+            int idx = Arrays.binarySearch(millis, t);
+            return idx >= 0 ? idx : -idx - 2;
+        }
+
+        int idx = -1;
+        for (int i = 0; i < millis.length; i++) {
+            if (millis[i] <= t && (idx < 0 || millis[i] > millis[idx])) {
+                idx = i;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Get the index of the first time not before a time
+     *
+     * @param t Epoch milliseconds
+     * @return Time index, -1 if all times are before the time
+     */
+    public int ceilingIndex(long t) {
+        if (ascending) {
+            int idx = Arrays.binarySearch(millis, t);
+            if (idx < 0) {
+                idx = -idx - 1;
+            }
+            return idx < millis.length ? idx : -1;
+        }
+
+        int idx = -1;
+        for (int i = 0; i < millis.length; i++) {
+            if (millis[i] >= t && (idx < 0 || millis[i] < millis[idx])) {
+                idx = i;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Get the index range of the times between start and end time (both
+     * included). The times should be ascending.
+     *
+     * @param sTime Start time
+     * @param eTime End time
+     * @return Start and end index, null if no time is in the range
+     */
+    public int[] range(Date sTime, Date eTime) {
+        int sIdx = ceilingIndex(sTime.getTime());
+        int eIdx = floorIndex(eTime.getTime());
+        if (sIdx < 0 || eIdx < 0 || sIdx > eIdx) {
+            return null;
+        }
+
+        return new int[]{sIdx, eIdx};
+    }
+    // </editor-fold>
+}
@@ -0,0 +1,202 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata.arl;
+
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.IndexIterator;
+
+/**
+ * ARL differential packing codec. Each byte is the difference to the previous
+ * value along the row (to the first value of the previous row for the first
+ * column) scaled by 2^(7 - exponent) and shifted by 127.
+ *
+ * @author Yaqiang Wang
+ */
+public class ARLCodec {
+
+    /**
+     * Get the 256 entry delta table of a record
+     *
+     * @param exponent Scaling exponent of the record
+     * @return Delta table
+     */
+    public static float[] getDeltaTable(int exponent) {
+        float scale = (float) Math.pow(2.0, (7 - exponent));
+        float[] table = new float[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (i - 127) / scale;
+        }
+
+        return table;
+    }
+
+    /**
+     * Unpack ARL record data
+     *
+     * @param dataBytes Packed bytes
+     * @param xNum X number
+     * @param yNum Y number
+     * @param exponent Scaling exponent
+     * @param value Value of the first grid point
+     * @return Unpacked data
+     */
+    public static float[] unpack(byte[] dataBytes, int xNum, int yNum, int exponent, double value) {
+        float[] data = new float[dataBytes.length];
+        unpack(dataBytes, 0, xNum, yNum, exponent, value, data, 0);
+        return data;
+    }
+
+    /**
+     * Unpack ARL record data
+     *
+     * @param dataBytes Packed bytes
+     * @param offset Start offset of the packed bytes
+     * @param xNum X number
+     * @param yNum Y number
+     * @param exponent Scaling exponent
+     * @param value Value of the first grid point
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     */
+    public static void unpack(byte[] dataBytes, int offset, int xNum, int yNum, int exponent, double value,
+            float[] dest, int destPos) {
+        float[] table = getDeltaTable(exponent);
+        float vold = (float) value;
+        float v;
+        int i, j;
+        for (j = 0; j < yNum; j++) {
+            v = table[dataBytes[offset++] & 0xff] + vold;
+            dest[destPos++] = v;
+            vold = v;
+            for (i = 1; i < xNum; i++) {
+                v = table[dataBytes[offset++] & 0xff] + v;
+                dest[destPos++] = v;
+            }
+        }
+    }
+
+    /**
+     * Pack grid data to ARL record bytes. The scaling exponent, precision and
+     * first value are set to the data label.
+     *
+     * @param a Grid data array - 2D
+     * @param dataBytes Packed bytes
+     * @param aDL Data label
+     * @return Checksum
+     */
+    public static int pack(Array a, byte[] dataBytes, DataLabel aDL) {
+        int nx = a.getShape()[1];
+        int ny = a.getShape()[0];
+        double[] data = new double[nx * ny];
+        IndexIterator ii = a.getIndexIterator();
+        //Copy the data and find the maximum difference between adjacent elements
+        double rmax = 0.0;
+        double rold = 0.0;
+        double rcol = 0.0;
+        double v;
+        int idx = 0;
+        for (int i = 0; i < ny; i++) {
+            for (int j = 0; j < nx; j++) {
+                v = ii.getDoubleNext();
+                data[idx++] = v;
+                if (j == 0) {
+                    if (i == 0) {
+                        rold = v;
+                    }
+                    rcol = v;
+                }
+                rmax = Math.max(Math.abs(v - rold), rmax);
+                rold = v;
+            }
+            rold = rcol;
+        }
+
+        return encode(data, nx, ny, rmax, dataBytes, aDL);
+    }
+
+    /**
+     * Pack grid data to ARL record bytes. The scaling exponent, precision and
+     * first value are set to the data label.
+     *
+     * @param data Grid data - row major
+     * @param nx X number
+     * @param ny Y number
+     * @param dataBytes Packed bytes
+     * @param aDL Data label
+     * @return Checksum
+     */
+    public static int pack(double[] data, int nx, int ny, byte[] dataBytes, DataLabel aDL) {
+        //Find the maximum difference between adjacent elements
+        double rmax = 0.0;
+        double rold = data[0];
+        int idx = 0;
+        for (int i = 0; i < ny; i++) {
+            int start = idx;
+            for (int j = 0; j < nx; j++) {
+                rmax = Math.max(Math.abs(data[idx] - rold), rmax);
+                rold = data[idx++];
+            }
+            rold = data[start];
+        }
+
+        return encode(data, nx, ny, rmax, dataBytes, aDL);
+    }
+
+    private static int encode(double[] data, int nx, int ny, double rmax, byte[] dataBytes, DataLabel aDL) {
+        double sexp = 0.0;
+        //Compute the required scaling exponent
+        if (rmax != 0.0) {
+            sexp = Math.log(rmax) / Math.log(2.0);
+        }
+        int nexp = (int) sexp;
+        //Positive or whole number scaling round up for lower precision
+        if (sexp >= 0.0 || sexp % 1.0 == 0.0) {
+            nexp += 1;
+        }
+        //Precision range is -127 to 127 or 254
+        double prec = Math.pow(2.0, nexp) / 254.0;
+
+        double scale = Math.pow(2.0, (7 - nexp));
+        double var1 = data[0];
+        double vold;
+        double rcol = var1;
+        int ksum = 0;
+        int idx = 0;
+        int ival;
+        for (int j = 0; j < ny; j++) {
+            vold = rcol;
+            for (int i = 0; i < nx; i++) {
+                ival = (int) ((data[idx] - vold) * scale + 127.5);
+                dataBytes[idx] = (byte) ival;
+                vold = (float) (ival - 127) / scale + vold;
+                if (i == 0) {
+                    rcol = vold;
+                }
+                //maintain fotatin checksum
+                ksum += ival;
+                //if sum carries over the eight bit add one
+                if (ksum >= 256) {
+                    ksum = ksum - 255;
+                }
+                idx += 1;
+            }
+        }
+
+        aDL.setExponent(nexp);
+        aDL.setPrecision(prec);
+        aDL.setValue(var1);
+
+        return ksum;
+    }
+}
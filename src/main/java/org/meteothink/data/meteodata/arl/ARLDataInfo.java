@@ -17,14 +17,23 @@ import org.meteothink.data.meteodata.DataInfo;
 import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.DimensionType;
 import org.meteothink.data.meteodata.Variable;
-import org.meteothink.util.DataConvert;
 import org.meteothink.util.GlobalUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.math.BigDecimal;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -46,11 +55,11 @@ import org.meteothink.common.projection.ProjUtil;
 import org.meteothink.common.projection.ProjectionName;
 import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
 import org.meteothink.data.meteodata.Attribute;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.ndarray.DimArray;
 
 /**
@@ -127,6 +136,9 @@ public class ARLDataInfo extends DataInfo {
     //private DataOutputStream _bw = null;
     private RandomAccessFile _bw = null;
     private long indexRecPos = 0;
+    private boolean indexCache = false;
+    //Version mark of the sidecar index file
+    private static final int TIME_INDEX_VERSION = 1;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -171,6 +183,26 @@ public class ARLDataInfo extends DataInfo {
         }
     }
 
+    /**
+     * Get if the time index is cached in a sidecar file
+     *
+     * @return Boolean
+     */
+    public boolean isIndexCache() {
+        return this.indexCache;
+    }
+
+    /**
+     * Set if the time index is cached in a sidecar file. The sidecar file is
+     * the data file name with ".tidx" suffix and is rebuilt when the size or
+     * the modified time of the data file changed.
+     *
+     * @param value Boolean
+     */
+    public void setIndexCache(boolean value) {
+        this.indexCache = value;
+    }
+
     /**
      * If is large grid sizes
      *
@@ -454,49 +486,25 @@ public class ARLDataInfo extends DataInfo {
             this.setYDimension(yDim);
             this.addDimension(yDim);
 
-            //Reopen            
-            byte[] dataBytes = new byte[NXY];
-            Date aTime, oldTime;
-            int recNum, timeNum;
-            br.seek(0);
-            recNum = 0;
-            timeNum = 0;
-            int year = aDL.getYear();
-            if (year < 50) {
-                year = 2000 + year;
-            } else {
-                year = 1900 + year;
+            //Get times - each time block has the same record number and
+            //starts with the index records
+            int recNum = 0;
+            for (List<String> vl : LevelVarList) {
+                recNum += vl.size();
             }
-            Calendar cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
-            oldTime = cal.getTime();
-            List<Date> times = new ArrayList<>();
-            times.add((Date) oldTime.clone());
-
-            do {
-                if (br.getFilePointer() >= br.length() - 1) {
-                    break;
-                }
-
-                //Read label
-                aDL = readDataLabel(br);
-
-                //Read Data
-                br.read(dataBytes);
-
-                if (!aDL.getVarName().equalsIgnoreCase("INDX")) {
-                    cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
-                    aTime = cal.getTime();
-                    if (aTime.getTime() != oldTime.getTime()) {
-                        times.add(aTime);
-                        oldTime.setTime(aTime.getTime());
-                        timeNum += 1;
-                    }
-                    if (timeNum == 0) {
-                        recNum += 1;
-                    }
+            recsPerTime = recNum + indexRecNum;
+            int headerRecsPerTime = recsPerTime;
+            File file = new File(fileName);
+            List<Date> times = null;
+            if (this.indexCache) {
+                times = this.readTimeIndex(file, headerRecsPerTime);
+            }
+            if (times == null) {
+                times = this.readTimes(br);
+                if (this.indexCache) {
+                    this.writeTimeIndex(file, headerRecsPerTime, times);
                 }
-
-            } while (true);
+            }
 
             br.close();
 
@@ -509,7 +517,6 @@ public class ARLDataInfo extends DataInfo {
             this.setTimeDimension(tDim);
             this.addDimension(tDim);
 
-            recsPerTime = recNum + indexRecNum;
             Variable aVar;
             vList.clear();
             int varIdx;
@@ -571,6 +578,190 @@ public class ARLDataInfo extends DataInfo {
         }
     }
 
+    /**
+     * Read times by striding over the index records of the time blocks. The
+     * whole file is scanned if the time blocks are not regular.
+     *
+     * @param br The file
+     * @return Times
+     * @throws IOException
+     */
+    private List<Date> readTimes(RandomAccessFile br) throws IOException {
+        List<Date> times = new ArrayList<>();
+        long blockLen = recsPerTime * recLen;
+        long length = br.length();
+        DataLabel aDL;
+        for (long pos = 0; pos + recLen <= length; pos += blockLen) {
+            br.seek(pos);
+            try {
+                aDL = readDataLabel(br);
+            } catch (NumberFormatException ex) {
+                aDL = null;
+            }
+            if (aDL == null || !aDL.getVarName().equalsIgnoreCase("INDX")) {
+                return this.scanTimes(br);
+            }
+            Date t = getLabelTime(aDL);
+            if (!times.isEmpty() && !t.after(times.get(times.size() - 1))) {
+                return this.scanTimes(br);
+            }
+            times.add(t);
+        }
+
+        return times;
+    }
+
+    /**
+     * Read times by scanning all records of the file
+     *
+     * @param br The file
+     * @return Times
+     * @throws IOException
+     */
+    private List<Date> scanTimes(RandomAccessFile br) throws IOException {
+        byte[] dataBytes = new byte[(int) recLen - 50];
+        DataLabel aDL;
+        Date aTime, oldTime = null;
+        int recNum = 0, indexRecNum = 0, timeNum = 0;
+        List<Date> times = new ArrayList<>();
+        br.seek(0);
+        do {
+            if (br.getFilePointer() >= br.length() - 1) {
+                break;
+            }
+
+            //Read label
+            aDL = readDataLabel(br);
+
+            //Read Data
+            br.read(dataBytes);
+
+            if (!aDL.getVarName().equalsIgnoreCase("INDX")) {
+                aTime = getLabelTime(aDL);
+                if (oldTime == null) {
+                    times.add(aTime);
+                    oldTime = aTime;
+                } else if (aTime.getTime() != oldTime.getTime()) {
+                    times.add(aTime);
+                    oldTime = aTime;
+                    timeNum += 1;
+                }
+                if (timeNum == 0) {
+                    recNum += 1;
+                }
+            } else if (timeNum == 0 && recNum == 0) {
+                indexRecNum += 1;
+            }
+
+        } while (true);
+        recsPerTime = recNum + indexRecNum;
+
+        return times;
+    }
+
+    /**
+     * Read times from the sidecar index file. The records per time of the
+     * index file is used, which may be corrected by scanning the file.
+     *
+     * @param file The data file
+     * @param headerRecsPerTime Records per time from the index header
+     * @return Times, null if the index file is not exist or not valid
+     */
+    private List<Date> readTimeIndex(File file, int headerRecsPerTime) {
+        File idxFile = new File(file.getPath() + ".tidx");
+        if (!idxFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(idxFile)))) {
+            if (dis.readInt() != TIME_INDEX_VERSION) {
+                return null;
+            }
+            if (dis.readLong() != file.length() || dis.readLong() != file.lastModified()) {
+                return null;
+            }
+            if (dis.readLong() != recLen || dis.readInt() != headerRecsPerTime) {
+                return null;
+            }
+            int recs = dis.readInt();
+            int n = dis.readInt();
+            List<Date> times = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                times.add(new Date(dis.readLong()));
+            }
+            recsPerTime = recs;
+            return times;
+        } catch (IOException ex) {
+            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.WARNING, null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Write times and the records per time to the sidecar index file. The
+     * index is written to a temporary file and then moved, so a reader never
+     * sees a partly written index.
+     *
+     * @param file The data file
+     * @param headerRecsPerTime Records per time from the index header
+     * @param times Times
+     */
+    private void writeTimeIndex(File file, int headerRecsPerTime, List<Date> times) {
+        File idxFile = new File(file.getPath() + ".tidx").getAbsoluteFile();
+        File tmpFile;
+        try {
+            tmpFile = File.createTempFile(idxFile.getName(), ".tmp", idxFile.getParentFile());
+        } catch (IOException ex) {
+            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.WARNING, null, ex);
+            return;
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            dos.writeInt(TIME_INDEX_VERSION);
+            dos.writeLong(file.length());
+            dos.writeLong(file.lastModified());
+            dos.writeLong(recLen);
+            dos.writeInt(headerRecsPerTime);
+            dos.writeInt(recsPerTime);
+            dos.writeInt(times.size());
+            for (Date t : times) {
+                dos.writeLong(t.getTime());
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.WARNING, null, ex);
+            tmpFile.delete();
+            return;
+        }
+
+        try {
+            try {
+                Files.move(tmpFile.toPath(), idxFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), idxFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.WARNING, null, ex);
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Get time of a data label
+     *
+     * @param aDL Data label
+     * @return Time
+     */
+    private static Date getLabelTime(DataLabel aDL) {
+        int year = aDL.getYear();
+        if (year < 50) {
+            year = 2000 + year;
+        } else {
+            year = 1900 + year;
+        }
+        Calendar cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
+        return cal.getTime();
+    }
+
     private static DataLabel readDataLabel(RandomAccessFile br) {
         try {
             DataLabel aDL = new DataLabel();
@@ -707,49 +898,6 @@ public class ARLDataInfo extends DataInfo {
         return dataInfo;
     }
 
-    private double[][] unpackARLGridData(byte[] dataBytes, int xNum, int yNum, DataLabel aDL) {
-        double[][] gridData = new double[yNum][xNum];
-        double SCALE = Math.pow(2.0, (7 - aDL.getExponent()));
-        double VOLD = aDL.getValue();
-        int INDX = 0;
-        int i, j;
-        for (j = 0; j < yNum; j++) {
-            for (i = 0; i < xNum; i++) {
-                gridData[j][i] = ((int) (DataConvert.byte2Int(dataBytes[INDX])) - 127) / SCALE + VOLD;
-                INDX += 1;
-                VOLD = gridData[j][i];
-            }
-            VOLD = gridData[j][0];
-        }
-
-        return gridData;
-    }
-
-    private float[] unpackARLData(byte[] dataBytes, int xNum, int yNum, DataLabel aDL) {
-        int n = dataBytes.length;
-        float[] data = new float[n];
-        float SCALE = (float) Math.pow(2.0, (7 - aDL.getExponent()));
-        float VOLD = (float) aDL.getValue();
-        float init = VOLD;
-        float v;
-        int INDX = 0;
-        int i, j;
-        for (j = 0; j < yNum; j++) {
-            for (i = 0; i < xNum; i++) {
-                v = ((int) (DataConvert.byte2Int(dataBytes[INDX])) - 127) / SCALE + VOLD;
-                data[INDX] = v;
-                if (i == 0) {
-                    init = v;
-                }
-                INDX += 1;
-                VOLD = v;
-            }
-            VOLD = init;
-        }
-
-        return data;
-    }
-
     /**
      * Read array data of a variable
      *
@@ -801,17 +949,32 @@ public class ARLDataInfo extends DataInfo {
             Range yRange = section.getRange(rangeIdx++);
             Range xRange = section.getRange(rangeIdx);
 
-            IndexIterator ii = dataArray.getIndexIterator();
+            final float[] data = (float[]) dataArray.getStorage();
+            final String vName = varName;
+            final Range fyRange = yRange;
+            final Range fxRange = xRange;
+            int destPos = 0;
+            int sliceSize = yRange.length() * xRange.length();
 
+            //Each slice is read into its own offset of the data array
+            List<Runnable> tasks = new ArrayList<>();
             for (int timeIdx = timeRange.first(); timeIdx <= timeRange.last();
                     timeIdx += timeRange.stride()) {
                 int levelIdx = levRange.first();
 
                 for (; levelIdx <= levRange.last();
                         levelIdx += levRange.stride()) {
-                    readXY(varName, timeIdx, levelIdx, yRange, xRange, ii);
+                    final int t = timeIdx, l = levelIdx, pos = destPos;
+                    tasks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            readXY(vName, t, l, fyRange, fxRange, data, pos);
+                        }
+                    });
+                    destPos += sliceSize;
                 }
             }
+            ParallelUtil.invokeAll(tasks);
 
             return new DimArray(dataArray.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
@@ -820,7 +983,8 @@ public class ARLDataInfo extends DataInfo {
         }
     }
 
-    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
+    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange,
+            float[] dest, int destPos) {
         try {
             int varIdx = this.getVariableNames().indexOf(varName);
             int xNum, yNum;
@@ -847,13 +1011,12 @@ public class ARLDataInfo extends DataInfo {
             dataBytes = new byte[(int)recLen - 50];
             br.read(dataBytes);
             br.close();
-            float[] data = unpackARLData(dataBytes, xNum, yNum, aDL);
+            float[] data = ARLCodec.unpack(dataBytes, xNum, yNum, aDL.getExponent(), aDL.getValue());
             for (int y = yRange.first(); y <= yRange.last();
                     y += yRange.stride()) {
                 for (int x = xRange.first(); x <= xRange.last();
                         x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setFloatNext(data[index]);
+                    dest[destPos++] = data[y * xNum + x];
                 }
             }
         } catch (FileNotFoundException ex) {
@@ -1258,9 +1421,8 @@ public class ARLDataInfo extends DataInfo {
      * @throws java.io.IOException
      */
     public int writeGridData(DataLabel aDL, Array a) throws IOException {
-        Object[] r = packARLGridData(a, aDL);
-        byte[] dataBytes = (byte[]) r[0];
-        int ksum = (int) r[1];
+        byte[] dataBytes = new byte[(int) a.getSize()];
+        int ksum = ARLCodec.pack(a, dataBytes, aDL);
 
         //write data label
         SimpleDateFormat format = new SimpleDateFormat("yyMMddHH");
@@ -1331,70 +1493,6 @@ public class ARLDataInfo extends DataInfo {
         return new String(new char[]{xc, yc});
     }
 
-    private Object[] packARLGridData(Array a, DataLabel aDL) {
-        int nx = a.getShape()[1];
-        int ny = a.getShape()[0];
-        double var1 = a.getDouble(0);
-        double rold = var1;
-        double rmax = 0.0;
-        int i, j;
-        //Find the maximum difference between adjacent elements
-        for (i = 0; i < ny; i++) {
-            for (j = 0; j < nx; j++) {
-                //Compute max difference between elements along row
-                rmax = Math.max(Math.abs(a.getDouble(i * nx + j) - rold), rmax);
-                rold = a.getDouble(i * nx + j);
-            }
-            rold = a.getDouble(i * nx);
-        }
-
-        double sexp = 0.0;
-        //Compute the required scaling exponent
-        if (rmax != 0.0) {
-            sexp = Math.log(rmax) / Math.log(2.0);
-        }
-        int nexp = (int) sexp;
-        //Positive or whole number scaling round up for lower precision
-        if (sexp >= 0.0 || sexp % 1.0 == 0.0) {
-            nexp += 1;
-        }
-        //Precision range is -127 to 127 or 254
-        double prec = Math.pow(2.0, nexp) / 254.0;
-
-        byte[] dataBytes = new byte[ny * nx];
-        double SCALE = Math.pow(2.0, (7 - nexp));
-        double VOLD = var1;
-        double rcol = var1;
-        int ksum = 0;
-        int INDX = 0;
-        int ival;
-        for (j = 0; j < ny; j++) {
-            VOLD = rcol;
-            for (i = 0; i < nx; i++) {
-                ival = (int) ((a.getDouble(j * nx + i) - VOLD) * SCALE + 127.5);
-                dataBytes[INDX] = (byte) ival;
-                VOLD = (float) (ival - 127) / SCALE + VOLD;
-                if (i == 0) {
-                    rcol = VOLD;
-                }
-                //maintain fotatin checksum
-                ksum += ival;
-                //if sum carries over the eight bit add one
-                if (ksum >= 256) {
-                    ksum = ksum - 255;
-                }
-                INDX += 1;
-                //VOLD = gridData.Data[j, i];                                        
-            }
-            //VOLD = gridData.Data[j, 0];
-        }
-
-        aDL.setExponent(nexp);
-        aDL.setPrecision(prec);
-        aDL.setValue(var1);
-
-        return new Object[]{dataBytes, ksum};
-    }
     // </editor-fold>
     // </editor-fold>
 }
@@ -8,6 +8,7 @@ package org.meteothink.data.meteodata.awx;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,6 +23,7 @@ import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.DimensionType;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.data.meteodata.Variable;
+import org.meteothink.data.util.FileChannelPool;
 import org.meteothink.util.DataConvert;
 import org.meteothink.common.projection.KnownCoordinateSystems;
 import org.meteothink.common.projection.ProjUtil;
@@ -138,6 +140,7 @@ public class AWXDataInfo extends DataInfo {
     public List<String> FieldList;
 
     ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private final FileChannelPool channelPool = new FileChannelPool();
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -150,6 +153,24 @@ public class AWXDataInfo extends DataInfo {
 
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the data file is read by memory mapping
+     *
+     * @return Boolean
+     */
+    public boolean isMemoryMapped() {
+        return this.channelPool.isMemoryMapped();
+    }
+
+    /**
+     * Set if the data file is read by memory mapping
+     *
+     * @param value Boolean
+     */
+    public void setMemoryMapped(boolean value) {
+        this.channelPool.setMemoryMapped(value);
+    }
+
     /**
      * Get x number
      *
@@ -674,68 +695,56 @@ public class AWXDataInfo extends DataInfo {
         }
     }
 
-    private void readXY_1(Range yRange, Range xRange, IndexIterator ii) throws IOException {
-        byte[] imageBytes = getIamgeData();
+    /**
+     * Close the data file opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
+    }
 
-        //Get grid data
-        int i, j;
+    private void readXY_1(Range yRange, Range xRange, IndexIterator ii) throws IOException {
         int xNum = (int) _width;
         int yNum = (int) _height;
+        ByteBuffer buffer = this.channelPool.getBuffer(this.getFileName(), (long) _lenRecord * _numHeadRecord,
+                xNum * yNum);
 
-        float[] data = new float[yNum * xNum];
-        for (i = 0; i < yNum; i++) {
-            for (j = 0; j < xNum; j++) {
-                data[(yNum - i - 1) * xNum + j] = DataConvert.byte2Int(imageBytes[i * xNum + j]);
-            }
-        }
-
+        //Image lines are stored from north to south
         for (int y = yRange.first(); y <= yRange.last();
                 y += yRange.stride()) {
+            int start = (yNum - y - 1) * xNum;
             for (int x = xRange.first(); x <= xRange.last();
                     x += xRange.stride()) {
-                int index = y * xNum + x;
-                ii.setFloatNext(data[index]);
+                ii.setFloatNext(DataConvert.byte2Int(buffer.get(start + x)));
             }
         }
     }
 
     private void readXY_3(Range yRange, Range xRange, IndexIterator ii) throws FileNotFoundException, IOException {
-        RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-        //Read byte data 
-        br.seek(_lenRecord * _numHeadRecord);
-        int length = (int) (br.length() - br.getFilePointer());
-        byte[] imageBytes = new byte[length];
-        br.read(imageBytes);
-        br.close();
+        ByteBuffer buffer = this.channelPool.getBuffer(this.getFileName(), (long) _lenRecord * _numHeadRecord,
+                _numLatGrid * _numLonGrid * _byteGridData);
+        buffer.order(byteOrder);
 
-        int i, j;
-        int bi = 0;
+        //Grid rows are stored from north to south
         int value = 0;
-        byte[] vbytes = new byte[_byteGridData];
-        float[] data = new float[_numLatGrid * _numLonGrid];
-        int idx;
-        for (i = 0; i < _numLatGrid; i++) {
-            for (j = 0; j < _numLonGrid; j++) {
-                vbytes = Arrays.copyOfRange(imageBytes, bi, bi + _byteGridData);
-                if (_byteGridData == 1) {
-                    value = DataConvert.byte2Int(vbytes[0]);
-                } else if (_byteGridData == 2) {
-                    value = DataConvert.bytes2Int(vbytes, byteOrder);
-                } else if (_byteGridData == 4) {
-                    value = DataConvert.bytes2Int(vbytes, byteOrder);
-                }
-                idx = (_numLatGrid - i - 1) * _numLonGrid + j;
-                data[idx] = (float) (value + _baseData) / _scaleFactor;
-                bi += _byteGridData;
-            }
-        }
-
         for (int y = yRange.first(); y <= yRange.last();
                 y += yRange.stride()) {
+            int start = (_numLatGrid - y - 1) * _numLonGrid;
             for (int x = xRange.first(); x <= xRange.last();
                     x += xRange.stride()) {
-                int index = y * _numLonGrid + x;
-                ii.setFloatNext(data[index]);
+                int idx = start + x;
+                switch (_byteGridData) {
+                    case 1:
+                        value = DataConvert.byte2Int(buffer.get(idx));
+                        break;
+                    case 2:
+                        value = buffer.getShort(idx * 2);
+                        break;
+                    case 4:
+                        value = buffer.getInt(idx * 4);
+                        break;
+                }
+                ii.setFloatNext((float) (value + _baseData) / _scaleFactor);
             }
         }
     }
@@ -18,7 +18,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,11 +29,10 @@ import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.DimensionType;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.data.meteodata.Variable;
-import org.meteothink.util.DataConvert;
+import org.meteothink.data.util.BinaryDecoder;
+import org.meteothink.data.util.FileChannelPool;
 import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.Index2D;
-import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
@@ -57,6 +56,7 @@ public class BILDataInfo extends DataInfo {
     private int _skipbytes = 0;
     private int _bandrowbytes = 0;
     private int _totalrowbytes = 0;
+    private final FileChannelPool channelPool = new FileChannelPool();
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -65,6 +65,23 @@ public class BILDataInfo extends DataInfo {
     }
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the data file is read by memory mapping
+     *
+     * @return Boolean
+     */
+    public boolean isMemoryMapped() {
+        return this.channelPool.isMemoryMapped();
+    }
+
+    /**
+     * Set if the data file is read by memory mapping
+     *
+     * @param value Boolean
+     */
+    public void setMemoryMapped(boolean value) {
+        this.channelPool.setMemoryMapped(value);
+    }
     // </editor-fold>
     // <editor-fold desc="Methods">
 
@@ -256,7 +273,18 @@ public class BILDataInfo extends DataInfo {
      */
     @Override
     public DimArray read(String varName){
-        return readArray_bil(varName);
+        Variable var = this.getVariable(varName);
+        int n = var.getDimNumber();
+        int[] origin = new int[n];
+        int[] size = new int[n];
+        int[] stride = new int[n];
+        for (int i = 0; i < n; i++) {
+            origin[i] = 0;
+            size[i] = var.getDimLength(i);
+            stride[i] = 1;
+        }
+
+        return read(varName, origin, size, stride);
     }
     
     /**
@@ -278,8 +306,7 @@ public class BILDataInfo extends DataInfo {
             int rangeIdx = 0;
             Range yRange = section.getRange(rangeIdx++);
             Range xRange = section.getRange(rangeIdx);
-            IndexIterator ii = array.getIndexIterator();
-            this.readArray_bil_xy(varIdx, array.getDataType(), yRange, xRange, ii);
+            this.readArray_bil_xy(varIdx, array, yRange, xRange);
             return new DimArray(array.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
             Logger.getLogger(BILDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -287,137 +314,41 @@ public class BILDataInfo extends DataInfo {
         return null;
     }
     
-    private DimArray readArray_bil(String varName) {
-        Variable var = this.getVariable(varName);
-        int varIdx = this.getVariables().indexOf(var);
-        try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            Array gData = Array.factory(var.getDataType(), new int[]{_nrows, _ncols});
-            Index2D index = (Index2D)gData.getIndex();
-            
-            br.seek(this._skipbytes);
-            int i, j;
-            int nbytes = this._nbits / 8;
-            byte[] bytes;
-            int start;
-            long position;
-            for (i = 0; i < _nrows; i++) {
-                position = br.getFilePointer();
-                if (varIdx > 0) {
-                    br.seek(this._bandrowbytes * varIdx);
-                }
-                byte[] byteData = new byte[_ncols * nbytes];
-                br.read(byteData);
-                start = 0;
-                for (j = 0; j < _ncols; j++) {
-                    bytes = new byte[nbytes];
-                    System.arraycopy(byteData, start, bytes, 0, nbytes);
-                    start += nbytes;
-                    index.set(_nrows - 1 - i, j);
-                    switch (gData.getDataType()){
-                        case FLOAT:
-                            gData.setFloat(index, DataConvert.bytes2Float(bytes, _byteOrder));
-                            break;
-                        case INT:
-                            if (nbytes >= 2) {
-                                gData.setInt(index, DataConvert.bytes2Int(bytes, _byteOrder));
-                            } else {
-                                gData.setByte(index, bytes[0]);
-                            }
-                            break;
-                    }
-                }
-                br.seek(position + this._totalrowbytes);
-            }
-
-            br.close();
-            return new DimArray(gData, var.getDimensions());
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(BILDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(BILDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        return null;
+    /**
+     * Close the data file opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
     }
     
-    private void readArray_bil_xy(int varIdx, DataType dtype, Range yRange, Range xRange, IndexIterator ii) {
+    private void readArray_bil_xy(int varIdx, Array array, Range yRange, Range xRange) throws InvalidRangeException {
         try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");            
-            br.seek(this._skipbytes);
-            int i, j;
             int nbytes = this._nbits / 8;
-            byte[] bytes;
-            int start;
-            long position;
-            switch (dtype) {
-                case FLOAT:
-                    float vf;
-                    for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
-                        position = br.getFilePointer();
-                        if (varIdx > 0) {
-                            br.seek(this._bandrowbytes * varIdx);
-                        }
-                        byte[] byteData = new byte[_ncols * nbytes];
-                        br.read(byteData);
-                        start = 0;
-                        for (int x = xRange.first(); x <= xRange.last(); x += xRange.stride()) {
-                            bytes = new byte[nbytes];
-                            System.arraycopy(byteData, start, bytes, 0, nbytes);
-                            start += nbytes * xRange.stride();
-                            vf = DataConvert.bytes2Float(bytes, _byteOrder);
-                            ii.setFloatNext(vf);
-                        }
-                        if (y < yRange.last()){
-                            br.seek(position + this._totalrowbytes * (yRange.stride()));
-                        }
-                    }
-                    break;
-                case INT:
-                    int vi;
-                    for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
-                        position = br.getFilePointer();
-                        if (varIdx > 0) {
-                            br.seek(this._bandrowbytes * varIdx);
-                        }
-                        byte[] byteData = new byte[_ncols * nbytes];
-                        br.read(byteData);
-                        start = 0;
-                        for (int x = xRange.first(); x <= xRange.last(); x += xRange.stride()) {
-                            bytes = new byte[nbytes];
-                            System.arraycopy(byteData, start, bytes, 0, nbytes);
-                            start += nbytes * xRange.stride();
-                            vi = DataConvert.bytes2Int(bytes, _byteOrder);
-                            ii.setIntNext(vi);
-                        }
-                        if (y < yRange.last()){
-                            br.seek(position + this._totalrowbytes * (yRange.stride()));
-                        }
-                    }
-                    break;
-                case BYTE:
-                    for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
-                        position = br.getFilePointer();
-                        if (varIdx > 0) {
-                            br.seek(this._bandrowbytes * varIdx);
-                        }
-                        byte[] byteData = new byte[_ncols * nbytes];
-                        br.read(byteData);
-                        start = 0;
-                        for (int x = xRange.first(); x <= xRange.last(); x += xRange.stride()) {
-                            bytes = new byte[nbytes];
-                            System.arraycopy(byteData, start, bytes, 0, nbytes);
-                            start += nbytes * xRange.stride();
-                            ii.setByteNext(bytes[0]);
-                        }
-                        if (y < yRange.last()){
-                            br.seek(position + this._totalrowbytes * (yRange.stride()));
-                        }
-                    }
-                    break;                    
+            int rowBytes = _ncols * nbytes;
+            Range rowRange = new Range(0, 0);
+            Object storage = array.getStorage();
+            int destPos = 0;
+            //Rows are stored from north to south
+            for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
+                ByteBuffer buffer = this.channelPool.getBuffer(this.getFileName(), this._skipbytes
+                        + (long) (_nrows - 1 - y) * this._totalrowbytes + (long) varIdx * this._bandrowbytes,
+                        rowBytes);
+                switch (array.getDataType()) {
+                    case FLOAT:
+                        destPos = BinaryDecoder.readFloat(buffer, _byteOrder, _ncols, rowRange, xRange,
+                                (float[]) storage, destPos);
+                        break;
+                    case INT:
+                        destPos = BinaryDecoder.readInt(buffer, _byteOrder, nbytes, _ncols, rowRange, xRange,
+                                (int[]) storage, destPos);
+                        break;
+                    case BYTE:
+                        destPos = BinaryDecoder.readByte(buffer, _ncols, rowRange, xRange,
+                                (byte[]) storage, destPos);
+                        break;
+                }
             }
-            
-            br.close();
         } catch (FileNotFoundException ex) {
             Logger.getLogger(BILDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } catch (IOException ex) {
@@ -28,6 +28,7 @@ import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
+import org.meteothink.ndarray.Section;
 import org.meteothink.data.meteodata.Attribute;
 import org.meteothink.ndarray.DimArray;
 
@@ -40,6 +41,7 @@ public class GeoTiffDataInfo extends DataInfo {
     // <editor-fold desc="Variables">
     private GeoTiff geoTiff;
     private int bandNum;
+    private boolean overviewRead = false;
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -51,6 +53,27 @@ public class GeoTiffDataInfo extends DataInfo {
     }
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the strided reads use the overviews of the file
+     *
+     * @return Boolean
+     */
+    public boolean isOverviewRead() {
+        return this.overviewRead;
+    }
+
+    /**
+     * Set if the strided reads use the overviews of the file - the coarsest
+     * overview not coarser than the stride is read
+     *
+     * @param value Boolean
+     */
+    public void setOverviewRead(boolean value) {
+        this.overviewRead = value;
+        if (this.geoTiff != null) {
+            this.geoTiff.setOverviewRead(value);
+        }
+    }
     // </editor-fold>
     // <editor-fold desc="Methods">
 
@@ -58,6 +81,7 @@ public class GeoTiffDataInfo extends DataInfo {
     public void readDataInfo(String fileName) {
         this.setFileName(fileName);
         geoTiff = new GeoTiff(fileName);
+        geoTiff.setOverviewRead(this.overviewRead);
         try {
             geoTiff.read();
         } catch (IOException ex) {
@@ -143,12 +167,17 @@ public class GeoTiffDataInfo extends DataInfo {
     @Override
     public DimArray read(String varName, int[] origin, int[] size, int[] stride) {
         try {
-            DimArray da = read(varName);
-            return da.section(origin, size, stride);
+            Section section = new Section(origin, size, stride);
+            Variable var = this.getVariable(varName);
+            Array r = this.geoTiff.readArray(origin, size, stride);
+            return new DimArray(r.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
             Logger.getLogger(GeoTiffDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
-        }        
+        } catch (IOException ex) {
+            Logger.getLogger(GeoTiffDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
     }
     
     private void readXY(Range yRange, Range xRange, IndexIterator ii) {
@@ -31,14 +31,21 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.locationtech.proj4j.CoordinateReferenceSystem;
@@ -56,6 +63,9 @@ import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
 import org.meteothink.data.meteodata.Attribute;
+import org.meteothink.data.util.BinaryDecoder;
+import org.meteothink.data.util.FileChannelPool;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.ndarray.DimArray;
 
 /**
@@ -164,6 +174,11 @@ public class GrADSDataInfo extends DataInfo {
     public int YNum;
     private DataOutputStream _bw = null;
     private ByteOrder _byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private final FileChannelPool channelPool = new FileChannelPool();
+    private Map<String, Integer> varIndexMap = new HashMap<>();
+    private int[] varRecordStarts = new int[0];
+    private long xyRecordLen;
+    private long timeBlockLen;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -188,6 +203,24 @@ public class GrADSDataInfo extends DataInfo {
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
 
+    /**
+     * Get if the data file is read by memory mapping
+     *
+     * @return Boolean
+     */
+    public boolean isMemoryMapped() {
+        return this.channelPool.isMemoryMapped();
+    }
+
+    /**
+     * Set if the data file is read by memory mapping
+     *
+     * @param value Boolean
+     */
+    public void setMemoryMapped(boolean value) {
+        this.channelPool.setMemoryMapped(value);
+    }
+
     /**
      * Get variable name list
      *
@@ -244,6 +277,63 @@ public class GrADSDataInfo extends DataInfo {
         return TDEF.times;
     }
 
+    /**
+     * Get the data files - the DSET file or the files of the template
+     *
+     * @return Data file names
+     */
+    @Override
+    public List<String> getDataFileNames() {
+        Set<String> fileNames = new LinkedHashSet<>();
+        if (OPTIONS.template) {
+            for (int i = 0; i < this.getTimeNum(); i++) {
+                fileNames.add((String) getFilePath_Template(i)[0]);
+            }
+        } else if (DSET != null) {
+            fileNames.add(DSET);
+        }
+        return new ArrayList<>(fileNames);
+    }
+
+    /**
+     * Get the data files of a section of a variable - the files of the
+     * selected times if the data files are defined by a template
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Data file names
+     */
+    @Override
+    public List<String> getDataFileNames(String varName, int[] origin, int[] size, int[] stride) {
+        Variable var = this.getVariable(varName);
+        if (!OPTIONS.template || var == null) {
+            return getDataFileNames();
+        }
+        for (int i = 0; i < var.getDimNumber(); i++) {
+            if (var.getDimension(i).getDimType() == DimensionType.T) {
+                Set<String> fileNames = new LinkedHashSet<>();
+                int step = Math.max(1, Math.abs(stride[i]));
+                for (int t = origin[i]; t < origin[i] + size[i]; t += step) {
+                    fileNames.add((String) getFilePath_Template(t)[0]);
+                }
+                return new ArrayList<>(fileNames);
+            }
+        }
+        return getDataFileNames();
+    }
+
+    /**
+     * Get the read options - the byte order
+     *
+     * @return Read options
+     */
+    @Override
+    public String getReadOptions() {
+        return "byteOrder=" + _byteOrder;
+    }
+
     /**
      * Get if is big endian
      *
@@ -960,9 +1050,66 @@ public class GrADSDataInfo extends DataInfo {
             RecLenPerTime += lNum * RecordLen;
         }
 
+        buildRecordIndex();
+
         return true;
     }
 
+    /**
+     * Build the record offset index of the gridded data. The start record of
+     * each variable in a time block is computed once, so the file offset of
+     * any (ensemble, time, variable, level) record can be got directly.
+     */
+    private void buildRecordIndex() {
+        int vNum = VARDEF.getVNum();
+        varIndexMap = new HashMap<>();
+        varRecordStarts = new int[vNum];
+        int recNum = 0;
+        int lNum;
+        for (int i = 0; i < vNum; i++) {
+            Variable var = VARDEF.getVars().get(i);
+            varIndexMap.put(var.getName(), i);
+            varRecordStarts[i] = recNum;
+            lNum = var.getLevelNum();
+            if (lNum == 0) {
+                lNum = 1;
+            }
+            recNum += lNum;
+        }
+        xyRecordLen = XYHEADER + RecordLen;
+        timeBlockLen = THEADER + (long) recNum * xyRecordLen;
+    }
+
+    /**
+     * Get variable index in VARDEF
+     *
+     * @param var The variable
+     * @return Variable index, -1 if the variable is not found
+     */
+    private int getVarIndex(Variable var) {
+        Integer varIdx = var == null ? null : varIndexMap.get(var.getName());
+        return varIdx == null ? -1 : varIdx;
+    }
+
+    /**
+     * Get start position of the grid data of a record in the data file
+     *
+     * @param eIdx Ensemble index
+     * @param tIdx Time index in the data file
+     * @param varIdx Variable index in VARDEF
+     * @param levelIdx Level index
+     * @return Start position of the grid data
+     */
+    private long getRecordPosition(int eIdx, int tIdx, int varIdx, int levelIdx) {
+        long pos = FILEHEADER + ((long) eIdx * this.getTimeNum() + tIdx) * timeBlockLen + THEADER
+                + (long) (varRecordStarts[varIdx] + levelIdx) * xyRecordLen + XYHEADER;
+        if (OPTIONS.sequential) {
+            pos += 4;
+        }
+
+        return pos;
+    }
+
     private boolean isKeyWord(String str) {
         List<String> keyWords = new ArrayList<>();
         keyWords.add("DSET");
@@ -1181,7 +1328,7 @@ public class GrADSDataInfo extends DataInfo {
         File file = new File(DSET);
         String path = file.getParent();
         String fn = file.getName();
-        Date time = this.getTimes().get(timeIdx);
+        Date time = this.getTime(timeIdx);
         SimpleDateFormat format;
         String tStr = "year";
         if (fn.contains("%y4")) {
@@ -1292,6 +1439,9 @@ public class GrADSDataInfo extends DataInfo {
     @Override
     public DimArray read(String varName) {
         Variable var = this.getVariable(varName);
+        if (var == null) {
+            throw new IllegalArgumentException("Unknown variable: " + varName);
+        }
         int n = var.getDimNumber();
         int[] origin = new int[n];
         int[] size = new int[n];
@@ -1319,9 +1469,14 @@ public class GrADSDataInfo extends DataInfo {
     @Override
     public DimArray read(String varName, int[] origin, int[] size, int[] stride) {
         try {
+            //The variable name is matched ignoring case, its canonical name
+            //is used to find the record index
             Variable var = this.getVariable(varName);
+            if (var == null) {
+                throw new IllegalArgumentException("Unknown variable: " + varName);
+            }
             Section section = new Section(origin, size, stride);
-            if (varName.equals("ensemble")){
+            if (var.getName().equals("ensemble")){
                 Array dataArray = Array.factory(DataType.STRING, section.getShape());
                 IndexIterator ii = dataArray.getIndexIterator();
                 Range eRange = section.getRange(0);
@@ -1329,6 +1484,11 @@ public class GrADSDataInfo extends DataInfo {
                 return new DimArray(dataArray, var.getDimensions(section));
             }
             
+            final int varIdx = this.getVarIndex(var);
+            if (varIdx < 0) {
+                throw new IllegalArgumentException("Unknown variable: " + varName);
+            }
+
             Array dataArray = Array.factory(DataType.FLOAT, section.getShape());
             int rangeIdx = 0;
             Dimension eDim = var.getDimension(DimensionType.E);
@@ -1344,8 +1504,14 @@ public class GrADSDataInfo extends DataInfo {
             Range yRange = section.getRange(rangeIdx++);
             Range xRange = section.getRange(rangeIdx);
 
-            IndexIterator ii = dataArray.getIndexIterator();
+            final float[] data = (float[]) dataArray.getStorage();
+            final Range fyRange = yRange;
+            final Range fxRange = xRange;
+            int destPos = 0;
+            int sliceSize = yRange.length() * xRange.length();
 
+            //Each slice is read into its own offset of the data array
+            List<Runnable> tasks = new ArrayList<>();
             for (int eIdx = eRange.first(); eIdx <= eRange.last(); eIdx += eRange.stride()) {
                 for (int timeIdx = timeRange.first(); timeIdx <= timeRange.last();
                         timeIdx += timeRange.stride()) {
@@ -1353,10 +1519,18 @@ public class GrADSDataInfo extends DataInfo {
 
                     for (; levelIdx <= levRange.last();
                             levelIdx += levRange.stride()) {
-                        readXY(varName, eIdx, timeIdx, levelIdx, yRange, xRange, ii);
+                        final int e = eIdx, t = timeIdx, l = levelIdx, pos = destPos;
+                        tasks.add(new Runnable() {
+                            @Override
+                            public void run() {
+                                readXY(varIdx, e, t, l, fyRange, fxRange, data, pos);
+                            }
+                        });
+                        destPos += sliceSize;
                     }
                 }
             }
+            ParallelUtil.invokeAll(tasks);
 
             return new DimArray(dataArray.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
@@ -1365,80 +1539,24 @@ public class GrADSDataInfo extends DataInfo {
         }
     }
     
+    /**
+     * Close the data files opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
+    }
+    
     private void readEnsemble(Range eRange, IndexIterator ii) {
         for (int i = eRange.first(); i <= eRange.last(); i += eRange.stride()){
             ii.setObjectNext(this.ensNames.get(i));
         }
     }
 
-    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
-        try {
-            int varIdx = this.getVariableNames().indexOf(varName);
-            int xNum, yNum;
-            xNum = XNum;
-            yNum = YNum;
-            float[] data = new float[yNum * xNum];
-
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes;
-
-            br.seek(FILEHEADER);
-            br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
-
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
-            }
-
-            //Read X/Y data
-            byte[] byteData = new byte[xNum * yNum * 4];
-            br.read(byteData);
-            int start = 0;
-            for (i = 0; i < yNum * xNum; i++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                data[i] = DataConvert.bytes2Float(aBytes, _byteOrder);
-            }
-
-            br.close();
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setFloatNext(data[index]);
-                }
-            }
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-    
-    private void readXY(String varName, int eIdx, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
+    private void readXY(int varIdx, int eIdx, int timeIdx, int levelIdx, Range yRange, Range xRange,
+            float[] dest, int destPos) {
         try {
-            int varIdx = this.getVariableNames().indexOf(varName);
-            int xNum, yNum;
-            xNum = XNum;
-            yNum = YNum;
-            float[] data = new float[yNum * xNum];
+            int xNum = XNum;
 
             String filePath = DSET;
             int tIdx = timeIdx;
@@ -1447,49 +1565,43 @@ public class GrADSDataInfo extends DataInfo {
                 filePath = (String) result[0];
                 tIdx = (int) result[1];
             }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes;
-
-            br.seek(FILEHEADER);
-            br.seek(br.getFilePointer() + eIdx * this.getTimeNum() * RecLenPerTime);
-            br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
 
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
-            }
+            long pos = this.getRecordPosition(eIdx, tIdx, varIdx, levelIdx);
 
-            //Read X/Y data
-            byte[] byteData = new byte[xNum * yNum * 4];
-            br.read(byteData);
-            int start = 0;
-            for (i = 0; i < yNum * xNum; i++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                data[i] = DataConvert.bytes2Float(aBytes, _byteOrder);
+            //Memory mapped - decode the window from the mapped record view
+            if (this.channelPool.isMemoryMapped()) {
+                ByteBuffer buffer = this.channelPool.getBuffer(filePath, pos, YNum * xNum * 4);
+                BinaryDecoder.readFloat(buffer, _byteOrder, xNum, yRange, xRange, dest, destPos);
+                return;
             }
 
-            br.close();
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setFloatNext(data[index]);
+            //Read X/Y data - only the needed rows or the needed column span of each row
+            int yFirst = yRange.first();
+            int xFirst = xRange.first();
+            int xSpan = xRange.last() - xFirst + 1;
+            ByteBuffer buffer;
+            if (yRange.stride() == 1 && xSpan * 2 >= xNum) {
+                int rowNum = yRange.length();
+                buffer = ByteBuffer.allocate(rowNum * xNum * 4);
+                this.channelPool.read(filePath, pos + (long) yFirst * xNum * 4, buffer);
+                ((Buffer) buffer).rewind();
+                BinaryDecoder.readFloat(buffer, _byteOrder, xNum, new Range(0, rowNum - 1), xRange,
+                        dest, destPos);
+            } else {
+                Range rowRange = new Range(0, 0);
+                Range spanRange = new Range(0, xSpan - 1, xRange.stride());
+                buffer = ByteBuffer.allocate(xSpan * 4);
+                for (int y = yFirst; y <= yRange.last(); y += yRange.stride()) {
+                    ((Buffer) buffer).clear();
+                    this.channelPool.read(filePath, pos + ((long) y * xNum + xFirst) * 4, buffer);
+                    ((Buffer) buffer).rewind();
+                    destPos = BinaryDecoder.readFloat(buffer, _byteOrder, xSpan, rowRange, spanRange,
+                            dest, destPos);
                 }
             }
         } catch (FileNotFoundException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
@@ -1521,40 +1633,18 @@ public class GrADSDataInfo extends DataInfo {
                 tIdx = this.getTimeNum() - 1;
             }
         }
-        RandomAccessFile br = new RandomAccessFile(filePath, "r");
-        int i, j, lNum;
-        byte[] aBytes;
+        int i, j;
 
-        br.seek(FILEHEADER);
-        br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-        for (i = 0; i < varIdx; i++) {
-            lNum = VARDEF.getVars().get(i).getLevelNum();
-            if (lNum == 0) {
-                lNum = 1;
-            }
-            br.seek(br.getFilePointer() + lNum * RecordLen);
-        }
-        br.seek(br.getFilePointer() + levelIdx * RecordLen);
-
-        if (OPTIONS.sequential) {
-            br.seek(br.getFilePointer() + 4);
-        }
+        long pos = this.getRecordPosition(0, tIdx, varIdx, levelIdx);
 
         //Read X/Y data
-        byte[] byteData = new byte[xNum * yNum * 4];
-        br.read(byteData);
-        int start = 0;
+        FloatBuffer fb = this.channelPool.getBuffer(filePath, pos, xNum * yNum * 4).order(_byteOrder).asFloatBuffer();
         for (i = 0; i < yNum; i++) {
             for (j = 0; j < xNum; j++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                gridData[i][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
+                gridData[i][j] = fb.get();
             }
         }
 
-        br.close();
-
         return gridData;
     }
 
@@ -22,7 +22,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -32,12 +34,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.data.meteodata.arl.ARLDataInfo;
+import org.meteothink.data.util.FileChannelPool;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.util.DataConvert;
 import org.meteothink.util.BigDecimalUtil;
 import org.meteothink.util.DateUtil;
 import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
@@ -54,6 +57,9 @@ public class HYSPLITConcDataInfo extends DataInfo {
     private int _pack_flag;
     private int _loc_num;
     private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+    private long[] blockPositions;
+    private int[] blockPointNums;
+    private final FileChannelPool channelPool = new FileChannelPool();
     // </editor-fold>
     // <editor-fold desc="Constructor">
     /**
@@ -91,6 +97,16 @@ public class HYSPLITConcDataInfo extends DataInfo {
             byteOrder = ByteOrder.LITTLE_ENDIAN;
         }
     }
+
+    /**
+     * Get the read options - the byte order
+     *
+     * @return Read options
+     */
+    @Override
+    public String getReadOptions() {
+        return "byteOrder=" + byteOrder;
+    }
     
     @Override
     public void readDataInfo(String fileName) {
@@ -278,6 +294,9 @@ public class HYSPLITConcDataInfo extends DataInfo {
             Date aDateTime;
             List<Date> sample_start = new ArrayList<>();
             List<Date> sample_stop = new ArrayList<>();
+            List<Long> blockPosList = new ArrayList<>();
+            List<Integer> blockPointNumList = new ArrayList<>();
+            long fileLen = br.length();
             do {
                 //Record #6
                 br.skipBytes(8);
@@ -336,6 +355,9 @@ public class HYSPLITConcDataInfo extends DataInfo {
                             //aN = br.readInt();
                             br.read(aBytes);
                             aN = DataConvert.bytes2Int(aBytes, byteOrder);
+                            blockPosList.add(br.getFilePointer() + (long) aN * 8 <= fileLen
+                                    ? br.getFilePointer() : -1L);
+                            blockPointNumList.add(aN);
 //                            for (k = 0; k < aN; k++) {
 //                                if (br.getFilePointer() + 8 > br.length()) {
 //                                    break;
@@ -353,6 +375,10 @@ public class HYSPLITConcDataInfo extends DataInfo {
                             //aLevel = br.readInt();
                             br.read(aBytes);
                             aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
+                            aN = lat_point_num * lon_point_num;
+                            blockPosList.add(br.getFilePointer() + (long) aN * 4 <= fileLen
+                                    ? br.getFilePointer() : -1L);
+                            blockPointNumList.add(aN);
 //                            for (JP = 0; JP < lat_point_num; JP++) {
 //                                for (IP = 0; IP < lon_point_num; IP++) {
 //                                    br.skipBytes(4);
@@ -370,6 +396,19 @@ public class HYSPLITConcDataInfo extends DataInfo {
                 }
             } while (true);
 
+            //Block index of time, pollutant and level
+            int blockNum = tNum * pollutant_num * level_num;
+            blockPositions = new long[blockNum];
+            blockPointNums = new int[blockNum];
+            for (i = 0; i < blockNum; i++) {
+                if (i < blockPosList.size()) {
+                    blockPositions[i] = blockPosList.get(i);
+                    blockPointNums[i] = blockPointNumList.get(i);
+                } else {
+                    blockPositions[i] = -1;
+                }
+            }
+
             List<Double> values = new ArrayList<>();
             for (Date t : sample_start) {
                 values.add(DateUtil.toOADate(t));
@@ -507,17 +546,33 @@ public class HYSPLITConcDataInfo extends DataInfo {
             Range yRange = section.getRange(rangeIdx++);
             Range xRange = section.getRange(rangeIdx);
 
-            IndexIterator ii = dataArray.getIndexIterator();
+            final double[] data = (double[]) dataArray.getStorage();
+            final int varIdx = this.getVariableNames().indexOf(varName);
+            final Range fyRange = yRange;
+            final Range fxRange = xRange;
+            int destPos = 0;
+            int sliceSize = yRange.length() * xRange.length();
 
+            //Each slice is read into its own offset of the data array, the
+            //slices are in the order of the blocks in the file
+            List<Runnable> tasks = new ArrayList<>();
             for (int timeIdx = timeRange.first(); timeIdx <= timeRange.last();
                     timeIdx += timeRange.stride()) {
                 int levelIdx = levRange.first();
 
                 for (; levelIdx <= levRange.last();
                         levelIdx += levRange.stride()) {
-                    readXY(varName, timeIdx, levelIdx, yRange, xRange, ii);
+                    final int t = timeIdx, l = levelIdx, pos = destPos;
+                    tasks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            readXY(varIdx, t, l, fyRange, fxRange, data, pos);
+                        }
+                    });
+                    destPos += sliceSize;
                 }
             }
+            ParallelUtil.invokeAll(tasks);
 
             return new DimArray(dataArray.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
@@ -526,176 +581,58 @@ public class HYSPLITConcDataInfo extends DataInfo {
         }
     }
     
-    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
+    /**
+     * Close the data file opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
+    }
+
+    private void readXY(int varIdx, int timeIdx, int levelIdx, Range yRange, Range xRange,
+            double[] dest, int destPos) {
         try {
-            int varIdx = this.getVariableNames().indexOf(varName);
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            int i, j, nBytes;
-            byte[] aBytes = new byte[4];
             int xNum = this.getXDimension().getLength();
             int yNum = this.getYDimension().getLength();
-            double[][] dataArray = new double[xNum][yNum];
-            double[] data = new double[yNum * xNum];
-
-            //Record #1            
-            br.skipBytes(36);
-
-            //Record #2
-            nBytes = (8 * 4 + 8) * _loc_num;
-            br.skipBytes(nBytes);
-
-            //Record #3
-            String fName = new File(this.getFileName()).getName().toLowerCase();
-            if (fName.contains("gemzint")) {
-                br.skipBytes(28);   //For vertical concentration file gemzint
-            } else {
-                br.skipBytes(32);
+            int idx = (timeIdx * this.getVariableNum() + varIdx) * this.getZDimension().getLength() + levelIdx;
+            long pos = this.blockPositions[idx];
+            if (pos < 0) {
+                return;
             }
 
-            //Record #4
-            nBytes = 12 + this.getZDimension().getLength() * 4;
-            br.skipBytes(nBytes);
-
-            //Record #5
-            nBytes = 12 + this.getVariableNum() * 4;
-            br.skipBytes(nBytes);
-
-            //Record Data
-            int t, k;
-            int aLevel, aN, IP, JP;
-            String aType;
-            double aConc;
-            byte[] bytes;
-            byte[] sbytes = new byte[2];
-            int start = 0;
-            for (t = 0; t < this.getTimeNum(); t++) {
-                br.skipBytes(64);
-
-                for (i = 0; i < this.getVariableNum(); i++) {
-                    for (j = 0; j < this.getZDimension().getLength(); j++) {
-                        if (t == timeIdx && i == varIdx && j == levelIdx) {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                //aN = br.readInt();
-                                br.read(aBytes);
-                                aN = DataConvert.bytes2Int(aBytes, byteOrder);
-                                bytes = new byte[aN * 8];
-                                br.read(bytes);
-                                start = 0;
-                                for (k = 0; k < aN; k++) {
-//                                    if (br.getFilePointer() + 8 > br.length()) {
-//                                        break;
-//                                    }
-                                    //IP = br.readShort();
-                                    //JP = br.readShort();
-                                    //aConc = br.readFloat();
-                                    System.arraycopy(bytes, start, sbytes, 0, 2);
-                                    IP = DataConvert.bytes2Short(sbytes, byteOrder) - 1;
-                                    start += 2;
-                                    System.arraycopy(bytes, start, sbytes, 0, 2);                                    
-                                    JP = DataConvert.bytes2Short(sbytes, byteOrder) - 1;
-                                    start += 2;
-                                    System.arraycopy(bytes, start, aBytes, 0, 4);
-                                    aConc = DataConvert.bytes2Float(aBytes, byteOrder);
-                                    start += 4;
-                                    if (IP >= 0 && IP < xNum && JP >= 0 && JP < yNum) {
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                bytes = new byte[yNum * xNum * 4];
-                                br.read(bytes);
-                                start = 0;
-                                for (JP = 0; JP < yNum; JP++) {
-                                    for (IP = 0; IP < xNum; IP++) {
-                                        //aConc = br.readFloat();
-                                        System.arraycopy(bytes, start, aBytes, 0, 4);
-                                        aConc = DataConvert.bytes2Float(aBytes, byteOrder);
-                                        start += 4;
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            }
-                        } else {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                //aN = br.readInt();
-                                br.read(aBytes);
-                                aN = DataConvert.bytes2Int(aBytes, byteOrder);
-//                                for (k = 0; k < aN; k++) {
-//                                    if (br.getFilePointer() + 8 > br.length()) {
-//                                        break;
-//                                    }
-//                                    IP = br.readShort();
-//                                    JP = br.readShort();
-//                                    br.skipBytes(4);
-//                                }
-                                br.skipBytes(aN * 8);
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-//                                for (JP = 0; JP < yNum; JP++) {
-//                                    for (IP = 0; IP < xNum; IP++) {
-//                                        br.skipBytes(4);
-//                                    }
-//                                }
-                                br.skipBytes(yNum * xNum * 4);
-                            }
-                        }
+            int xLen = xRange.length();
+            if (_pack_flag == 1) {
+                //Only the points inside the window are set, others are zero
+                int n = this.blockPointNums[idx];
+                ByteBuffer bb = this.channelPool.getBuffer(this.getFileName(), pos, n * 8).order(byteOrder);
+                int IP, JP, xi, yi;
+                float aConc;
+                for (int k = 0; k < n; k++) {
+                    IP = bb.getShort() - 1;
+                    JP = bb.getShort() - 1;
+                    aConc = bb.getFloat();
+                    xi = IP - xRange.first();
+                    yi = JP - yRange.first();
+                    if (IP <= xRange.last() && xi >= 0 && xi % xRange.stride() == 0
+                            && JP <= yRange.last() && yi >= 0 && yi % yRange.stride() == 0) {
+                        dest[destPos + (yi / yRange.stride()) * xLen + xi / xRange.stride()] = aConc;
                     }
                 }
-
-                if (br.getFilePointer() + 10 > br.length()) {
-                    break;
-                }
-            }
-
-            br.close();
-
-            for (i = 0; i < yNum; i++) {
-                for (j = 0; j < xNum; j++) {
-                    data[i * xNum + j] = dataArray[j][i];
-                }
-            }
-            
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setDoubleNext(data[index]);
+            } else {
+                FloatBuffer fb = this.channelPool.getBuffer(this.getFileName(), pos, yNum * xNum * 4)
+                        .order(byteOrder).asFloatBuffer();
+                for (int y = yRange.first(); y <= yRange.last();
+                        y += yRange.stride()) {
+                    for (int x = xRange.first(); x <= xRange.last();
+                            x += xRange.stride()) {
+                        dest[destPos++] = fb.get(y * xNum + x);
+                    }
                 }
             }
         } catch (FileNotFoundException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(HYSPLITConcDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } catch (IOException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(HYSPLITConcDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
     
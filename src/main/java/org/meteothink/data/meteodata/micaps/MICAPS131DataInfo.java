@@ -16,7 +16,9 @@ package org.meteothink.data.meteodata.micaps;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -30,12 +32,13 @@ import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.DimensionType;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.data.meteodata.Variable;
+import org.meteothink.data.util.FileChannelPool;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.util.DataConvert;
 import org.meteothink.util.BigDecimalUtil;
 import org.meteothink.util.DateUtil;
 import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
@@ -71,6 +74,7 @@ public class MICAPS131DataInfo extends DataInfo {
     private float[] stLats;
     private float[] stAlts;
     private int dataByteNum;
+    private final FileChannelPool channelPool = new FileChannelPool();
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -82,6 +86,23 @@ public class MICAPS131DataInfo extends DataInfo {
     }
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the data file is read by memory mapping
+     *
+     * @return Boolean
+     */
+    public boolean isMemoryMapped() {
+        return this.channelPool.isMemoryMapped();
+    }
+
+    /**
+     * Set if the data file is read by memory mapping
+     *
+     * @param value Boolean
+     */
+    public void setMemoryMapped(boolean value) {
+        this.channelPool.setMemoryMapped(value);
+    }
     // </editor-fold>
     // <editor-fold desc="Methods">
 
@@ -310,12 +331,26 @@ public class MICAPS131DataInfo extends DataInfo {
             Range yRange = section.getRange(rangeIdx++);
             Range xRange = section.getRange(rangeIdx);
 
-            IndexIterator ii = dataArray.getIndexIterator();
+            final float[] data = (float[]) dataArray.getStorage();
+            final Range fyRange = yRange;
+            final Range fxRange = xRange;
+            int destPos = 0;
+            int sliceSize = yRange.length() * xRange.length();
 
+            //Each slice is read into its own offset of the data array
+            List<Runnable> tasks = new ArrayList<>();
             for (int levelIdx = levRange.first(); levelIdx <= levRange.last();
                     levelIdx += levRange.stride()) {
-                readXY(levelIdx, yRange, xRange, ii);
+                final int l = levelIdx, pos = destPos;
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        readXY(l, fyRange, fxRange, data, pos);
+                    }
+                });
+                destPos += sliceSize;
             }
+            ParallelUtil.invokeAll(tasks);
 
             return new DimArray(dataArray.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
@@ -324,15 +359,18 @@ public class MICAPS131DataInfo extends DataInfo {
         }
     }
 
-    private void readXY(int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
+    /**
+     * Close the data file opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
+    }
+
+    private void readXY(int levelIdx, Range yRange, Range xRange, float[] dest, int destPos) {
         try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
             int n = yNum * xNum * dataByteNum;
-            byte[] bytes = new byte[n];
-            br.skipBytes(1024);
-            br.skipBytes(levelIdx * n);
-            br.read(bytes);
-            br.close();
+            ByteBuffer buffer = this.channelPool.getBuffer(this.getFileName(), 1024 + (long) levelIdx * n, n);
 
             int index;
             if (dataByteNum == 1) {
@@ -341,16 +379,17 @@ public class MICAPS131DataInfo extends DataInfo {
                     for (int x = xRange.first(); x <= xRange.last();
                             x += xRange.stride()) {
                         index = (yNum - y - 1) * xNum + x;             
-                        ii.setFloatNext(DataConvert.byte2Int(bytes[index]));
+                        dest[destPos++] = DataConvert.byte2Int(buffer.get(index));
                     }
                 }
             } else {
+                ShortBuffer sb = buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
                 for (int y = yRange.first(); y <= yRange.last();
                         y += yRange.stride()) {
                     for (int x = xRange.first(); x <= xRange.last();
                             x += xRange.stride()) {
-                        index = ((yNum - y - 1) * xNum + x) * 2;             
-                        ii.setFloatNext(DataConvert.bytes2Short(Arrays.copyOfRange(bytes, index, index + 2), ByteOrder.LITTLE_ENDIAN));
+                        index = (yNum - y - 1) * xNum + x;
+                        dest[destPos++] = sb.get(index);
                     }
                 }
             }
@@ -11,7 +11,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -25,13 +28,13 @@ import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.DimensionType;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.data.meteodata.Variable;
-import org.meteothink.util.DataConvert;
+import org.meteothink.data.util.FileChannelPool;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.util.DateUtil;
 import org.meteothink.common.projection.KnownCoordinateSystems;
 import org.meteothink.common.projection.ProjUtil;
 import org.meteothink.ndarray.Array;
 import org.meteothink.ndarray.DataType;
-import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Range;
 import org.meteothink.ndarray.Section;
@@ -48,6 +51,7 @@ public class MM5DataInfo extends DataInfo {
     private ByteOrder _byteOrder = ByteOrder.BIG_ENDIAN;
     private BigHeader _bigHeader = new BigHeader();
     List<SubHeader> _subHeaders = new ArrayList<>();
+    private final FileChannelPool channelPool = new FileChannelPool();
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -715,17 +719,32 @@ public class MM5DataInfo extends DataInfo {
                     section.getRange(rangeIdx)
                     : new Range(0, 0);
 
-            IndexIterator ii = dataArray.getIndexIterator();
+            final float[] data = (float[]) dataArray.getStorage();
+            final String vName = varName;
+            final Range fyRange = yRange;
+            final Range fxRange = xRange;
+            int destPos = 0;
+            int sliceSize = yRange.length() * xRange.length();
 
+            //Each slice is read into its own offset of the data array
+            List<Runnable> tasks = new ArrayList<>();
             for (int timeIdx = timeRange.first(); timeIdx <= timeRange.last();
                     timeIdx += timeRange.stride()) {
                 int levelIdx = levRange.first();
 
                 for (; levelIdx <= levRange.last();
                         levelIdx += levRange.stride()) {
-                    readXY(varName, timeIdx, levelIdx, yRange, xRange, ii);
+                    final int t = timeIdx, l = levelIdx, pos = destPos;
+                    tasks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            readXY(vName, t, l, fyRange, fxRange, data, pos);
+                        }
+                    });
+                    destPos += sliceSize;
                 }
             }
+            ParallelUtil.invokeAll(tasks);
 
             return new DimArray(dataArray.reduce(), var.getDimensions(section));
         } catch (InvalidRangeException ex) {
@@ -734,43 +753,58 @@ public class MM5DataInfo extends DataInfo {
         }
     }
 
-    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
+    /**
+     * Close the data file opened by reading
+     */
+    @Override
+    public void close() {
+        this.channelPool.close();
+    }
+
+    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange,
+            float[] dest, int destPos) {
         try {
             int varIdx = this.getVariableNames().indexOf(varName);
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
             Variable var = this.getVariables().get(varIdx);
             Dimension xdim = var.getXDimension();
             Dimension ydim = var.getYDimension();
             int xn = xdim != null ? xdim.getLength() : 1;
             int yn = ydim != null ? ydim.getLength() : 1;
             SubHeader sh = this.findSubHeader(var.getName(), timeIdx);
-            br.seek(sh.position + sh.length);
             int n = xn * yn;
-            br.skipBytes(4);
-            br.skipBytes(n * 4 * levelIdx);
-            byte[] dataBytes = new byte[n * 4];
-            br.read(dataBytes);
-            br.close();
-
-            int i, j;
-            float[] data = new float[n];
-            int start = 0;
-            byte[] bytes = new byte[4];
-            for (i = 0; i < xn; i++) {
-                for (j = 0; j < yn; j++) {
-                    System.arraycopy(dataBytes, start, bytes, 0, 4);
-                    data[j * xn + i] = DataConvert.bytes2Float(bytes, _byteOrder);
-                    start += 4;
+            long pos = sh.position + sh.length + 4 + (long) n * 4 * levelIdx;
+            String fileName = this.getFileName();
+
+            //The grid is stored with y varying fastest, so only the needed
+            //columns or the needed y span of each column are read
+            int xLen = xRange.length();
+            int yFirst = yRange.first();
+            int ySpan = yRange.last() - yFirst + 1;
+            FloatBuffer fb;
+            int xi, yi, y;
+            if (xRange.stride() == 1 && ySpan * 2 >= yn) {
+                int xFirst = xRange.first();
+                ByteBuffer buffer = ByteBuffer.allocate(xLen * yn * 4);
+                this.channelPool.read(fileName, pos + (long) xFirst * yn * 4, buffer);
+                ((Buffer) buffer).rewind();
+                fb = buffer.order(_byteOrder).asFloatBuffer();
+                for (yi = 0, y = yFirst; y <= yRange.last(); yi++, y += yRange.stride()) {
+                    for (xi = 0; xi < xLen; xi++) {
+                        dest[destPos + yi * xLen + xi] = fb.get(xi * yn + y);
+                    }
                 }
-            }
-
-            br.close();
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xn + x;
-                    ii.setFloatNext(data[index]);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(ySpan * 4);
+                xi = 0;
+                for (int x = xRange.first(); x <= xRange.last(); x += xRange.stride()) {
+                    ((Buffer) buffer).clear();
+                    this.channelPool.read(fileName, pos + ((long) x * yn + yFirst) * 4, buffer);
+                    ((Buffer) buffer).rewind();
+                    fb = buffer.order(_byteOrder).asFloatBuffer();
+                    for (yi = 0, y = yFirst; y <= yRange.last(); yi++, y += yRange.stride()) {
+                        dest[destPos + yi * xLen + xi] = fb.get(y - yFirst);
+                    }
+                    xi++;
                 }
             }
         } catch (FileNotFoundException ex) {
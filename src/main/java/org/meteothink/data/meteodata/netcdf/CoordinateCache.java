@@ -0,0 +1,185 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata.netcdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.meteothink.ndarray.Array;
+
+/**
+ * Process wide cache of decoded dimension values, so the same grid opened
+ * again does not decode (or read) its coordinates again and the dimensions of
+ * the files share the same value lists. An entry is keyed by the coordinate
+ * metadata and, if it is given, checked by the raw coordinate values - so a
+ * file with the same metadata but other coordinate values never gets the
+ * cached values. The shared value lists are unmodifiable.
+ *
+ * @author Yaqiang Wang
+ */
+public class CoordinateCache {
+
+    // <editor-fold desc="Variables">
+    private static int maxEntries = 500;
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static long hitCount = 0;
+    private static long missCount = 0;
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get maximum entry number
+     *
+     * @return Maximum entry number
+     */
+    public static synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set maximum entry number, 0 to disable the cache
+     *
+     * @param value Maximum entry number
+     */
+    public static synchronized void setMaxEntries(int value) {
+        maxEntries = Math.max(0, value);
+        evict();
+    }
+
+    /**
+     * Get entry number
+     *
+     * @return Entry number
+     */
+    public static synchronized int getEntryNum() {
+        return entries.size();
+    }
+
+    /**
+     * Get hit count
+     *
+     * @return Hit count
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get miss count
+     *
+     * @return Miss count
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Get the raw values of a coordinate array
+     *
+     * @param a Coordinate array
+     * @return Raw values
+     */
+    public static double[] getRaw(Array a) {
+        int n = (int) a.getSize();
+        double[] raw = new double[n];
+        for (int i = 0; i < n; i++) {
+            raw[i] = a.getDouble(i);
+        }
+
+        return raw;
+    }
+
+    /**
+     * Get cached dimension values
+     *
+     * @param key Metadata key
+     * @param raw Raw coordinate values to check, null to not check
+     * @return Dimension values, null if not cached
+     */
+    public static synchronized List<Double> get(String key, double[] raw) {
+        Entry entry = entries.get(key);
+        if (entry != null && (raw == null || Arrays.equals(raw, entry.raw))) {
+            hitCount += 1;
+            return entry.values;
+        }
+
+        missCount += 1;
+        return null;
+    }
+
+    /**
+     * Cache dimension values
+     *
+     * @param key Metadata key
+     * @param raw Raw coordinate values to check by get(), null to not check
+     * @param values Dimension values
+     * @return The shared dimension values
+     */
+    public static synchronized List<Double> put(String key, double[] raw, List<Double> values) {
+        List<Double> shared = Collections.unmodifiableList(new ArrayList<>(values));
+        if (maxEntries > 0) {
+            entries.put(key, new Entry(raw, shared));
+            evict();
+        }
+
+        return shared;
+    }
+
+    /**
+     * Cache dimension values
+     *
+     * @param key Metadata key
+     * @param raw Raw coordinate values to check by get(), null to not check
+     * @param values Dimension values
+     * @return The shared dimension values
+     */
+    public static List<Double> put(String key, double[] raw, double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double v : values) {
+            list.add(v);
+        }
+
+        return put(key, raw, list);
+    }
+
+    /**
+     * Remove all entries
+     */
+    public static synchronized void clear() {
+        entries.clear();
+    }
+
+    private static void evict() {
+        while (entries.size() > maxEntries) {
+            String key = entries.keySet().iterator().next();
+            entries.remove(key);
+        }
+    }
+    // </editor-fold>
+
+    private static class Entry {
+
+        final double[] raw;
+        final List<Double> values;
+
+        Entry(double[] raw, List<Double> values) {
+            this.raw = raw;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata.netcdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.meteothink.data.meteodata.DataInfo;
+import org.meteothink.data.meteodata.Variable;
+import org.meteothink.data.util.ParallelUtil;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DimArray;
+import ucar.nc2.NetcdfFileWriter;
+
+/**
+ * Write the variables of a data info to a netCDF file. Each variable is split
+ * into blocks of the leading (time/level) dimensions, the blocks are read in
+ * parallel if the data info can be read concurrently and written in order by
+ * the calling thread. The number of blocks read ahead is bounded, so the
+ * memory used is bounded by the block bytes instead of the variable size.
+ *
+ * @author Yaqiang Wang
+ */
+public class NCConverter {
+
+    // <editor-fold desc="Variables">
+    private final DataInfo dataInfo;
+    private final NetcdfFileWriter ncfilew;
+    private long blockBytes = 16 * 1024 * 1024;
+    private int queueSize = 0;
+    private long bytes = 0;
+    private long time = 0;
+    private int blockNum = 0;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param dataInfo Input data info
+     * @param ncfilew Output netCDF file writer - created
+     */
+    public NCConverter(DataInfo dataInfo, NetcdfFileWriter ncfilew) {
+        this.dataInfo = dataInfo;
+        this.ncfilew = ncfilew;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get maximum block bytes
+     *
+     * @return Maximum block bytes
+     */
+    public long getBlockBytes() {
+        return blockBytes;
+    }
+
+    /**
+     * Set maximum block bytes
+     *
+     * @param value Maximum block bytes
+     */
+    public void setBlockBytes(long value) {
+        blockBytes = Math.max(1024, value);
+    }
+
+    /**
+     * Get the number of blocks read ahead of writing
+     *
+     * @return Queue size
+     */
+    public int getQueueSize() {
+        return queueSize > 0 ? queueSize : 2 * ParallelUtil.getThreadNum();
+    }
+
+    /**
+     * Set the number of blocks read ahead of writing, 0 for twice the thread
+     * number
+     *
+     * @param value Queue size
+     */
+    public void setQueueSize(int value) {
+        queueSize = Math.max(0, value);
+    }
+
+    /**
+     * Get written bytes
+     *
+     * @return Written bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get written block number
+     *
+     * @return Block number
+     */
+    public int getBlockNum() {
+        return blockNum;
+    }
+
+    /**
+     * Get elapsed time of writing in seconds
+     *
+     * @return Elapsed seconds
+     */
+    public double getElapsedTime() {
+        return time / 1.0e9;
+    }
+
+    /**
+     * Get throughput in MB per second
+     *
+     * @return Throughput
+     */
+    public double getThroughput() {
+        return time == 0 ? 0 : bytes / 1048576.0 / getElapsedTime();
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Write a variable. The data is read from the data info variable with the
+     * same name.
+     *
+     * @param ncVar Output netCDF variable
+     * @throws IOException
+     * @throws ucar.ma2.InvalidRangeException
+     */
+    public void write(ucar.nc2.Variable ncVar) throws IOException, ucar.ma2.InvalidRangeException {
+        write(ncVar.getShortName(), ncVar);
+    }
+
+    /**
+     * Write a variable
+     *
+     * @param varName Input variable name
+     * @param ncVar Output netCDF variable
+     * @throws IOException
+     * @throws ucar.ma2.InvalidRangeException
+     */
+    public void write(final String varName, final ucar.nc2.Variable ncVar) throws IOException, ucar.ma2.InvalidRangeException {
+        Variable var = dataInfo.getVariable(varName);
+        if (var == null) {
+            throw new IOException("Variable not exist: " + varName);
+        }
+        int rank = var.getDimNumber();
+        int[] shape = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            shape[i] = var.getDimension(i).getLength();
+        }
+
+        long start = System.nanoTime();
+        List<int[][]> blocks = NCUtil.getBlocks(shape, ncVar.getElementSize(), blockBytes);
+        //Only the data infos safe for concurrent reads are read in parallel,
+        //the others share a file pointer or header state
+        boolean parallel = ParallelUtil.isParallel() && blocks.size() > 1
+                && dataInfo.isParallelRead();
+        int window = parallel ? Math.max(1, getQueueSize()) : 1;
+        try {
+            for (int i = 0; i < blocks.size(); i += window) {
+                //Read a window of blocks, then write them in order
+                List<int[][]> batch = blocks.subList(i, Math.min(i + window, blocks.size()));
+                ucar.ma2.Array[] datas = readBlocks(varName, ncVar, batch);
+                for (int j = 0; j < datas.length; j++) {
+                    ncfilew.write(ncVar, batch.get(j)[0], datas[j]);
+                    bytes += datas[j].getSizeBytes();
+                    blockNum += 1;
+                    datas[j] = null;
+                }
+            }
+        } finally {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Read the blocks of a variable with the shared parallel executor
+     */
+    private ucar.ma2.Array[] readBlocks(final String varName, final ucar.nc2.Variable ncVar,
+            final List<int[][]> batch) throws IOException {
+        final ucar.ma2.Array[] datas = new ucar.ma2.Array[batch.size()];
+        if (datas.length == 1) {
+            datas[0] = readBlock(varName, ncVar, batch.get(0)[0], batch.get(0)[1]);
+            return datas;
+        }
+
+        final IOException[] errors = new IOException[datas.length];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < datas.length; i++) {
+            final int idx = i;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int[][] b = batch.get(idx);
+                        datas[idx] = readBlock(varName, ncVar, b[0], b[1]);
+                    } catch (IOException ex) {
+                        errors[idx] = ex;
+                    }
+                }
+            });
+        }
+        try {
+            ParallelUtil.invokeAll(tasks);
+        } catch (CancellationException ex) {
+            throw new IOException(ex);
+        }
+        for (IOException ex : errors) {
+            if (ex != null) {
+                throw ex;
+            }
+        }
+
+        return datas;
+    }
+
+    /**
+     * Read a block of a variable as netCDF array of the output data type
+     */
+    private ucar.ma2.Array readBlock(String varName, ucar.nc2.Variable ncVar, int[] origin, int[] count) throws IOException {
+        int[] stride = new int[origin.length];
+        Arrays.fill(stride, 1);
+        DimArray r = dataInfo.read(varName, origin, count, stride);
+        if (r == null) {
+            throw new IOException("Failed to read variable: " + varName);
+        }
+        Array a = r.getArray();
+        Object storage = a.getStorage();
+        if (!storage.getClass().isArray() || java.lang.reflect.Array.getLength(storage) != a.getSize()) {
+            storage = a.copy().getStorage();
+        }
+        ucar.ma2.Array data = ucar.ma2.Array.factory(NCUtil.convertDataType(a.getDataType()), count, storage);
+        if (data.getDataType() != ncVar.getDataType()) {
+            ucar.ma2.Array cdata = ucar.ma2.Array.factory(ncVar.getDataType(), count);
+            ucar.ma2.MAMath.copy(cdata, data);
+            data = cdata;
+        }
+
+        return data;
+    }
+    // </editor-fold>
+}
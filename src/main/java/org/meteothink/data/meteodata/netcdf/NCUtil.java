@@ -5,7 +5,9 @@
  */
 package org.meteothink.data.meteodata.netcdf;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,6 +18,10 @@ import org.meteothink.ndarray.DataType;
 import org.meteothink.ndarray.Dimension;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.Section;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingStrategy;
 
 /**
  *
@@ -23,6 +29,12 @@ import org.meteothink.ndarray.Section;
  */
 public class NCUtil {
     
+    /**
+     * Default target chunk bytes - 1 MB
+     */
+    public static final long DEFAULT_CHUNK_BYTES = 1024 * 1024;
+    private static final int UNLIMITED_CHUNK_LENGTH = 1024;
+    
     /**
      * Convert netcdf data type to meteothink data type
      * @param ncDataType Netcdf data type
@@ -147,4 +159,179 @@ public class NCUtil {
             return null;
         }
     }
+    
+    /**
+     * Create a new netCDF file writer. NetCDF-4 files are chunked by the
+     * standard chunking strategy and compressed by deflate if the deflate
+     * level is larger than 0.
+     * @param fileName File name
+     * @param version NetCDF file version
+     * @param deflateLevel Deflate level (0 - 9), 0 for no compression
+     * @param shuffle Use shuffle filter or not
+     * @return NetCDF file writer
+     * @throws IOException 
+     */
+    public static NetcdfFileWriter createNCFileWriter(String fileName, NetcdfFileWriter.Version version,
+            int deflateLevel, boolean shuffle) throws IOException {
+        if (version == NetcdfFileWriter.Version.netcdf4 || version == NetcdfFileWriter.Version.netcdf4_classic) {
+            Nc4Chunking chunker = Nc4ChunkingStrategy.factory(Nc4Chunking.Strategy.standard,
+                    Math.max(0, Math.min(9, deflateLevel)), shuffle);
+            return NetcdfFileWriter.createNew(version, fileName, chunker);
+        }
+        
+        return NetcdfFileWriter.createNew(version, fileName);
+    }
+    
+    /**
+     * Set chunk shape of a variable in a netCDF-4 file to be created
+     * @param var The variable
+     * @param chunkShape Chunk shape
+     */
+    public static void setChunkShape(ucar.nc2.Variable var, int[] chunkShape) {
+        ucar.ma2.Array values = ucar.ma2.Array.factory(ucar.ma2.DataType.INT, new int[]{chunkShape.length}, 
+                chunkShape.clone());
+        var.addAttribute(new ucar.nc2.Attribute(CDM.CHUNK_SIZES, values));
+    }
+    
+    /**
+     * Set chunk shape of a variable in a netCDF-4 file to be created by data
+     * access pattern
+     * @param var The variable
+     * @param access Data access pattern - map, series or balanced
+     */
+    public static void setChunkShape(ucar.nc2.Variable var, String access) {
+        setChunkShape(var, getChunkShape(var.getShape(), var.getElementSize(), access, DEFAULT_CHUNK_BYTES));
+    }
+    
+    /**
+     * Get chunk shape by data access pattern. The 'map' pattern keeps whole
+     * 2D (Y/X) fields in a chunk, the 'series' pattern keeps long series of
+     * the first (time) dimension for small Y/X tiles, and the 'balanced'
+     * pattern scales all dimensions by the same factor.
+     * @param shape Variable shape, 0 for unlimited dimension
+     * @param elemSize Element byte size
+     * @param access Data access pattern - map, series or balanced
+     * @param chunkBytes Target chunk bytes
+     * @return Chunk shape
+     */
+    public static int[] getChunkShape(int[] shape, int elemSize, String access, long chunkBytes) {
+        int rank = shape.length;
+        int[] chunk = new int[rank];
+        Arrays.fill(chunk, 1);
+        if (rank == 0) {
+            return chunk;
+        }
+        
+        long n = Math.max(1, chunkBytes / Math.max(1, elemSize));
+        int[] dims = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            dims[i] = shape[i] > 0 ? shape[i] : Integer.MAX_VALUE;
+        }
+        if (rank == 1) {
+            chunk[0] = (int) Math.min(dims[0], shape[0] > 0 ? n : Math.min(n, UNLIMITED_CHUNK_LENGTH));
+            return chunk;
+        }
+        
+        switch (access.toLowerCase()) {
+            case "series":
+                int t = (int) Math.min(dims[0], shape[0] > 0 ? n : Math.min(n, UNLIMITED_CHUNK_LENGTH));
+                long tile = Math.max(1, n / t);
+                if (rank == 2) {
+                    chunk[0] = t;
+                    chunk[1] = (int) Math.min(dims[1], tile);
+                } else {
+                    chunk[0] = t;
+                    int side = (int) Math.max(1, Math.sqrt(tile));
+                    chunk[rank - 2] = Math.min(dims[rank - 2], side);
+                    chunk[rank - 1] = (int) Math.min(dims[rank - 1], Math.max(1, tile / chunk[rank - 2]));
+                }
+                break;
+            case "map":
+                chunk[rank - 1] = (int) Math.min(dims[rank - 1], n);
+                chunk[rank - 2] = (int) Math.min(dims[rank - 2], Math.max(1, n / chunk[rank - 1]));
+                break;
+            default:
+                //Unlimited dimensions are chunked by 1
+                double total = 1;
+                int fixedNum = 0;
+                for (int i = 0; i < rank; i++) {
+                    if (shape[i] > 0) {
+                        total *= shape[i];
+                        fixedNum += 1;
+                    }
+                }
+                if (fixedNum == 0) {
+                    break;
+                }
+                double f = Math.min(1.0, Math.pow(n / total, 1.0 / fixedNum));
+                for (int i = 0; i < rank; i++) {
+                    if (shape[i] > 0) {
+                        chunk[i] = (int) Math.max(1, Math.min(shape[i], Math.round(shape[i] * f)));
+                    }
+                }
+                break;
+        }
+        
+        return chunk;
+    }
+    
+    /**
+     * Split a variable shape to contiguous blocks not larger than the maximum
+     * bytes. The trailing dimensions are kept whole as long as they fit, the
+     * next dimension is split and the leading dimensions are stepped one by 
+     * one.
+     * @param shape Variable shape
+     * @param elemSize Element byte size
+     * @param maxBytes Maximum chunk bytes
+     * @return Origin and count arrays of the blocks
+     */
+    public static List<int[][]> getBlocks(int[] shape, int elemSize, long maxBytes) {
+        int rank = shape.length;
+        long inner = elemSize;
+        int d = rank;
+        while (d > 0 && inner * shape[d - 1] <= maxBytes) {
+            inner *= shape[d - 1];
+            d -= 1;
+        }
+
+        List<int[][]> chunks = new ArrayList<>();
+        for (int s : shape) {
+            if (s == 0) {
+                return chunks;
+            }
+        }
+        int split = d - 1;
+        int step = split < 0 ? 1 : (int) Math.max(1, Math.min(shape[split], maxBytes / inner));
+        int[] origin = new int[rank];
+        while (true) {
+            int[] count = new int[rank];
+            for (int j = 0; j < rank; j++) {
+                if (j < split) {
+                    count[j] = 1;
+                } else if (j == split) {
+                    count[j] = Math.min(step, shape[j] - origin[j]);
+                } else {
+                    count[j] = shape[j];
+                }
+            }
+            chunks.add(new int[][]{origin.clone(), count});
+
+            //Next chunk
+            int j = split;
+            if (j < 0) {
+                break;
+            }
+            origin[j] += step;
+            while (j > 0 && origin[j] >= shape[j]) {
+                origin[j] = 0;
+                j -= 1;
+                origin[j] += 1;
+            }
+            if (origin[j] >= shape[j]) {
+                break;
+            }
+        }
+
+        return chunks;
+    }
 }
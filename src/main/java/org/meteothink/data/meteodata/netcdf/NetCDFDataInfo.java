@@ -25,12 +25,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import org.locationtech.proj4j.CoordinateReferenceSystem;
-import org.meteothink.math.ArrayMath;
 import org.meteothink.math.ArrayUtil;
 import org.meteothink.data.meteodata.MeteoDataType;
 import org.meteothink.util.DateUtil;
@@ -43,6 +52,7 @@ import org.meteothink.ndarray.IndexIterator;
 import org.meteothink.ndarray.InvalidRangeException;
 import org.meteothink.ndarray.MAMath;
 import org.meteothink.data.meteodata.Attribute;
+import org.meteothink.data.util.ParallelUtil;
 import org.meteothink.ndarray.DimArray;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFileWriter;
@@ -60,18 +70,23 @@ public class NetCDFDataInfo extends DataInfo {
     private Conventions _convention = Conventions.CF;
     private NetcdfFile ncfile = null;
     private boolean keepOpen = false;
+    private String iospClassName = null;
+    private boolean referenced = false;
+    private double unpackFillValue = Double.NaN;
+    private static long joinChunkBytes = 32 * 1024 * 1024;
     private List<ucar.nc2.Variable> ncVariables = new ArrayList<>();
     private List<ucar.nc2.Dimension> ncDimensions = new ArrayList<>();
+    private Map<String, String> dimNameMap = new HashMap<>();
     private List<Dimension> dimensions = new ArrayList<>();
     private List<ucar.nc2.Attribute> ncAtributes = new ArrayList<>();
     private List<Attribute> attributes = new ArrayList<>();
-    private ucar.nc2.Variable _xVar = null;
-    private ucar.nc2.Variable _yVar = null;
-    private ucar.nc2.Variable _levelVar = null;
     private ucar.nc2.Variable _timeVar = null;
     private boolean _isHDFEOS = false;
     private boolean _isSWATH = false;
     private boolean _isPROFILE = false;
+    //Checked without the lock once the metadata are resolved
+    private volatile boolean headerOnly = false;
+    private boolean resolving = false;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -93,6 +108,64 @@ public class NetCDFDataInfo extends DataInfo {
         return this.ncfile;
     }
 
+    /**
+     * Get the maximum bytes of a data chunk read by joining files
+     *
+     * @return Maximum chunk bytes
+     */
+    public static long getJoinChunkBytes() {
+        return joinChunkBytes;
+    }
+
+    /**
+     * Set the maximum bytes of a data chunk read by joining files. Up to four
+     * chunks are in memory at the same time.
+     *
+     * @param value Maximum chunk bytes
+     */
+    public static void setJoinChunkBytes(long value) {
+        joinChunkBytes = Math.max(1024, value);
+    }
+
+    /**
+     * Get the value of the missing data in unpacked data
+     *
+     * @return Unpack fill value
+     */
+    public double getUnpackFillValue() {
+        return this.unpackFillValue;
+    }
+
+    /**
+     * Set the value of the missing data in unpacked data, NaN by default
+     *
+     * @param value Unpack fill value
+     */
+    public void setUnpackFillValue(double value) {
+        this.unpackFillValue = value;
+    }
+
+    /**
+     * Get the read options - the fill value of unpacking
+     *
+     * @return Read options
+     */
+    @Override
+    public String getReadOptions() {
+        return "unpackFillValue=" + this.unpackFillValue;
+    }
+
+    /**
+     * Get if the data info can be read by several threads at the same time -
+     * each read acquires its own file handle unless the file is kept opened
+     *
+     * @return Boolean
+     */
+    @Override
+    public boolean isParallelRead() {
+        return this.ncfile == null;
+    }
+
     /**
      * Get MeteoInfo dimensions
      *
@@ -104,7 +177,8 @@ public class NetCDFDataInfo extends DataInfo {
     }
 
     /**
-     * Get ucar nc2 dimensions
+     * Get ucar nc2 dimensions - the metadata of the file, the renamed HDF-EOS
+     * dimensions are copies
      *
      * @return Ucar nc2 dimensions
      */
@@ -132,7 +206,10 @@ public class NetCDFDataInfo extends DataInfo {
     }
 
     /**
-     * Get ucar nc2 variables
+     * Get ucar nc2 variables - the metadata of the file. They may belong to a
+     * file handle closed by the file cache, so the data should be read by the
+     * read methods, which look up the variables by name on the handle got for
+     * the read.
      *
      * @return Ucar nc2 variables
      */
@@ -164,6 +241,7 @@ public class NetCDFDataInfo extends DataInfo {
      * @return Boolean
      */
     public boolean isSWATH() {
+        this.resolveMetadata();
         if (_isSWATH || _isPROFILE) {
             return true;
         } else {
@@ -171,6 +249,111 @@ public class NetCDFDataInfo extends DataInfo {
         }
     }
 
+    /**
+     * Get if only the file header is read, the times, projection and
+     * coordinate values are not resolved yet
+     *
+     * @return Boolean
+     */
+    public boolean isHeaderOnly() {
+        return this.headerOnly;
+    }
+
+    /**
+     * Set if only read the file header by readDataInfo. The convention,
+     * projection, times and coordinate values are resolved on first access of
+     * them or of the data.
+     *
+     * @param value Boolean
+     */
+    public void setHeaderOnly(boolean value) {
+        this.headerOnly = value;
+    }
+
+    @Override
+    public List<Variable> getVariables() {
+        this.resolveMetadata();
+        return super.getVariables();
+    }
+
+    @Override
+    public List<Dimension> getDimensions() {
+        this.resolveMetadata();
+        return super.getDimensions();
+    }
+
+    @Override
+    public List<Date> getTimes() {
+        this.resolveMetadata();
+        return super.getTimes();
+    }
+
+    @Override
+    public Date getTime(int timeIdx) {
+        this.resolveMetadata();
+        return super.getTime(timeIdx);
+    }
+
+    @Override
+    public double getTimeValue(int timeIdx) {
+        this.resolveMetadata();
+        return super.getTimeValue(timeIdx);
+    }
+
+    @Override
+    public int getTimeNum() {
+        this.resolveMetadata();
+        return super.getTimeNum();
+    }
+
+    @Override
+    public Dimension getTimeDimension() {
+        this.resolveMetadata();
+        return super.getTimeDimension();
+    }
+
+    @Override
+    public Dimension getXDimension() {
+        this.resolveMetadata();
+        return super.getXDimension();
+    }
+
+    @Override
+    public Dimension getYDimension() {
+        this.resolveMetadata();
+        return super.getYDimension();
+    }
+
+    @Override
+    public Dimension getZDimension() {
+        this.resolveMetadata();
+        return super.getZDimension();
+    }
+
+    @Override
+    public boolean isXReverse() {
+        this.resolveMetadata();
+        return super.isXReverse();
+    }
+
+    @Override
+    public boolean isYReverse() {
+        this.resolveMetadata();
+        return super.isYReverse();
+    }
+
+    @Override
+    public boolean isGlobal() {
+        this.resolveMetadata();
+        return super.isGlobal();
+    }
+
+    @Override
+    public CoordinateReferenceSystem getCRS() {
+        this.resolveMetadata();
+        return super.getCRS();
+    }
+
     // </editor-fold>
     // <editor-fold desc="Methods">
     // <editor-fold desc="Read Data">
@@ -179,7 +362,8 @@ public class NetCDFDataInfo extends DataInfo {
         this.setFileName(fileName);
         try {
             //ncfile = NetcdfFile.open(fileName);
-            ncfile = NetcdfDataset.openFile(fileName, null);
+            ncfile = NetcdfFileCache.acquire(fileName, null);
+            this.addReference();
             readDataInfo(false);
         } catch (IOException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -201,9 +385,11 @@ public class NetCDFDataInfo extends DataInfo {
                 break;
         }
         try {
-            ncfile = NetcdfFile.open(fileName, iospClassName, 0, null, null);
+            this.iospClassName = iospClassName;
+            ncfile = NetcdfFileCache.acquire(fileName, iospClassName);
+            this.addReference();
             readDataInfo(false);
-        } catch (ClassNotFoundException | IllegalAccessException | InstantiationException | IOException ex) {
+        } catch (IOException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
@@ -228,37 +414,7 @@ public class NetCDFDataInfo extends DataInfo {
             ncDimensions = ncfile.getDimensions();
             if (_fileTypeId.equals("HDF5-EOS") || _fileTypeId.equals("HDF4-EOS")) {
                 _isHDFEOS = true;
-                List<String> dimNames = new ArrayList<>();
-                for (ucar.nc2.Variable var : ncVariables) {
-                    for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                        String dimName = dim.getShortName();
-                        if (dimName == null) {
-                            continue;
-                        }
-                        if (!dimNames.contains(dimName)) {
-                            dimNames.add(dimName);
-                        }
-                    }
-                }
-                for (ucar.nc2.Dimension dim : ncDimensions) {
-                    if (dim.getShortName().contains("_")) {
-                        for (String dimName : dimNames) {
-                            if (dim.getShortName().contains(dimName)) {
-                                dim.setShortName(dimName);
-                            }
-                        }
-//                        String newName;
-//                        //int idx = dim.getShortName().lastIndexOf("_");
-//                        int idx = dim.getShortName().indexOf("Data_Fields_");
-//                        if (idx >= 0) {
-//                            newName = dim.getShortName().substring(idx + 12);
-//                        } else {
-//                            idx = dim.getShortName().lastIndexOf("_");
-//                            newName = dim.getShortName().substring(idx + 1);
-//                        }
-//                        dim.setShortName(newName);
-                    }
-                }
+                this.renameHDFEOSDimensions();
             }
             dimensions = new ArrayList<>();
             for (ucar.nc2.Dimension dim : ncDimensions) {
@@ -285,14 +441,16 @@ public class NetCDFDataInfo extends DataInfo {
                     break;
             }
 
-            //Get convention
-            _convention = this.getConvention();
+            if (!this.headerOnly) {
+                //Get convention
+                _convention = this.getConvention();
 
-            //Get projection
-            this.getProjection();
+                //Get projection
+                this.getProjection();
 
-            //Get dimensions values
-            getDimensionValues(ncfile);
+                //Get dimensions values
+                getDimensionValues(ncfile);
+            }
 
             //Get variables
             List<Variable> vars = new ArrayList<>();
@@ -337,14 +495,8 @@ public class NetCDFDataInfo extends DataInfo {
         } finally {
             this.keepOpen = keepOpen;
             if (!keepOpen) {
-                if (null != ncfile) {
-                    try {
-                        ncfile.close();
-                        ncfile = null;
-                    } catch (IOException ex) {
-                        Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
+                NetcdfFileCache.release(ncfile);
+                ncfile = null;
             }
         }
         //this.keepOpen = true;
@@ -354,18 +506,166 @@ public class NetCDFDataInfo extends DataInfo {
     public void readDataInfo(String fileName, boolean keepOpen) {
         try {
             this.setFileName(fileName);
-            ncfile = NetcdfDataset.openFile(fileName, null);
+            if (keepOpen) {
+                ncfile = NetcdfDataset.openFile(fileName, null);
+            } else {
+                ncfile = NetcdfFileCache.acquire(fileName, null);
+                this.addReference();
+            }
             readDataInfo(keepOpen);
         } catch (IOException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
+    /**
+     * Resolve the convention, projection, times and coordinate values which are
+     * not read by a header only opening. Nothing is done if they are resolved.
+     */
+    public void resolveMetadata() {
+        if (!this.headerOnly) {
+            return;
+        }
+
+        synchronized (this) {
+            //The getters called by the resolving in this thread return
+            //directly
+            if (!this.headerOnly || this.resolving) {
+                return;
+            }
+
+            this.resolving = true;
+            NetcdfFile nc = null;
+            try {
+                nc = this.getNCFile();
+                //The coordinate variables are read by the handle got now
+                ncVariables = nc.getVariables();
+                ncDimensions = nc.getDimensions();
+                if (_isHDFEOS) {
+                    this.renameHDFEOSDimensions();
+                }
+                _convention = this.getConvention();
+                this.getProjection();
+                getDimensionValues(nc);
+                if (_isSWATH || _isPROFILE) {
+                    for (Variable var : this.getVariables()) {
+                        var.setStation(true);
+                    }
+                }
+            } catch (IOException | ParseException ex) {
+                Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            } finally {
+                this.releaseNCFile(nc);
+                this.resolving = false;
+                this.headerOnly = false;
+            }
+        }
+    }
+
+    /**
+     * Rename the HDF-EOS dimensions by the dimension names of the variables.
+     * The file handle is shared by the data infos of the file cache, so the
+     * renamed dimensions are copies and the new names are kept to match the
+     * dimensions of the variables.
+     */
+    private void renameHDFEOSDimensions() {
+        dimNameMap = new HashMap<>();
+        List<String> dimNames = new ArrayList<>();
+        for (ucar.nc2.Variable var : ncVariables) {
+            for (ucar.nc2.Dimension dim : var.getDimensions()) {
+                String dimName = dim.getShortName();
+                if (dimName == null) {
+                    continue;
+                }
+                if (!dimNames.contains(dimName)) {
+                    dimNames.add(dimName);
+                }
+            }
+        }
+        List<ucar.nc2.Dimension> dims = new ArrayList<>();
+        for (ucar.nc2.Dimension dim : ncDimensions) {
+            String name = dim.getShortName();
+            if (name.contains("_")) {
+                for (String dimName : dimNames) {
+                    if (name.contains(dimName)) {
+                        name = dimName;
+                    }
+                }
+//                    String newName;
+//                    //int idx = dim.getShortName().lastIndexOf("_");
+//                    int idx = dim.getShortName().indexOf("Data_Fields_");
+//                    if (idx >= 0) {
+//                        newName = dim.getShortName().substring(idx + 12);
+//                    } else {
+//                        idx = dim.getShortName().lastIndexOf("_");
+//                        newName = dim.getShortName().substring(idx + 1);
+//                    }
+//                    dim.setShortName(newName);
+            }
+            if (name.equals(dim.getShortName())) {
+                dims.add(dim);
+            } else {
+                dimNameMap.put(dim.getShortName(), name);
+                dims.add(new ucar.nc2.Dimension(name, dim));
+            }
+        }
+        ncDimensions = dims;
+    }
+
+    private void addReference() {
+        if (!this.referenced) {
+            NetcdfFileCache.addReference(this.getFileName(), this.iospClassName, this);
+            this.referenced = true;
+        }
+    }
+
+    /**
+     * Close the kept opened file and remove the reference to the file cache
+     */
+    @Override
+    public void close() {
+        if (this.ncfile != null) {
+            try {
+                this.ncfile.close();
+            } catch (IOException ex) {
+                Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            this.ncfile = null;
+        }
+        if (this.referenced) {
+            NetcdfFileCache.removeReference(this.getFileName(), this.iospClassName, this);
+            this.referenced = false;
+        }
+    }
+
+    /**
+     * Get the kept opened file, or a handle from the file cache
+     *
+     * @return Netcdf file
+     * @throws IOException
+     */
+    private NetcdfFile getNCFile() throws IOException {
+        if (this.ncfile != null) {
+            return this.ncfile;
+        }
+
+        return NetcdfFileCache.acquire(this.getFileName(), this.iospClassName);
+    }
+
+    private void releaseNCFile(NetcdfFile nf) {
+        if (nf != null && nf != this.ncfile) {
+            NetcdfFileCache.release(nf);
+        }
+    }
+
     private int getDimensionIndex(ucar.nc2.Dimension dim) {
         String name2 = dim.getShortName();
         if (name2 == null) {
             return -1;
         }
+        if (dimNameMap.containsKey(name2)) {
+            name2 = dimNameMap.get(name2);
+        }
 
         for (int i = 0; i < ncDimensions.size(); i++) {
             ucar.nc2.Dimension idim = ncDimensions.get(i);
@@ -1106,6 +1406,7 @@ public class NetCDFDataInfo extends DataInfo {
                 DimensionType dimType = getDimType(var);
                 dim.setDimType(dimType);
                 Array values = NCUtil.convertArray(var.read());
+                boolean lonlat = ProjUtil.isLonLat(this.getCRS());
                 if (values.getSize() > 1) {
                     if (values.getDouble(0) > values.getDouble(1)) {
                         switch (dimType) {
@@ -1122,62 +1423,84 @@ public class NetCDFDataInfo extends DataInfo {
                         }
                     }
                 }
-                //aDim.setValues(values);
+
+                //The decoded values are shared by the files with the same coordinate
+                double[] raw = CoordinateCache.getRaw(values);
+                String key = "CF|" + var.getShortName() + "|" + dimType + "|" + lonlat + "|" + var.getAttributes();
+                List<Double> cached = CoordinateCache.get(key, raw);
                 switch (dimType) {
                     case X:
-                        double[] X = (double[])ArrayUtil.copyToNDJavaArray(values);
-                        double XDelt = X[1] - X[0];                        
-                        if (ProjUtil.isLonLat(this.getCRS())) {
-                            if (X[X.length - 1] + XDelt
-                                    - X[0] == 360) {
-                                this.setGlobal(true);
-                            }
-                        } else {
-                            ucar.nc2.Attribute unitAtt = var.findAttribute("units");
-                            if (unitAtt != null) {
-                                if (unitAtt.getStringValue().trim().toLowerCase().equals("km")) {
-                                    for (int i = 0; i < X.length; i++) {
-                                        X[i] = X[i] * 1000;
+                        if (cached == null) {
+                            double[] X = (double[])ArrayUtil.copyToNDJavaArray(values);
+                            if (!lonlat) {
+                                ucar.nc2.Attribute unitAtt = var.findAttribute("units");
+                                if (unitAtt != null) {
+                                    if (unitAtt.getStringValue().trim().toLowerCase().equals("km")) {
+                                        for (int i = 0; i < X.length; i++) {
+                                            X[i] = X[i] * 1000;
+                                        }
                                     }
                                 }
                             }
+                            cached = CoordinateCache.put(key, raw, X);
+                        }
+                        if (lonlat && cached.size() > 1) {
+                            double XDelt = cached.get(1) - cached.get(0);
+                            if (cached.get(cached.size() - 1) + XDelt
+                                    - cached.get(0) == 360) {
+                                this.setGlobal(true);
+                            }
                         }
-                        dim.setValues(X);
+                        dim.setValues(cached);
                         this.setXDimension(dim);
                         break;
                     case Y:
-                        double[] Y = (double[])ArrayUtil.copyToNDJavaArray(values);
-                        if (!ProjUtil.isLonLat(this.getCRS())) {
-                            ucar.nc2.Attribute unitAtt = var.findAttribute("units");
-                            if (unitAtt != null) {
-                                if (unitAtt.getStringValue().trim().toLowerCase().equals("km")) {
-                                    for (int i = 0; i < Y.length; i++) {
-                                        Y[i] = Y[i] * 1000;
+                        if (cached == null) {
+                            double[] Y = (double[])ArrayUtil.copyToNDJavaArray(values);
+                            if (!lonlat) {
+                                ucar.nc2.Attribute unitAtt = var.findAttribute("units");
+                                if (unitAtt != null) {
+                                    if (unitAtt.getStringValue().trim().toLowerCase().equals("km")) {
+                                        for (int i = 0; i < Y.length; i++) {
+                                            Y[i] = Y[i] * 1000;
+                                        }
                                     }
                                 }
                             }
+                            cached = CoordinateCache.put(key, raw, Y);
                         }
-                        dim.setValues(Y);
+                        dim.setValues(cached);
                         this.setYDimension(dim);
                         break;
                     case Z:
-                        double[] levels = (double[])ArrayUtil.copyToNDJavaArray(values);
-                        dim.setValues(levels);
+                        if (cached == null) {
+                            double[] levels = (double[])ArrayUtil.copyToNDJavaArray(values);
+                            cached = CoordinateCache.put(key, raw, levels);
+                        }
+                        dim.setValues(cached);
                         this.setZDimension(dim);
                         break;
                     case T:
-                        List<Date> times = this.getTimes(var, values);
-                        if (times != null) {
-                            List<Double> ts = new ArrayList<>();
-                            for (Date t : times) {
-                                ts.add(DateUtil.toOADate(t));
+                        if (cached == null) {
+                            List<Date> times = this.getTimes(var, values);
+                            if (times != null) {
+                                List<Double> ts = new ArrayList<>();
+                                for (Date t : times) {
+                                    ts.add(DateUtil.toOADate(t));
+                                }
+                                cached = CoordinateCache.put(key, raw, ts);
                             }
-                            dim.setValues(ts);
+                        }
+                        if (cached != null) {
+                            dim.setValues(cached);
                         }
                         this.setTimeDimension(dim);
                         break;
                     default:
-                        dim.setValues((double[])ArrayUtil.copyToNDJavaArray(values));
+                        if (cached == null) {
+                            cached = CoordinateCache.put(key, raw, (double[])ArrayUtil.copyToNDJavaArray(values));
+                        }
+                        dim.setValues(cached);
                         break;
                 }
             }
@@ -1303,64 +1626,68 @@ public class NetCDFDataInfo extends DataInfo {
         int yNum = yDim.getLength();
 
         //List<String> varNameList = this.getVariableNames();
-        _yVar = ncfile.findVariable("XLAT");
-        if (_yVar == null) {
-            _yVar = ncfile.findVariable("XLAT_M");
+        ucar.nc2.Variable yVar = ncfile.findVariable("XLAT");
+        if (yVar == null) {
+            yVar = ncfile.findVariable("XLAT_M");
         }
 
-        _xVar = ncfile.findVariable("XLONG");
-        if (_xVar == null) {
-            _xVar = ncfile.findVariable("XLONG_M");
+        ucar.nc2.Variable xVar = ncfile.findVariable("XLONG");
+        if (xVar == null) {
+            xVar = ncfile.findVariable("XLONG_M");
         }
 
-        _levelVar = ncfile.findVariable("ZNU");
+        ucar.nc2.Variable znuVar = ncfile.findVariable("ZNU");
 
-        //Get X/Y Array
+        //Get X/Y Array - the grid of the same domain is got from the coordinate cache
         double dx = Double.parseDouble(getGlobalAttStr("DX"));
         double dy = Double.parseDouble(getGlobalAttStr("DY"));
-        CoordinateReferenceSystem fromProj = KnownCoordinateSystems.geographic.world.WGS1984;
-        double[][] points = new double[1][];
-        if (_yVar != null && _xVar != null) {
-            dimLen = yNum;
-            Array yarray = NCUtil.convertArray(_yVar.read().reduce());
-            double[] xlat = new double[dimLen];
-            for (i = 0; i < dimLen; i++) {
-                xlat[i] = yarray.getDouble(i);
-            }
-            orgLat = xlat[0];
-
-            dimLen = xNum;
-            Array xarray = NCUtil.convertArray(_xVar.read().reduce());
-            double[] xlon = new double[dimLen];
-            for (i = 0; i < dimLen; i++) {
-                xlon[i] = xarray.getDouble(i);
-            }
-            orgLon = xlon[0];
-
-            points[0] = new double[]{orgLon, orgLat};
-            ProjUtil.reprojectPoints(points, fromProj, this.getCRS(), 0, 1);
-            orgX = points[0][0];
-            orgY = points[0][1];
+        String key = "WRF|" + xNum + "|" + yNum + "|" + (xVar != null && yVar != null)
+                + "|" + this.getCRS().getParameterString();
+        for (String attName : new String[]{"DX", "DY", "CEN_LAT", "CEN_LON", "TRUELAT1", "TRUELAT2",
+            "STAND_LON", "MOAD_CEN_LAT", "POLE_LAT", "POLE_LON", "MAP_PROJ", "GRID_ID", "PARENT_ID",
+            "I_PARENT_START", "J_PARENT_START", "PARENT_GRID_RATIO"}) {
+            key += "|" + getGlobalAttStr(attName);
+        }
+        List<Double> X = CoordinateCache.get(key + "|X", null);
+        List<Double> Y = CoordinateCache.get(key + "|Y", null);
+        if (X == null || Y == null) {
+            CoordinateReferenceSystem fromProj = KnownCoordinateSystems.geographic.world.WGS1984;
+            double[][] points = new double[1][];
+            if (yVar != null && xVar != null) {
+                //Only the grid origin is needed
+                orgLat = readOrigin(yVar);
+                orgLon = readOrigin(xVar);
+
+                points[0] = new double[]{orgLon, orgLat};
+                ProjUtil.reprojectPoints(points, fromProj, this.getCRS(), 0, 1);
+                orgX = points[0][0];
+                orgY = points[0][1];
+            } else {
+                double clon = Double.parseDouble(getGlobalAttStr("CEN_LON"));
+                double clat = Double.parseDouble(getGlobalAttStr("CEN_LAT"));
+                points[0] = new double[]{clon, clat};
+                ProjUtil.reprojectPoints(points, fromProj, this.getCRS(), 0, 1);
+                double cx = points[0][0];
+                double cy = points[0][1];
+                orgX = cx - dx * xNum * 0.5;
+                orgY = cy - dy * yNum * 0.5;
+            }
+            double[] xs = new double[xNum];
+            for (i = 0; i < xNum; i++) {
+                xs[i] = orgX + dx * i;
+            }
+            X = CoordinateCache.put(key + "|X", null, xs);
+            double[] ys = new double[yNum];
+            for (i = 0; i < yNum; i++) {
+                ys[i] = orgY + dy * i;
+            }
+            Y = CoordinateCache.put(key + "|Y", null, ys);
         } else {
-            double clon = Double.parseDouble(getGlobalAttStr("CEN_LON"));
-            double clat = Double.parseDouble(getGlobalAttStr("CEN_LAT"));
-            points[0] = new double[]{clon, clat};
-            ProjUtil.reprojectPoints(points, fromProj, this.getCRS(), 0, 1);
-            double cx = points[0][0];
-            double cy = points[0][1];
-            orgX = cx - dx * xNum * 0.5;
-            orgY = cy - dy * yNum * 0.5;
-        }
-        double[] X = new double[xNum];
-        for (i = 0; i < xNum; i++) {
-            X[i] = orgX + dx * i;
+            orgX = X.get(0);
+            orgY = Y.get(0);
         }
         xDim.setValues(X);
         this.setXDimension(xDim);
-        double[] Y = new double[yNum];
-        for (i = 0; i < yNum; i++) {
-            Y[i] = orgY + dy * i;
-        }
         yDim.setValues(Y);
         this.setYDimension(yDim);
 
@@ -1371,9 +1698,9 @@ public class NetCDFDataInfo extends DataInfo {
         }
         if (zDim != null) {
             int lNum = zDim.getLength();
-            if (_levelVar != null) {
+            if (znuVar != null) {
                 dimLen = lNum;
-                Array larray = NCUtil.convertArray(_levelVar.read().reduce());
+                Array larray = NCUtil.convertArray(znuVar.read().reduce());
                 double[] levels = new double[lNum];
                 for (i = 0; i < lNum; i++) {
                     if (i < dimLen) {
@@ -1497,6 +1824,20 @@ public class NetCDFDataInfo extends DataInfo {
         }
     }
 
+    /**
+     * Read the first value of a variable
+     */
+    private static double readOrigin(ucar.nc2.Variable var) throws IOException {
+        int[] origin = new int[var.getRank()];
+        int[] shape = new int[var.getRank()];
+        Arrays.fill(shape, 1);
+        try {
+            return var.read(origin, shape).getDouble(0);
+        } catch (ucar.ma2.InvalidRangeException ex) {
+            throw new IOException(ex);
+        }
+    }
+
     private int getDimensionLength(String dimName) {
         for (ucar.nc2.Dimension aDimS : ncDimensions) {
             if (aDimS.getShortName().equals(dimName)) {
@@ -1942,14 +2283,14 @@ public class NetCDFDataInfo extends DataInfo {
      */
     @Override
     public DimArray read(String varName) {
+        this.resolveMetadata();
+        NetcdfFile nc = null;
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
+            nc = this.getNCFile();
             Variable var1 = this.getVariable(varName);
-            ucar.nc2.Variable var = ncfile.findVariable(varName);            
+            ucar.nc2.Variable var = nc.findVariable(varName);            
             if (var == null) {
-                List<ucar.nc2.Variable> vars = ncfile.getVariables();
+                List<ucar.nc2.Variable> vars = nc.getVariables();
                 for (ucar.nc2.Variable v : vars) {
                     if (v.getShortName().equals(varName)) {
                         var = v;
@@ -1970,14 +2311,7 @@ public class NetCDFDataInfo extends DataInfo {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseNCFile(nc);
         }
     }
 
@@ -1992,14 +2326,14 @@ public class NetCDFDataInfo extends DataInfo {
      */
     @Override
     public DimArray read(String varName, int[] origin, int[] size, int[] stride) {
+        this.resolveMetadata();
+        NetcdfFile nc = null;
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            nc = this.getNCFile();
             Variable var1 = this.getVariable(varName);
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            ucar.nc2.Variable var = nc.findVariable(varName);
             if (var == null) {
-                List<ucar.nc2.Variable> vars = ncfile.getVariables();
+                List<ucar.nc2.Variable> vars = nc.getVariables();
                 for (ucar.nc2.Variable v : vars) {
                     if (v.getShortName().equals(varName)) {
                         var = v;
@@ -2023,6 +2357,10 @@ public class NetCDFDataInfo extends DataInfo {
 
             Array data;
             ucar.ma2.Section section;
+            if (!negStride && this.isParallelGRIB(var, size)) {
+                section = new ucar.ma2.Section(origin, size, stride);
+                return this.readGRIB(var, var1, section);
+            }
             if (negStride) {
                 int[] pStride = new int[stride.length];
                 List<Integer> flips = new ArrayList<>();
@@ -2044,15 +2382,10 @@ public class NetCDFDataInfo extends DataInfo {
                 data = NCUtil.convertArray(var.read(section));
             }
 
-            //Get pack info
-            double add_offset, scale_factor, missingValue;
-            double[] packData = this.getPackData(var);
-            add_offset = packData[0];
-            scale_factor = packData[1];
-            missingValue = packData[2];
-            if (add_offset != 0 || scale_factor != 1) {
-                //ArrayMath.fill_value = missingValue;
-                data = ArrayMath.add(ArrayMath.mul(data, scale_factor), add_offset);
+            //Unpack in one pass with the fill and missing values masked
+            PackInfo packInfo = new PackInfo(var);
+            if (packInfo.isPacked()) {
+                data = packInfo.unpack(data, this.unpackFillValue);
             }
 
             return new DimArray(data.reduce(), var1.getDimensions(NCUtil.convertSection(section)));
@@ -2062,16 +2395,120 @@ public class NetCDFDataInfo extends DataInfo {
         } catch (ucar.ma2.InvalidRangeException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            this.releaseNCFile(nc);
+        }
+        return null;
+    }
+
+    /**
+     * Get if a GRIB variable is read by records in parallel - the file is not
+     * kept opened and there are more than one 2D record in the section
+     */
+    private boolean isParallelGRIB(ucar.nc2.Variable var, int[] size) {
+        if (!ParallelUtil.isParallel() || this.ncfile != null || _fileTypeId == null
+                || !_fileTypeId.startsWith("GRIB") || size.length <= 2) {
+            return false;
+        }
+        for (int i = 0; i < size.length - 2; i++) {
+            if (size[i] > 1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Read a GRIB variable by records. Each 2D record of the section is
+     * decoded by a task with its own file handle (and IOSP) from the file
+     * cache, into its offset of the preallocated result array.
+     */
+    private DimArray readGRIB(ucar.nc2.Variable var, Variable var1, final ucar.ma2.Section section)
+            throws IOException, ucar.ma2.InvalidRangeException {
+        final String ncVarName = var.getFullNameEscaped();
+        int rank = section.getRank();
+        int[] shape = section.getShape();
+        final int sliceSize = shape[rank - 2] * shape[rank - 1];
+        int recordNum = (int) (section.computeSize() / sliceSize);
+        final PackInfo packInfo = new PackInfo(var);
+
+        //The first record gives the data type of the result
+        Array first = readGRIBRecord(var, section, 0);
+        DataType dataType = packInfo.isPacked() ? packInfo.getUnpackedDataType() : first.getDataType();
+        final Array r = Array.factory(dataType, shape);
+        copyGRIBRecord(first, packInfo, r, 0);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int k = 1; k < recordNum; k++) {
+            final int recordIdx = k;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    NetcdfFile rnc = null;
+                    try {
+                        rnc = NetcdfFileCache.acquire(getFileName(), iospClassName);
+                        ucar.nc2.Variable rvar = rnc.findVariable(ncVarName);
+                        if (rvar == null) {
+                            throw new IOException("Variable not exist: " + ncVarName);
+                        }
+                        Array a = readGRIBRecord(rvar, section, recordIdx);
+                        copyGRIBRecord(a, packInfo, r, recordIdx * sliceSize);
+                    } catch (IOException | ucar.ma2.InvalidRangeException ex) {
+                        throw new IllegalStateException(ex);
+                    } finally {
+                        NetcdfFileCache.release(rnc);
+                    }
                 }
+            });
+        }
+        try {
+            ParallelUtil.invokeAll(tasks);
+        } catch (RuntimeException ex) {
+            //Failed as the serial read, so the caller logs it and returns null
+            Throwable cause = ex instanceof IllegalStateException ? ex.getCause() : null;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ucar.ma2.InvalidRangeException) {
+                throw (ucar.ma2.InvalidRangeException) cause;
+            }
+            throw new IOException("Failed to read GRIB records: " + ncVarName, ex);
+        }
+
+        return new DimArray(r.reduce(), var1.getDimensions(NCUtil.convertSection(section)));
+    }
+
+    /**
+     * Read a 2D record of a section - the record index is in the order of the
+     * leading dimensions
+     */
+    private static Array readGRIBRecord(ucar.nc2.Variable var, ucar.ma2.Section section, int recordIdx)
+            throws IOException, ucar.ma2.InvalidRangeException {
+        int rank = section.getRank();
+        ucar.ma2.Range[] ranges = new ucar.ma2.Range[rank];
+        int idx = recordIdx;
+        for (int i = rank - 3; i >= 0; i--) {
+            ucar.ma2.Range range = section.getRange(i);
+            int v = range.element(idx % range.length());
+            idx /= range.length();
+            ranges[i] = new ucar.ma2.Range(v, v);
+        }
+        ranges[rank - 2] = section.getRange(rank - 2);
+        ranges[rank - 1] = section.getRange(rank - 1);
+
+        return NCUtil.convertArray(var.read(new ucar.ma2.Section(Arrays.asList(ranges))));
+    }
+
+    private void copyGRIBRecord(Array a, PackInfo packInfo, Array r, int destPos) {
+        if (packInfo.isPacked()) {
+            packInfo.unpack(a, r.getStorage(), destPos, this.unpackFillValue);
+        } else if (a.getDataType() == r.getDataType()) {
+            System.arraycopy(a.getStorage(), 0, r.getStorage(), destPos, (int) a.getSize());
+        } else {
+            IndexIterator ii = a.getIndexIterator();
+            int i = destPos;
+            while (ii.hasNext()) {
+                r.setObject(i++, ii.getObjectNext());
             }
         }
-        return null;
     }
 
     /**
@@ -2083,11 +2520,10 @@ public class NetCDFDataInfo extends DataInfo {
      * @return Array data
      */
     public Array read(String varName, int[] origin, int[] size) throws ucar.ma2.InvalidRangeException {
+        NetcdfFile nc = null;
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            nc = this.getNCFile();
+            ucar.nc2.Variable var = nc.findVariable(varName);
 
             ucar.ma2.Section section = new ucar.ma2.Section(origin, size);
             Array data = NCUtil.convertArray(var.read(section));
@@ -2097,14 +2533,7 @@ public class NetCDFDataInfo extends DataInfo {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseNCFile(nc);
         }
     }
 
@@ -2117,24 +2546,18 @@ public class NetCDFDataInfo extends DataInfo {
      * @return Array data
      */
     public Array read_pack(String varName, int[] origin, int[] size) throws ucar.ma2.InvalidRangeException {
+        NetcdfFile nc = null;
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            nc = this.getNCFile();
+            ucar.nc2.Variable var = nc.findVariable(varName);
 
             ucar.ma2.Section section = new ucar.ma2.Section(origin, size);
             Array data = NCUtil.convertArray(var.read(section));
 
-            //Get pack info
-            double add_offset, scale_factor, missingValue;
-            double[] packData = this.getPackData(var);
-            add_offset = packData[0];
-            scale_factor = packData[1];
-            missingValue = packData[2];
-            if (add_offset != 0 || scale_factor != 1) {
-                //ArrayMath.fill_value = missingValue;
-                data = ArrayMath.add(ArrayMath.mul(data, scale_factor), add_offset);
+            //Unpack in one pass with the fill and missing values masked
+            PackInfo packInfo = new PackInfo(var);
+            if (packInfo.isPacked()) {
+                data = packInfo.unpack(data, this.unpackFillValue);
             }
 
             return data;
@@ -2142,23 +2565,42 @@ public class NetCDFDataInfo extends DataInfo {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseNCFile(nc);
+        }
+    }
+
+    /**
+     * Read and unpack array data of the variable to a destination storage
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param dest Destination storage - float[] or double[]
+     * @param destPos Start position of the destination storage
+     * @throws ucar.ma2.InvalidRangeException
+     */
+    public void read_pack(String varName, int[] origin, int[] size, Object dest, int destPos)
+            throws ucar.ma2.InvalidRangeException {
+        NetcdfFile nc = null;
+        try {
+            nc = this.getNCFile();
+            ucar.nc2.Variable var = nc.findVariable(varName);
+
+            ucar.ma2.Section section = new ucar.ma2.Section(origin, size);
+            Array data = NCUtil.convertArray(var.read(section));
+            new PackInfo(var).unpack(data, dest, destPos, this.unpackFillValue);
+        } catch (IOException ex) {
+            Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            this.releaseNCFile(nc);
         }
     }
 
     public Array read(String varName, String key) throws ucar.ma2.InvalidRangeException {
+        NetcdfFile nc = null;
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            nc = this.getNCFile();
+            ucar.nc2.Variable var = nc.findVariable(varName);
 
             Array data = NCUtil.convertArray(var.read(key));
 
@@ -2167,14 +2609,7 @@ public class NetCDFDataInfo extends DataInfo {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseNCFile(nc);
         }
     }
 
@@ -2188,7 +2623,44 @@ public class NetCDFDataInfo extends DataInfo {
      * @throws java.io.IOException
      */
     public NetcdfFileWriter createNCFile(String fileName) throws IOException {
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, fileName);
+        return createNCFile(fileName, NetcdfFileWriter.Version.netcdf3, 0, false);
+    }
+
+    /**
+     * Create netCDF file
+     *
+     * @param fileName File name
+     * @param version NetCDF file version
+     * @param deflateLevel Deflate level of netCDF-4 file, 0 for no
+     * compression
+     * @param shuffle Use shuffle filter of netCDF-4 file or not
+     * @return NetcdfFileWriter
+     * @throws java.io.IOException
+     */
+    public NetcdfFileWriter createNCFile(String fileName, NetcdfFileWriter.Version version, int deflateLevel,
+            boolean shuffle) throws IOException {
+        return createNCFile(fileName, version, deflateLevel, shuffle, null);
+    }
+
+    /**
+     * Create netCDF file
+     *
+     * @param fileName File name
+     * @param version NetCDF file version
+     * @param deflateLevel Deflate level of netCDF-4 file, 0 for no
+     * compression
+     * @param shuffle Use shuffle filter of netCDF-4 file or not
+     * @param chunkAccess Data access pattern to derive the chunk shape of the
+     * netCDF-4 variables - map, series or balanced, null for the default
+     * chunking
+     * @return NetcdfFileWriter
+     * @throws java.io.IOException
+     */
+    public NetcdfFileWriter createNCFile(String fileName, NetcdfFileWriter.Version version, int deflateLevel,
+            boolean shuffle, String chunkAccess) throws IOException {
+        NetcdfFileWriter ncfilew = NCUtil.createNCFileWriter(fileName, version, deflateLevel, shuffle);
+        boolean chunked = chunkAccess != null && (version == NetcdfFileWriter.Version.netcdf4
+                || version == NetcdfFileWriter.Version.netcdf4_classic);
 
         //Define dimensions
         for (Dimension dim : this.dimensions) {
@@ -2207,6 +2679,9 @@ public class NetCDFDataInfo extends DataInfo {
             for (ucar.nc2.Attribute attr : var.getAttributes()) {
                 nvar.addAttribute(attr);
             }
+            if (chunked && nvar.getRank() > 0) {
+                NCUtil.setChunkShape(nvar, chunkAccess);
+            }
         }
 
         //Create netCDF file
@@ -2223,6 +2698,21 @@ public class NetCDFDataInfo extends DataInfo {
      * @param tDimName Time dimension name
      */
     public static void joinDataFiles(List<String> inFiles, String outFile, String tDimName) throws ucar.ma2.InvalidRangeException {
+        joinDataFiles(inFiles, outFile, tDimName, NetcdfFileWriter.Version.netcdf3, 0);
+    }
+
+    /**
+     * Join netCDF data files
+     *
+     * @param inFiles Input netCDF data files
+     * @param outFile Output netCDF data file
+     * @param tDimName Time dimension name
+     * @param version Output netCDF file version of joining time
+     * @param deflateLevel Deflate level of netCDF-4 output, 0 for no
+     * compression
+     */
+    public static void joinDataFiles(List<String> inFiles, String outFile, String tDimName,
+            NetcdfFileWriter.Version version, int deflateLevel) throws ucar.ma2.InvalidRangeException {
         //Check number of selected files
         int fNum = inFiles.size();
         if (fNum < 2) {
@@ -2241,7 +2731,13 @@ public class NetCDFDataInfo extends DataInfo {
         bDataInfo.readDataInfo(bFile);
 
         //If can be joined
-        int dataJoinType = getDataJoinType(aDataInfo, bDataInfo, tDimName);
+        int dataJoinType;
+        try {
+            dataJoinType = getDataJoinType(aDataInfo, bDataInfo, tDimName);
+        } finally {
+            aDataInfo.close();
+            bDataInfo.close();
+        }
         if (dataJoinType == 0) {
             JOptionPane.showMessageDialog(null, "Data dimensions are not same!", "Error", JOptionPane.ERROR_MESSAGE);
             return;
@@ -2259,9 +2755,9 @@ public class NetCDFDataInfo extends DataInfo {
         {
             try {
                 if (dataJoinType == 1) {
-                    joinDataFiles_Time(inFiles, outFile, tDimName);
+                    joinDataFiles_Time(inFiles, outFile, tDimName, version, deflateLevel);
                 } else {
-                    joinDataFiles_Time_pack(inFiles, outFile, tDimName);
+                    joinDataFiles_Time_pack(inFiles, outFile, tDimName, version, deflateLevel);
                 }
             } catch (IOException | InvalidRangeException | ParseException ex) {
                 Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -2280,186 +2776,7 @@ public class NetCDFDataInfo extends DataInfo {
      * @throws java.text.ParseException
      */
     public static void joinDataFiles_Time(List<String> inFiles, String outFile, String timeDimStr) throws IOException, InvalidRangeException, ParseException, ucar.ma2.InvalidRangeException {
-        //Check number of selected files
-        int fNum = inFiles.size();
-        if (fNum < 2) {
-            JOptionPane.showMessageDialog(null, "There should be at least two files!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        //Open the first file
-        int i;
-        String aFile = inFiles.get(0);
-        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
-        aDataInfo.readDataInfo(aFile);
-
-        switch (aDataInfo.getConvention()) {
-            case WRFOUT:
-                timeDimStr = "Time";
-                break;
-        }
-
-        //Change time dimension as unlimit
-        for (i = 0; i < aDataInfo.getDimensions().size(); i++) {
-            Dimension aDimS = aDataInfo.getDimensions().get(i);
-            if (aDimS.getShortName().equals(timeDimStr)) {
-                aDimS.setUnlimited(true);
-                break;
-            }
-        }
-
-        List<String> varNames = new ArrayList<>();
-        for (Variable var : aDataInfo.getVariables()) {
-            if (MIMath.isNumeric(var.getName().substring(0, 1))) {
-                var.setName('V' + var.getName());
-            }
-            varNames.add(var.getName());
-        }
-
-        //Create output nc file and write the data of the first file
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
-
-        //Define dimensions
-        List<ucar.nc2.Dimension> dims = new ArrayList<>();
-        for (Dimension dim : aDataInfo.dimensions) {
-            if (dim.getShortName().equals(timeDimStr)) {
-                dims.add(ncfilew.addUnlimitedDimension(dim.getShortName()));
-            } else {
-                dims.add(ncfilew.addDimension(null, dim.getShortName(), dim.getLength()));
-            }
-        }
-
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo.ncAtributes) {
-            ncfilew.addGroupAttribute(null, attr);
-        }
-
-        //Define variables
-        for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
-            List<ucar.nc2.Dimension> vdims = new ArrayList<>();
-            for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                for (ucar.nc2.Dimension vdim : dims) {
-                    if (vdim.getShortName().equals(dim.getShortName())) {
-                        vdims.add(vdim);
-                        break;
-                    }
-                }
-            }
-            ucar.nc2.Variable nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), vdims);
-            if (var.getDimensions().size() == 1 && var.getDimensions().get(0).getShortName().equals(timeDimStr)) {
-                nvar.addAttribute(new ucar.nc2.Attribute("units", "hours since 1800-1-1 00:00:00"));
-                nvar.addAttribute(new ucar.nc2.Attribute("long_name", "Time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("standard_name", "time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
-            } else {
-                for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                    nvar.addAttribute(attr);
-                }
-            }
-        }
-
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
-        Date sTime = format.parse("1800-1-1 00:00:00");
-
-        //Create netCDF file
-        ncfilew.create();
-
-        //Join data                        
-        //Add data
-        int tDimNum = 0;
-        for (i = 0; i < fNum; i++) {
-            aFile = inFiles.get(i);
-            aDataInfo = new NetCDFDataInfo();
-            aDataInfo.readDataInfo(aFile);
-
-            if (i == 0) {
-                for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                    List<String> dimNames = new ArrayList<>();
-                    for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                        dimNames.add(dim.getShortName());
-                    }
-                    if (!dimNames.contains(timeDimStr)) {
-                        Array varaData = aDataInfo.read(var.getShortName()).getArray();
-                        ncfilew.write(var, NCUtil.convertArray(varaData));
-                    }
-                }
-            }
-
-            for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                if (!varNames.contains(var.getShortName())) {
-                    continue;
-                }
-
-                List<String> dimNames = new ArrayList<>();
-                for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                    dimNames.add(dim.getShortName());
-                }
-                if (!dimNames.contains(timeDimStr)) {
-                    continue;
-                }
-
-                ucar.nc2.Variable dvar = aDataInfo.findNCVariable(var.getShortName());
-                int tDimIdx = dimNames.indexOf(timeDimStr);
-                int dimNum = var.getDimensions().size();
-                int[] start = new int[dimNum];
-                int[] count = new int[dimNum];
-                if (dimNum == 4) {
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    start[3] = 0;
-                    count[3] = dvar.getDimensions().get(3).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        for (int d2 = 0; d2 < dvar.getDimensions().get(1).getLength(); d2++) {
-                            start[0] = d1;
-                            start[1] = d2;
-                            count[1] = 1;
-
-                            Array varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                            start[tDimIdx] += tDimNum;
-                            ncfilew.write(var, start, NCUtil.convertArray(varaData));
-                        }
-                    }
-                } else if (dimNum == 3) {
-                    start[1] = 0;
-                    count[1] = dvar.getDimensions().get(1).getLength();
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-
-                        Array varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                        start[tDimIdx] += tDimNum;
-                        ncfilew.write(var, start, NCUtil.convertArray(varaData));
-                    }
-                } else {
-                    for (int v = 0; v < dvar.getDimensions().size(); v++) {
-                        start[v] = 0;
-                        count[v] = dvar.getDimension(v).getLength();
-                    }
-                    Array varaData = aDataInfo.read(dvar.getShortName()).getArray();
-                    start[tDimIdx] += tDimNum;
-                    if (dimNum == 1) {
-                        List<Integer> times = aDataInfo.getTimeValues(sTime, "hours");
-                        varaData = Array.factory(NCUtil.convertDataType(dvar.getDataType()), dvar.getShape());
-                        for (int j = 0; j < times.size(); j++) {
-                            varaData.setDouble(j, times.get(j));
-                        }
-                        if (i > 0) {
-                            var.getDimension(0).setLength(var.getDimension(0).getLength() + varaData.getShape()[0]);
-                        }
-                    }
-                    ncfilew.write(var, start, NCUtil.convertArray(varaData));
-                }
-            }
-            tDimNum += aDataInfo.findDimension(timeDimStr).getLength();
-        }
-
-        //Close data file
-        ncfilew.flush();
-        ncfilew.close();
+        joinDataFiles_Time(inFiles, outFile, timeDimStr, NetcdfFileWriter.Version.netcdf3, 0);
     }
 
     /**
@@ -2468,11 +2785,52 @@ public class NetCDFDataInfo extends DataInfo {
      * @param inFiles Input nc files
      * @param outFile Output nc file
      * @param timeDimStr Time dimension name
+     * @param version Output netCDF file version
+     * @param deflateLevel Deflate level of netCDF-4 output, 0 for no
+     * compression
+     * @throws java.io.IOException
+     * @throws org.meteothink.ndarray.InvalidRangeException
+     * @throws java.text.ParseException
+     */
+    public static void joinDataFiles_Time(List<String> inFiles, String outFile, String timeDimStr,
+            NetcdfFileWriter.Version version, int deflateLevel) throws IOException, InvalidRangeException, ParseException, ucar.ma2.InvalidRangeException {
+        joinDataFiles_Time(inFiles, outFile, timeDimStr, version, deflateLevel, false);
+    }
+
+    /**
+     * Join data files by time, the packed variables are unpacked to double
+     *
+     * @param inFiles Input nc files
+     * @param outFile Output nc file
+     * @param timeDimStr Time dimension name
      * @throws java.io.IOException
      * @throws org.meteothink.ndarray.InvalidRangeException
      * @throws java.text.ParseException
      */
     public static void joinDataFiles_Time_pack(List<String> inFiles, String outFile, String timeDimStr) throws IOException, InvalidRangeException, ParseException, ucar.ma2.InvalidRangeException {
+        joinDataFiles_Time_pack(inFiles, outFile, timeDimStr, NetcdfFileWriter.Version.netcdf3, 0);
+    }
+
+    /**
+     * Join data files by time, the packed variables are unpacked to double
+     *
+     * @param inFiles Input nc files
+     * @param outFile Output nc file
+     * @param timeDimStr Time dimension name
+     * @param version Output netCDF file version
+     * @param deflateLevel Deflate level of netCDF-4 output, 0 for no
+     * compression
+     * @throws java.io.IOException
+     * @throws org.meteothink.ndarray.InvalidRangeException
+     * @throws java.text.ParseException
+     */
+    public static void joinDataFiles_Time_pack(List<String> inFiles, String outFile, String timeDimStr,
+            NetcdfFileWriter.Version version, int deflateLevel) throws IOException, InvalidRangeException, ParseException, ucar.ma2.InvalidRangeException {
+        joinDataFiles_Time(inFiles, outFile, timeDimStr, version, deflateLevel, true);
+    }
+
+    private static void joinDataFiles_Time(final List<String> inFiles, String outFile, String timeDimStr,
+            NetcdfFileWriter.Version version, int deflateLevel, final boolean unpack) throws IOException, InvalidRangeException, ParseException, ucar.ma2.InvalidRangeException {
         //Check number of selected files
         int fNum = inFiles.size();
         if (fNum < 2) {
@@ -2485,6 +2843,9 @@ public class NetCDFDataInfo extends DataInfo {
         String aFile = inFiles.get(0);
         NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
         aDataInfo.readDataInfo(aFile);
+        //Only the metadata of the first file is used here, the data is read
+        //by the reader thread
+        aDataInfo.close();
 
         switch (aDataInfo.getConvention()) {
             case WRFOUT:
@@ -2510,7 +2871,7 @@ public class NetCDFDataInfo extends DataInfo {
         }
 
         //Create output nc file and write the data of the first file
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
+        NetcdfFileWriter ncfilew = NCUtil.createNCFileWriter(outFile, version, deflateLevel, true);
 
         //Define dimensions
         List<ucar.nc2.Dimension> dims = new ArrayList<>();
@@ -2538,8 +2899,9 @@ public class NetCDFDataInfo extends DataInfo {
                     }
                 }
             }
+            boolean packed = unpack && new PackInfo(var).isPacked();
             ucar.nc2.Variable nvar;
-            if (var.findAttribute("add_offset") != null || var.findAttribute("scale_factor") != null) {
+            if (packed) {
                 nvar = ncfilew.addVariable(null, var.getShortName(), ucar.ma2.DataType.DOUBLE, vdims);
             } else {
                 nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), vdims);
@@ -2551,123 +2913,199 @@ public class NetCDFDataInfo extends DataInfo {
                 nvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
             } else {
                 for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                    if (!attr.getShortName().equals("add_offset") && !attr.getShortName().equals("scale_factor")) {
+                    if (!packed || !isPackAttribute(attr.getShortName())) {
                         nvar.addAttribute(attr);
                     }
                 }
+                //The unpacked data has NaN as the fill value
+                if (packed) {
+                    nvar.addAttribute(new ucar.nc2.Attribute("_FillValue", Double.NaN));
+                }
             }
         }
 
         SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
-        Date sTime = format.parse("1800-1-1 00:00:00");
+        final Date sTime = format.parse("1800-1-1 00:00:00");
 
         //Create netCDF file
         ncfilew.create();
 
-        //Join data                        
-        //Add data
-        int tDimNum = 0;
-        for (i = 0; i < fNum; i++) {
-            aFile = inFiles.get(i);
-            aDataInfo = new NetCDFDataInfo();
-            aDataInfo.readDataInfo(aFile);
-
-            if (i == 0) {
-                for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                    List<String> dimNames = new ArrayList<>();
-                    for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                        dimNames.add(dim.getShortName());
-                    }
-                    if (!dimNames.contains(timeDimStr)) {
-                        Array varaData = aDataInfo.read(var.getShortName()).getArray();
-                        ncfilew.write(var, NCUtil.convertArray(varaData));
-                    }
+        //Variables without time dimension are written from the first file,
+        //variables with time dimension are joined from all files
+        final List<String> fixedVarNames = new ArrayList<>();
+        final List<String> joinVarNames = new ArrayList<>();
+        for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
+            boolean hasTime = false;
+            for (ucar.nc2.Dimension dim : var.getDimensions()) {
+                if (dim.getShortName().equals(timeDimStr)) {
+                    hasTime = true;
+                    break;
                 }
             }
+            if (!hasTime) {
+                fixedVarNames.add(var.getShortName());
+            } else if (varNames.contains(var.getShortName())) {
+                joinVarNames.add(var.getShortName());
+            }
+        }
 
-            for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                if (!varNames.contains(var.getShortName())) {
-                    continue;
+        //The input files are read in chunks by a reader thread and the chunks
+        //are written here, so reading a file is overlapped with writing
+        final String tDimName = timeDimStr;
+        final BlockingQueue<JoinChunk> queue = new ArrayBlockingQueue<>(2);
+        ExecutorService reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "datasetjy-join-reader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        Future<Object> future = reader.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                boolean interrupted = false;
+                try {
+                    readJoinChunks(inFiles, tDimName, sTime, fixedVarNames, joinVarNames, unpack, queue);
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                    throw ex;
+                } finally {
+                    //No end mark if the writing is cancelled, nobody takes it
+                    if (!interrupted) {
+                        queue.put(JoinChunk.END);
+                    }
                 }
+                return null;
+            }
+        });
+        try {
+            JoinChunk chunk;
+            while ((chunk = queue.take()) != JoinChunk.END) {
+                ucar.nc2.Variable var = ncfilew.findVariable(chunk.varName);
+                if (chunk.extend) {
+                    var.getDimension(0).setLength(var.getDimension(0).getLength() + chunk.data.getShape()[0]);
+                }
+                ncfilew.write(var, chunk.origin, chunk.data);
+            }
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ucar.ma2.InvalidRangeException) {
+                throw (ucar.ma2.InvalidRangeException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            //Free the queue so a blocked reader can go on and see the cancel
+            queue.clear();
+            future.cancel(true);
+            reader.shutdownNow();
+            //Close data file
+            ncfilew.flush();
+            ncfilew.close();
+        }
+    }
 
-                List<String> dimNames = new ArrayList<>();
-                for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                    dimNames.add(dim.getShortName());
-                }
-                if (!dimNames.contains(timeDimStr)) {
-                    continue;
+    /**
+     * Read the joined data of the input files in chunks
+     */
+    private static void readJoinChunks(List<String> inFiles, String tDimName, Date sTime,
+            List<String> fixedVarNames, List<String> joinVarNames, boolean unpack,
+            BlockingQueue<JoinChunk> queue) throws IOException, ucar.ma2.InvalidRangeException, InterruptedException {
+        int tDimNum = 0;
+        for (int i = 0; i < inFiles.size(); i++) {
+            //Keep the input file opened for the whole copy
+            NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
+            aDataInfo.readDataInfo(inFiles.get(i), true);
+            try {
+                if (i == 0) {
+                    for (String varName : fixedVarNames) {
+                        ucar.nc2.Variable dvar = aDataInfo.findNCVariable(varName);
+                        if (dvar != null) {
+                            ucar.ma2.Array data = readJoinData(dvar, new ucar.ma2.Section(dvar.getShape()), unpack);
+                            queue.put(new JoinChunk(varName, new int[dvar.getRank()], data, false));
+                        }
+                    }
                 }
 
-                ucar.nc2.Variable dvar = aDataInfo.findNCVariable(var.getShortName());
-                int tDimIdx = dimNames.indexOf(timeDimStr);
-                int dimNum = var.getDimensions().size();
-                int[] start = new int[dimNum];
-                int[] count = new int[dimNum];
-                if (dimNum == 4) {
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    start[3] = 0;
-                    count[3] = dvar.getDimensions().get(3).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        for (int d2 = 0; d2 < dvar.getDimensions().get(1).getLength(); d2++) {
-                            start[0] = d1;
-                            start[1] = d2;
-                            count[1] = 1;
-                            Array varaData;
-                            if (dvar.findAttribute("add_offset") != null || dvar.findAttribute("scale_factor") != null) {
-                                varaData = aDataInfo.read_pack(dvar.getShortName(), start, count);
-                            } else {
-                                varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                            }
-                            start[tDimIdx] += tDimNum;
-                            ncfilew.write(var, start, NCUtil.convertArray(varaData));
-                        }
+                for (String varName : joinVarNames) {
+                    ucar.nc2.Variable dvar = aDataInfo.findNCVariable(varName);
+                    if (dvar == null) {
+                        continue;
                     }
-                } else if (dimNum == 3) {
-                    start[1] = 0;
-                    count[1] = dvar.getDimensions().get(1).getLength();
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        Array varaData;
-                        if (dvar.findAttribute("add_offset") != null || dvar.findAttribute("scale_factor") != null) {
-                            varaData = aDataInfo.read_pack(dvar.getShortName(), start, count);
-                        } else {
-                            varaData = aDataInfo.read(dvar.getShortName(), start, count);
+                    int tDimIdx = 0;
+                    for (int j = 0; j < dvar.getRank(); j++) {
+                        if (dvar.getDimension(j).getShortName().equals(tDimName)) {
+                            tDimIdx = j;
+                            break;
                         }
-                        start[tDimIdx] += tDimNum;
-                        ncfilew.write(var, start, NCUtil.convertArray(varaData));
                     }
-                } else {
-                    for (int v = 0; v < dvar.getDimensions().size(); v++) {
-                        start[v] = 0;
-                        count[v] = dvar.getDimension(v).getLength();
-                    }
-                    Array varaData = aDataInfo.read(dvar.getShortName()).getArray();
-                    start[tDimIdx] += tDimNum;
-                    if (dimNum == 1) {
+                    if (dvar.getRank() == 1) {
                         List<Integer> times = aDataInfo.getTimeValues(sTime, "hours");
-                        varaData = Array.factory(NCUtil.convertDataType(dvar.getDataType()), dvar.getShape());
+                        Array varaData = Array.factory(NCUtil.convertDataType(dvar.getDataType()), dvar.getShape());
                         for (int j = 0; j < times.size(); j++) {
                             varaData.setDouble(j, times.get(j));
                         }
-                        if (i > 0) {
-                            var.getDimension(0).setLength(var.getDimension(0).getLength() + varaData.getShape()[0]);
-                        }
+                        queue.put(new JoinChunk(varName, new int[]{tDimNum}, NCUtil.convertArray(varaData), i > 0));
+                        continue;
+                    }
+
+                    int elemSize = unpack ? Math.max(8, dvar.getElementSize()) : dvar.getElementSize();
+                    for (int[][] oc : NCUtil.getBlocks(dvar.getShape(), elemSize, joinChunkBytes)) {
+                        ucar.ma2.Array data = readJoinData(dvar, new ucar.ma2.Section(oc[0], oc[1]), unpack);
+                        int[] origin = oc[0].clone();
+                        origin[tDimIdx] += tDimNum;
+                        queue.put(new JoinChunk(varName, origin, data, false));
                     }
-                    ncfilew.write(var, start, NCUtil.convertArray(varaData));
                 }
+                tDimNum += aDataInfo.findDimension(tDimName).getLength();
+            } finally {
+                aDataInfo.close();
+            }
+        }
+    }
+
+    /**
+     * Get if an attribute is a packing attribute, which is in the packed
+     * values and is not written to the unpacked variable
+     */
+    private static boolean isPackAttribute(String attName) {
+        switch (attName) {
+            case "add_offset":
+            case "scale_factor":
+            case "_FillValue":
+            case "missing_value":
+            case "valid_min":
+            case "valid_max":
+            case "valid_range":
+            case "_Unsigned":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static ucar.ma2.Array readJoinData(ucar.nc2.Variable dvar, ucar.ma2.Section section, boolean unpack)
+            throws IOException, ucar.ma2.InvalidRangeException {
+        ucar.ma2.Array data = dvar.read(section);
+        if (unpack) {
+            PackInfo packInfo = new PackInfo(dvar);
+            if (packInfo.isPacked()) {
+                Array a = NCUtil.convertArray(data);
+                Array r = Array.factory(DataType.DOUBLE, a.getShape());
+                packInfo.unpack(a, r.getStorage(), 0, Double.NaN);
+                data = NCUtil.convertArray(r);
             }
-            tDimNum += aDataInfo.findDimension(timeDimStr).getLength();
         }
 
-        //Close data file
-        ncfilew.flush();
-        ncfilew.close();
+        return data;
     }
 
     /**
@@ -2690,76 +3128,82 @@ public class NetCDFDataInfo extends DataInfo {
         String aFile = inFiles.get(0);
         NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
         aDataInfo.readDataInfo(aFile);
+        List<NetCDFDataInfo> mncf = new ArrayList<>();
+        try {
+            //Create nc file writer
+            NetcdfFileWriter ncfile = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
 
-        //Create nc file writer
-        NetcdfFileWriter ncfile = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
-
-        //Define dimensions
-        for (Dimension dim : aDataInfo.dimensions) {
-            ncfile.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
-                    dim.isUnlimited(), dim.isVariableLength());
-        }
-
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo.ncAtributes) {
-            ncfile.addGroupAttribute(null, attr);
-        }
+            //Define dimensions
+            for (Dimension dim : aDataInfo.dimensions) {
+                ncfile.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
+                        dim.isUnlimited(), dim.isVariableLength());
+            }
 
-        //Define variables
-        List<ucar.nc2.Variable> nvars = new ArrayList<>();
-        for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
-            ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
-            for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                nvar.addAttribute(attr);
+            //Define global attributes
+            for (ucar.nc2.Attribute attr : aDataInfo.ncAtributes) {
+                ncfile.addGroupAttribute(null, attr);
             }
-            nvars.add(nvar);
-        }
 
-        //Add variables from more files
-        List<List<ucar.nc2.Variable>> mvars = new ArrayList<>();
-        List<NetCDFDataInfo> mncf = new ArrayList<>();
-        List<String> varNames = aDataInfo.getVariableNames();
-        for (int i = 1; i < fNum; i++) {
-            NetCDFDataInfo df = new NetCDFDataInfo();
-            df.readDataInfo(inFiles.get(i));
-            List<ucar.nc2.Variable> vars = new ArrayList<>();
-            for (ucar.nc2.Variable var : df.ncVariables) {
-                if (!varNames.contains(var.getShortName())) {
-                    ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
-                    for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                        nvar.addAttribute(attr);
+            //Define variables
+            List<ucar.nc2.Variable> nvars = new ArrayList<>();
+            for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
+                ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
+                for (ucar.nc2.Attribute attr : var.getAttributes()) {
+                    nvar.addAttribute(attr);
+                }
+                nvars.add(nvar);
+            }
+
+            //Add variables from more files
+            List<List<ucar.nc2.Variable>> mvars = new ArrayList<>();
+            List<String> varNames = aDataInfo.getVariableNames();
+            for (int i = 1; i < fNum; i++) {
+                NetCDFDataInfo df = new NetCDFDataInfo();
+                df.readDataInfo(inFiles.get(i));
+                mncf.add(df);
+                List<ucar.nc2.Variable> vars = new ArrayList<>();
+                for (ucar.nc2.Variable var : df.ncVariables) {
+                    if (!varNames.contains(var.getShortName())) {
+                        ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
+                        for (ucar.nc2.Attribute attr : var.getAttributes()) {
+                            nvar.addAttribute(attr);
+                        }
+                        vars.add(nvar);
+                        varNames.add(var.getShortName());
                     }
-                    vars.add(nvar);
-                    varNames.add(var.getShortName());
                 }
+                mvars.add(vars);
             }
-            mncf.add(df);
-            mvars.add(vars);
-        }
 
-        //Create netCDF file
-        ncfile.create();
+            //Create netCDF file
+            ncfile.create();
 
-        //Write variable data
-        for (ucar.nc2.Variable nvar : nvars) {
-            ncfile.write(nvar, NCUtil.convertArray(aDataInfo.read(nvar.getShortName()).getArray()));
-        }
+            //Write variable data
+            for (ucar.nc2.Variable nvar : nvars) {
+                ncfile.write(nvar, NCUtil.convertArray(aDataInfo.read(nvar.getShortName()).getArray()));
+            }
 
-        //Add data in more files
-        for (int i = 0; i < mncf.size(); i++) {
-            List<ucar.nc2.Variable> vars = mvars.get(i);
-            if (vars.isEmpty()) {
-                continue;
+            //Add data in more files
+            for (int i = 0; i < mncf.size(); i++) {
+                List<ucar.nc2.Variable> vars = mvars.get(i);
+                if (vars.isEmpty()) {
+                    continue;
+                }
+                NetCDFDataInfo df = mncf.get(i);
+                for (ucar.nc2.Variable nvar : vars) {
+                    ncfile.write(nvar, NCUtil.convertArray(df.read(nvar.getShortName()).getArray()));
+                }
             }
-            NetCDFDataInfo df = mncf.get(i);
-            for (ucar.nc2.Variable nvar : vars) {
-                ncfile.write(nvar, NCUtil.convertArray(df.read(nvar.getShortName()).getArray()));
+
+            //Close data file
+            ncfile.flush();
+            ncfile.close();
+        } finally {
+            aDataInfo.close();
+            for (NetCDFDataInfo df : mncf) {
+                df.close();
             }
         }
-
-        //Close data file
-        ncfile.flush();
-        ncfile.close();
     }
 
     private static int getDataJoinType(NetCDFDataInfo aDataInfo, NetCDFDataInfo bDataInfo, String tDimName) {
@@ -2899,104 +3343,128 @@ public class NetCDFDataInfo extends DataInfo {
         //Set data info
         NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
         aDataInfo.readDataInfo(inFile);
+        try {
 
-        //Check variables if time included
-        List<String> varList = aDataInfo.getVariableNames();
-        if (varList.contains("time")) {
-            return;
-        }
-
-        //set start time of the data
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
-        Date sTime = format.parse("1800-1-1 00:00:00");
-        int tvalue = DataInfo.getTimeValue(aTime, sTime, timeUnit.toLowerCase());
+            //Check variables if time included
+            List<String> varList = aDataInfo.getVariableNames();
+            if (varList.contains("time")) {
+                return;
+            }
 
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
+            //set start time of the data
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
+            Date sTime = format.parse("1800-1-1 00:00:00");
+            int tvalue = DataInfo.getTimeValue(aTime, sTime, timeUnit.toLowerCase());
 
-        //Define dimensions
-        for (Dimension dim : aDataInfo.dimensions) {
-            ncfilew.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
-                    dim.isUnlimited(), dim.isVariableLength());
-        }
-        ucar.nc2.Dimension tdim = ncfilew.addDimension(null, "time", 1);
+            NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
 
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo.ncAtributes) {
-            ncfilew.addGroupAttribute(null, attr);
-        }
+            //Define dimensions
+            for (Dimension dim : aDataInfo.dimensions) {
+                ncfilew.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
+                        dim.isUnlimited(), dim.isVariableLength());
+            }
+            ucar.nc2.Dimension tdim = ncfilew.addDimension(null, "time", 1);
 
-        //Define variables
-        for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
-            List<ucar.nc2.Dimension> dims = var.getDimensions();
-            if (dims.size() > 1) {
-                dims.add(0, tdim);
+            //Define global attributes
+            for (ucar.nc2.Attribute attr : aDataInfo.ncAtributes) {
+                ncfilew.addGroupAttribute(null, attr);
             }
-            ucar.nc2.Variable nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), dims);
-            for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                nvar.addAttribute(attr);
+
+            //Define variables
+            for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
+                //A copy, the dimensions of the variable are not changed
+                List<ucar.nc2.Dimension> dims = new ArrayList<>(var.getDimensions());
+                if (dims.size() > 1) {
+                    dims.add(0, tdim);
+                }
+                ucar.nc2.Variable nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), dims);
+                for (ucar.nc2.Attribute attr : var.getAttributes()) {
+                    nvar.addAttribute(attr);
+                }
             }
-        }
-        List<ucar.nc2.Dimension> dims = new ArrayList<>();
-        dims.add(tdim);
-        ucar.nc2.Variable tvar = ncfilew.addVariable(null, "time", ucar.ma2.DataType.INT, dims);
-        tvar.addAttribute(new ucar.nc2.Attribute("units", timeUnit.toLowerCase() + " since 1800-1-1 00:00:00"));
-        tvar.addAttribute(new ucar.nc2.Attribute("long_name", "Time"));
-        tvar.addAttribute(new ucar.nc2.Attribute("standard_name", "time"));
-        tvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
+            List<ucar.nc2.Dimension> dims = new ArrayList<>();
+            dims.add(tdim);
+            ucar.nc2.Variable tvar = ncfilew.addVariable(null, "time", ucar.ma2.DataType.INT, dims);
+            tvar.addAttribute(new ucar.nc2.Attribute("units", timeUnit.toLowerCase() + " since 1800-1-1 00:00:00"));
+            tvar.addAttribute(new ucar.nc2.Attribute("long_name", "Time"));
+            tvar.addAttribute(new ucar.nc2.Attribute("standard_name", "time"));
+            tvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
 
-        //Create netCDF file
-        ncfilew.create();
+            //Create netCDF file
+            ncfilew.create();
 
-        //Add data
-        for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
-            int dimNum = var.getDimensions().size();
-            int[] start = new int[dimNum];
-            int[] count = new int[dimNum];
-            if (dimNum == 4) {
-                start[2] = 0;
-                count[2] = var.getDimensions().get(2).getLength();
-                start[3] = 0;
-                count[3] = var.getDimensions().get(3).getLength();
-                for (int d1 = 0; d1 < var.getDimensions().get(0).getLength(); d1++) {
-                    start[0] = d1;
-                    count[0] = 1;
-                    for (int d2 = 0; d2 < var.getDimensions().get(1).getLength(); d2++) {
+            //Add data
+            for (ucar.nc2.Variable var : aDataInfo.ncVariables) {
+                int dimNum = var.getDimensions().size();
+                int[] start = new int[dimNum];
+                int[] count = new int[dimNum];
+                if (dimNum == 4) {
+                    start[2] = 0;
+                    count[2] = var.getDimensions().get(2).getLength();
+                    start[3] = 0;
+                    count[3] = var.getDimensions().get(3).getLength();
+                    for (int d1 = 0; d1 < var.getDimensions().get(0).getLength(); d1++) {
+                        start[0] = d1;
+                        count[0] = 1;
+                        for (int d2 = 0; d2 < var.getDimensions().get(1).getLength(); d2++) {
+                            start[0] = d1;
+                            start[1] = d2;
+                            count[1] = 1;
+
+                            Array varaData = aDataInfo.read(var.getShortName(), start, count);
+                            ncfilew.write(var, start, NCUtil.convertArray(varaData));
+                        }
+                    }
+                } else if (dimNum == 3) {
+                    start[1] = 0;
+                    count[1] = var.getDimensions().get(1).getLength();
+                    start[2] = 0;
+                    count[2] = var.getDimensions().get(2).getLength();
+                    for (int d1 = 0; d1 < var.getDimensions().get(0).getLength(); d1++) {
                         start[0] = d1;
-                        start[1] = d2;
-                        count[1] = 1;
+                        count[0] = 1;
 
                         Array varaData = aDataInfo.read(var.getShortName(), start, count);
                         ncfilew.write(var, start, NCUtil.convertArray(varaData));
                     }
-                }
-            } else if (dimNum == 3) {
-                start[1] = 0;
-                count[1] = var.getDimensions().get(1).getLength();
-                start[2] = 0;
-                count[2] = var.getDimensions().get(2).getLength();
-                for (int d1 = 0; d1 < var.getDimensions().get(0).getLength(); d1++) {
-                    start[0] = d1;
-                    count[0] = 1;
-
+                } else {
+                    for (int v = 0; v < var.getDimensions().size(); v++) {
+                        start[v] = 0;
+                        count[v] = var.getDimension(v).getLength();
+                    }
                     Array varaData = aDataInfo.read(var.getShortName(), start, count);
                     ncfilew.write(var, start, NCUtil.convertArray(varaData));
                 }
-            } else {
-                for (int v = 0; v < var.getDimensions().size(); v++) {
-                    start[v] = 0;
-                    count[v] = var.getDimension(v).getLength();
-                }
-                Array varaData = aDataInfo.read(var.getShortName(), start, count);
-                ncfilew.write(var, start, NCUtil.convertArray(varaData));
             }
-        }
-        Array timeValue = new ArrayInt.D1(tvalue);
-        ncfilew.write(tvar, NCUtil.convertArray(timeValue));
+            Array timeValue = new ArrayInt.D1(tvalue);
+            ncfilew.write(tvar, NCUtil.convertArray(timeValue));
 
-        //Close data file
-        ncfilew.flush();
-        ncfilew.close();
+            //Close data file
+            ncfilew.flush();
+            ncfilew.close();
+        } finally {
+            aDataInfo.close();
+        }
     }
     // </editor-fold>
     // </editor-fold>
+
+    /**
+     * Chunk of joined data to be written
+     */
+    private static class JoinChunk {
+
+        static final JoinChunk END = new JoinChunk(null, null, null, false);
+        final String varName;
+        final int[] origin;
+        final ucar.ma2.Array data;
+        final boolean extend;
+
+        JoinChunk(String varName, int[] origin, ucar.ma2.Array data, boolean extend) {
+            this.varName = varName;
+            this.origin = origin;
+            this.data = data;
+            this.extend = extend;
+        }
+    }
 }
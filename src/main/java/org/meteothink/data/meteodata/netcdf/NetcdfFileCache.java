@@ -0,0 +1,456 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata.netcdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.NetcdfDataset;
+
+/**
+ * Process wide cache of opened netCDF files, so the file header (or the GRIB
+ * index) is not parsed again for each read. A handle is used by one reader at
+ * a time - it is got by acquire() and given back by release(). The released
+ * handles are kept opened until they are idle longer than the idle timeout, or
+ * the opened handle number is beyond the maximum. The data infos of a file add
+ * a reference to it, and the idle handles of a referenced file are not closed
+ * by the idle timeout. The references are weak, so a data info which is not
+ * closed does not keep the handles opened after it is garbage collected. The
+ * handles of a file are not used again after the file is modified.
+ *
+ * @author Yaqiang Wang
+ */
+public class NetcdfFileCache {
+
+    // <editor-fold desc="Variables">
+    private static int maxOpen = 200;
+    private static long idleTimeout = 60000;
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static final IdentityHashMap<NetcdfFile, Handle> inUse = new IdentityHashMap<>();
+    private static final LinkedHashMap<NetcdfFile, Handle> idle = new LinkedHashMap<>();
+    private static int openNum = 0;
+    private static long hitCount = 0;
+    private static long missCount = 0;
+    private static Timer timer = null;
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get maximum opened handle number
+     *
+     * @return Maximum opened handle number
+     */
+    public static synchronized int getMaxOpen() {
+        return maxOpen;
+    }
+
+    /**
+     * Set maximum opened handle number, 0 to close the handles once they are
+     * released
+     *
+     * @param value Maximum opened handle number
+     */
+    public static void setMaxOpen(int value) {
+        List<NetcdfFile> files;
+        synchronized (NetcdfFileCache.class) {
+            maxOpen = Math.max(0, value);
+            files = evict(false);
+        }
+        close(files);
+    }
+
+    /**
+     * Get idle timeout in milliseconds
+     *
+     * @return Idle timeout
+     */
+    public static synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Set idle timeout in milliseconds, 0 for no timeout
+     *
+     * @param value Idle timeout
+     */
+    public static void setIdleTimeout(long value) {
+        List<NetcdfFile> files;
+        synchronized (NetcdfFileCache.class) {
+            idleTimeout = Math.max(0, value);
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+            files = evict(true);
+        }
+        close(files);
+    }
+
+    /**
+     * Get opened handle number
+     *
+     * @return Opened handle number
+     */
+    public static synchronized int getOpenNum() {
+        return openNum;
+    }
+
+    /**
+     * Get idle handle number
+     *
+     * @return Idle handle number
+     */
+    public static synchronized int getIdleNum() {
+        return idle.size();
+    }
+
+    /**
+     * Get hit count
+     *
+     * @return Hit count
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get miss count
+     *
+     * @return Miss count
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    private static String getKey(String fileName, String iospClassName) {
+        return iospClassName == null ? fileName : fileName + "|" + iospClassName;
+    }
+
+    private static long[] getStamp(String fileName) {
+        File file = new File(fileName);
+        if (file.isFile()) {
+            return new long[]{file.lastModified(), file.length()};
+        } else {
+            return new long[]{0, 0};
+        }
+    }
+
+    private static Entry getEntry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Add a reference of a data info to a file
+     *
+     * @param fileName File path
+     * @param iospClassName IOSP class name, null for default
+     * @param owner The data info
+     */
+    public static synchronized void addReference(String fileName, String iospClassName, Object owner) {
+        Entry entry = getEntry(getKey(fileName, iospClassName));
+        if (!entry.hasOwner(owner)) {
+            entry.owners.add(new WeakReference<>(owner));
+        }
+    }
+
+    /**
+     * Remove a reference of a data info to a file
+     *
+     * @param fileName File path
+     * @param iospClassName IOSP class name, null for default
+     * @param owner The data info
+     */
+    public static void removeReference(String fileName, String iospClassName, Object owner) {
+        List<NetcdfFile> files;
+        synchronized (NetcdfFileCache.class) {
+            String key = getKey(fileName, iospClassName);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.removeOwner(owner);
+                if (!entry.isReferenced() && entry.handleNum == 0) {
+                    entries.remove(key);
+                }
+            }
+            files = evict(true);
+        }
+        close(files);
+    }
+
+    /**
+     * Get a handle of a file. An idle handle is used if there is one,
+     * otherwise the file is opened.
+     *
+     * @param fileName File path
+     * @param iospClassName IOSP class name, null for default
+     * @return Netcdf file
+     * @throws IOException
+     */
+    public static NetcdfFile acquire(String fileName, String iospClassName) throws IOException {
+        String key = getKey(fileName, iospClassName);
+        long[] stamp = getStamp(fileName);
+        List<NetcdfFile> stale = new ArrayList<>();
+        NetcdfFile nf = null;
+        synchronized (NetcdfFileCache.class) {
+            Iterator<Map.Entry<NetcdfFile, Handle>> it = idle.entrySet().iterator();
+            while (it.hasNext()) {
+                Handle h = it.next().getValue();
+                if (h.key.equals(key)) {
+                    it.remove();
+                    if (h.isStale(stamp)) {
+                        stale.add(h.file);
+                        removeHandle(h);
+                    } else {
+                        nf = h.file;
+                        inUse.put(nf, h);
+                        break;
+                    }
+                }
+            }
+            if (nf != null) {
+                hitCount += 1;
+            } else {
+                missCount += 1;
+            }
+        }
+        //Close the stale handles out of the lock
+        close(stale);
+        if (nf != null) {
+            return nf;
+        }
+
+        //Open the file out of the lock, so other files are not blocked
+        if (iospClassName == null) {
+            nf = NetcdfDataset.openFile(fileName, null);
+        } else {
+            try {
+                nf = NetcdfFile.open(fileName, iospClassName, 0, null, null);
+            } catch (ClassNotFoundException | IllegalAccessException | InstantiationException ex) {
+                throw new IOException(ex);
+            }
+        }
+        synchronized (NetcdfFileCache.class) {
+            Handle h = new Handle(key, fileName, nf, stamp);
+            inUse.put(nf, h);
+            getEntry(key).handleNum += 1;
+            openNum += 1;
+        }
+
+        return nf;
+    }
+
+    /**
+     * Give back a handle got by acquire(). A file which is not got from the
+     * cache is closed.
+     *
+     * @param nf Netcdf file
+     */
+    public static void release(NetcdfFile nf) {
+        if (nf == null) {
+            return;
+        }
+
+        boolean close = false;
+        List<NetcdfFile> files = null;
+        synchronized (NetcdfFileCache.class) {
+            Handle h = inUse.remove(nf);
+            if (h == null) {
+                close = true;
+            } else if (maxOpen == 0 || h.isStale(getStamp(h.fileName))) {
+                removeHandle(h);
+                close = true;
+            } else {
+                h.time = System.currentTimeMillis();
+                idle.put(nf, h);
+                files = evict(false);
+                startTimer();
+            }
+        }
+        if (close) {
+            close(nf);
+        }
+        if (files != null) {
+            close(files);
+        }
+    }
+
+    /**
+     * Close all idle handles. The handles in use are closed when they are
+     * released.
+     */
+    public static void clear() {
+        List<NetcdfFile> files = new ArrayList<>();
+        synchronized (NetcdfFileCache.class) {
+            for (Handle h : idle.values()) {
+                files.add(h.file);
+                removeHandle(h);
+            }
+            idle.clear();
+        }
+        close(files);
+    }
+
+    private static void removeHandle(Handle h) {
+        openNum -= 1;
+        Entry entry = entries.get(h.key);
+        if (entry != null) {
+            entry.handleNum -= 1;
+            if (entry.handleNum == 0 && !entry.isReferenced()) {
+                entries.remove(h.key);
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently released idle handles beyond the maximum
+     * opened number, and the idle handles of unreferenced files timed out.
+     * The removed handles are closed by the caller out of the lock.
+     *
+     * @param timeout Check idle timeout or not
+     * @return The removed handles
+     */
+    private static List<NetcdfFile> evict(boolean timeout) {
+        List<NetcdfFile> files = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<Handle> it = idle.values().iterator();
+        while (it.hasNext()) {
+            Handle h = it.next();
+            boolean remove = openNum > maxOpen;
+            if (!remove && timeout && idleTimeout > 0 && now - h.time >= idleTimeout) {
+                Entry entry = entries.get(h.key);
+                remove = entry == null || !entry.isReferenced();
+            }
+            if (remove) {
+                it.remove();
+                removeHandle(h);
+                files.add(h.file);
+            } else if (!timeout) {
+                break;
+            }
+        }
+        if (timeout) {
+            //Entries of the collected data infos without handles
+            Iterator<Entry> eit = entries.values().iterator();
+            while (eit.hasNext()) {
+                Entry entry = eit.next();
+                if (entry.handleNum == 0 && !entry.isReferenced()) {
+                    eit.remove();
+                }
+            }
+        }
+
+        return files;
+    }
+
+    private static void startTimer() {
+        if (timer == null && idleTimeout > 0) {
+            long period = Math.max(1000, idleTimeout / 2);
+            timer = new Timer("datasetjy-netcdf-cache", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    List<NetcdfFile> files;
+                    synchronized (NetcdfFileCache.class) {
+                        files = evict(true);
+                    }
+                    close(files);
+                }
+            }, period, period);
+        }
+    }
+
+    private static void close(List<NetcdfFile> files) {
+        for (NetcdfFile nf : files) {
+            close(nf);
+        }
+    }
+
+    private static void close(NetcdfFile nf) {
+        try {
+            nf.close();
+        } catch (IOException ex) {
+            Logger.getLogger(NetcdfFileCache.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    // </editor-fold>
+
+    private static class Entry {
+
+        final List<WeakReference<Object>> owners = new ArrayList<>();
+        int handleNum = 0;
+
+        boolean hasOwner(Object owner) {
+            for (WeakReference<Object> ref : owners) {
+                if (ref.get() == owner) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void removeOwner(Object owner) {
+            Iterator<WeakReference<Object>> it = owners.iterator();
+            while (it.hasNext()) {
+                Object o = it.next().get();
+                if (o == null || o == owner) {
+                    it.remove();
+                }
+            }
+        }
+
+        boolean isReferenced() {
+            removeOwner(null);
+            return !owners.isEmpty();
+        }
+    }
+
+    private static class Handle {
+
+        final String key;
+        final String fileName;
+        final NetcdfFile file;
+        final long[] stamp;
+        long time;
+
+        Handle(String key, String fileName, NetcdfFile file, long[] stamp) {
+            this.key = key;
+            this.fileName = fileName;
+            this.file = file;
+            this.stamp = stamp;
+        }
+
+        boolean isStale(long[] current) {
+            return stamp[0] != current[0] || stamp[1] != current[1];
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.meteodata.netcdf;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DataType;
+import org.meteothink.ndarray.IndexIterator;
+
+/**
+ * Packing attributes of a netCDF variable (scale_factor, add_offset,
+ * _FillValue, missing_value, valid_min, valid_max, valid_range and
+ * _Unsigned) and single pass unpacking. The packed values equal to the fill
+ * or missing values or out of the valid range are unpacked to a fill value
+ * (NaN by default), the fill, missing and valid values of an _Unsigned
+ * variable are unsigned as its packed values. The unpacked data type is
+ * float if the scale_factor (or add_offset) attribute is float, otherwise
+ * double.
+ *
+ * @author Yaqiang Wang
+ */
+public class PackInfo {
+
+    // <editor-fold desc="Variables">
+    private double scaleFactor = 1;
+    private double addOffset = 0;
+    private boolean packed = false;
+    private boolean floatType = false;
+    private boolean unsigned = false;
+    private double[] missingValues = new double[0];
+    private double validMin = Double.NEGATIVE_INFINITY;
+    private double validMax = Double.POSITIVE_INFINITY;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param var Netcdf variable
+     */
+    public PackInfo(ucar.nc2.Variable var) {
+        boolean floatScale = true;
+        boolean floatOffset = true;
+        List<Double> mvs = new ArrayList<>();
+        for (ucar.nc2.Attribute att : var.getAttributes()) {
+            String attName = att.getShortName();
+            switch (attName) {
+                case "scale_factor":
+                    scaleFactor = getDouble(att, 0, scaleFactor);
+                    packed = true;
+                    floatScale = att.getDataType() == ucar.ma2.DataType.FLOAT;
+                    break;
+                case "add_offset":
+                    addOffset = getDouble(att, 0, addOffset);
+                    packed = true;
+                    floatOffset = att.getDataType() == ucar.ma2.DataType.FLOAT;
+                    break;
+                case "_FillValue":
+                case "missing_value":
+                    for (int i = 0; i < att.getLength(); i++) {
+                        double v = getDouble(att, i, Double.NaN);
+                        if (!Double.isNaN(v)) {
+                            mvs.add(v);
+                        }
+                    }
+                    break;
+                case "valid_min":
+                    validMin = getDouble(att, 0, validMin);
+                    break;
+                case "valid_max":
+                    validMax = getDouble(att, 0, validMax);
+                    break;
+                case "valid_range":
+                    if (att.getLength() >= 2) {
+                        validMin = getDouble(att, 0, validMin);
+                        validMax = getDouble(att, 1, validMax);
+                    }
+                    break;
+                case "_Unsigned":
+                    unsigned = "true".equalsIgnoreCase(att.getStringValue());
+                    break;
+            }
+        }
+        if (scaleFactor == 1 && addOffset == 0) {
+            packed = false;
+        }
+        //The fill, missing and valid values are unsigned as the packed values
+        if (unsigned) {
+            double range = getUnsignedRange(var.getDataType());
+            for (int i = 0; i < mvs.size(); i++) {
+                mvs.set(i, toUnsigned(mvs.get(i), range));
+            }
+            validMin = toUnsigned(validMin, range);
+            validMax = toUnsigned(validMax, range);
+        }
+        floatType = floatScale && floatOffset;
+        missingValues = new double[mvs.size()];
+        for (int i = 0; i < mvs.size(); i++) {
+            missingValues[i] = mvs.get(i);
+        }
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the variable is packed by scale_factor or add_offset
+     *
+     * @return Boolean
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Get scale factor
+     *
+     * @return Scale factor
+     */
+    public double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * Get add offset
+     *
+     * @return Add offset
+     */
+    public double getAddOffset() {
+        return addOffset;
+    }
+
+    /**
+     * Get unpacked data type
+     *
+     * @return Data type - FLOAT or DOUBLE
+     */
+    public DataType getUnpackedDataType() {
+        return floatType ? DataType.FLOAT : DataType.DOUBLE;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    private static double getDouble(ucar.nc2.Attribute att, int idx, double defaultValue) {
+        try {
+            return Double.parseDouble(att.getValue(idx).toString());
+        } catch (NumberFormatException | NullPointerException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double getUnsignedRange(ucar.ma2.DataType dataType) {
+        switch (dataType) {
+            case BYTE:
+                return 256.0;
+            case SHORT:
+                return 65536.0;
+            case INT:
+                return 4294967296.0;
+            default:
+                return 0;
+        }
+    }
+
+    private static double toUnsigned(double v, double range) {
+        return v < 0 && !Double.isInfinite(v) ? v + range : v;
+    }
+
+    /**
+     * Unpack the data array to a new array
+     *
+     * @param a Packed data array
+     * @param fill Fill value of the missing data
+     * @return Unpacked data array
+     */
+    public Array unpack(Array a, double fill) {
+        Array r = Array.factory(this.getUnpackedDataType(), a.getShape());
+        unpack(a, r.getStorage(), 0, fill);
+        return r;
+    }
+
+    /**
+     * Unpack the data array to a destination storage. The storage of the
+     * data array is read directly if its length is the array size, so a
+     * flipped or permuted view should be copied first.
+     *
+     * @param a Packed data array
+     * @param dest Destination storage - float[] or double[]
+     * @param destPos Start position of the destination storage
+     * @param fill Fill value of the missing data
+     */
+    public void unpack(Array a, Object dest, int destPos, double fill) {
+        Output out = new Output(dest, fill);
+        int n = (int) a.getSize();
+        Object src = a.getStorage();
+        boolean contiguous = src != null && src.getClass().isArray()
+                && java.lang.reflect.Array.getLength(src) == n;
+        if (contiguous && src instanceof short[]) {
+            short[] s = (short[]) src;
+            for (int i = 0; i < n; i++) {
+                out.set(destPos + i, unsigned ? s[i] & 0xffff : s[i]);
+            }
+        } else if (contiguous && src instanceof byte[]) {
+            byte[] s = (byte[]) src;
+            for (int i = 0; i < n; i++) {
+                out.set(destPos + i, unsigned ? s[i] & 0xff : s[i]);
+            }
+        } else if (contiguous && src instanceof int[]) {
+            int[] s = (int[]) src;
+            for (int i = 0; i < n; i++) {
+                out.set(destPos + i, unsigned ? s[i] & 0xffffffffL : s[i]);
+            }
+        } else if (contiguous && src instanceof float[]) {
+            float[] s = (float[]) src;
+            for (int i = 0; i < n; i++) {
+                out.set(destPos + i, s[i]);
+            }
+        } else if (contiguous && src instanceof double[]) {
+            double[] s = (double[]) src;
+            for (int i = 0; i < n; i++) {
+                out.set(destPos + i, s[i]);
+            }
+        } else {
+            IndexIterator ii = a.getIndexIterator();
+            int i = destPos;
+            while (ii.hasNext()) {
+                out.set(i++, ii.getDoubleNext());
+            }
+        }
+    }
+
+    /**
+     * Get if a packed value is missing
+     *
+     * @param v Packed value
+     * @return Boolean
+     */
+    public boolean isMissing(double v) {
+        if (Double.isNaN(v) || v < validMin || v > validMax) {
+            return true;
+        }
+        for (double mv : missingValues) {
+            if (v == mv) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+    // </editor-fold>
+
+    private class Output {
+
+        final float[] fdata;
+        final double[] ddata;
+        final double fill;
+
+        Output(Object dest, double fill) {
+            this.fdata = dest instanceof float[] ? (float[]) dest : null;
+            this.ddata = dest instanceof double[] ? (double[]) dest : null;
+            if (fdata == null && ddata == null) {
+                throw new IllegalArgumentException("Destination must be float[] or double[]");
+            }
+            this.fill = fill;
+        }
+
+        void set(int idx, double v) {
+            double r = isMissing(v) ? fill : v * scaleFactor + addOffset;
+            if (fdata != null) {
+                fdata[idx] = (float) r;
+            } else {
+                ddata[idx] = r;
+            }
+        }
+    }
+}
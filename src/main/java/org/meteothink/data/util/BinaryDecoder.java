@@ -0,0 +1,198 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.util;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import org.meteothink.ndarray.Range;
+
+/**
+ * Decode binary records to primitive arrays in bulk through ordered buffer
+ * views, without creating temporary byte arrays for each value.
+ *
+ * @author Yaqiang Wang
+ */
+public class BinaryDecoder {
+
+    /**
+     * Decode float values
+     *
+     * @param bytes Byte array
+     * @param offset Start byte offset
+     * @param order Byte order
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @param n Value number
+     */
+    public static void readFloat(byte[] bytes, int offset, ByteOrder order, float[] dest, int destPos, int n) {
+        ByteBuffer.wrap(bytes, offset, n * 4).order(order).asFloatBuffer().get(dest, destPos, n);
+    }
+
+    /**
+     * Decode all bytes to float values
+     *
+     * @param bytes Byte array
+     * @param order Byte order
+     * @return Float values
+     */
+    public static float[] readFloat(byte[] bytes, ByteOrder order) {
+        int n = bytes.length / 4;
+        float[] data = new float[n];
+        readFloat(bytes, 0, order, data, 0, n);
+        return data;
+    }
+
+    /**
+     * Decode int values of 4 bytes
+     *
+     * @param bytes Byte array
+     * @param offset Start byte offset
+     * @param order Byte order
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @param n Value number
+     */
+    public static void readInt(byte[] bytes, int offset, ByteOrder order, int[] dest, int destPos, int n) {
+        ByteBuffer.wrap(bytes, offset, n * 4).order(order).asIntBuffer().get(dest, destPos, n);
+    }
+
+    /**
+     * Decode short values of 2 bytes to int values
+     *
+     * @param bytes Byte array
+     * @param offset Start byte offset
+     * @param order Byte order
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @param n Value number
+     */
+    public static void readShort(byte[] bytes, int offset, ByteOrder order, int[] dest, int destPos, int n) {
+        ShortBuffer sb = ByteBuffer.wrap(bytes, offset, n * 2).order(order).asShortBuffer();
+        for (int i = 0; i < n; i++) {
+            dest[destPos + i] = sb.get(i);
+        }
+    }
+
+    /**
+     * Decode a window of a row major float grid record
+     *
+     * @param buffer Byte buffer, the grid starts at the current position
+     * @param order Byte order
+     * @param xNum Column number of the grid
+     * @param yRange Row range
+     * @param xRange Column range
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @return Position of the destination array after the window
+     */
+    public static int readFloat(ByteBuffer buffer, ByteOrder order, int xNum, Range yRange, Range xRange,
+            float[] dest, int destPos) {
+        FloatBuffer fb = buffer.duplicate().order(order).asFloatBuffer();
+        int xFirst = xRange.first();
+        int xStride = xRange.stride();
+        int xLen = xRange.length();
+        for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
+            int idx = y * xNum + xFirst;
+            if (xStride == 1) {
+                ((Buffer) fb).position(idx);
+                fb.get(dest, destPos, xLen);
+                destPos += xLen;
+            } else {
+                for (int i = 0; i < xLen; i++) {
+                    dest[destPos++] = fb.get(idx);
+                    idx += xStride;
+                }
+            }
+        }
+
+        return destPos;
+    }
+
+    /**
+     * Decode a window of a row major int grid record
+     *
+     * @param buffer Byte buffer, the grid starts at the current position
+     * @param order Byte order
+     * @param nbytes Byte number of each value - 2 or 4
+     * @param xNum Column number of the grid
+     * @param yRange Row range
+     * @param xRange Column range
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @return Position of the destination array after the window
+     */
+    public static int readInt(ByteBuffer buffer, ByteOrder order, int nbytes, int xNum, Range yRange, Range xRange,
+            int[] dest, int destPos) {
+        ByteBuffer bb = buffer.duplicate().order(order);
+        IntBuffer ib = nbytes == 4 ? bb.asIntBuffer() : null;
+        ShortBuffer sb = nbytes == 2 ? bb.asShortBuffer() : null;
+        int xFirst = xRange.first();
+        int xStride = xRange.stride();
+        int xLen = xRange.length();
+        for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
+            int idx = y * xNum + xFirst;
+            if (ib != null && xStride == 1) {
+                ((Buffer) ib).position(idx);
+                ib.get(dest, destPos, xLen);
+                destPos += xLen;
+            } else {
+                for (int i = 0; i < xLen; i++) {
+                    dest[destPos++] = ib != null ? ib.get(idx) : sb.get(idx);
+                    idx += xStride;
+                }
+            }
+        }
+
+        return destPos;
+    }
+
+    /**
+     * Copy a window of a row major byte grid record
+     *
+     * @param buffer Byte buffer, the grid starts at the current position
+     * @param xNum Column number of the grid
+     * @param yRange Row range
+     * @param xRange Column range
+     * @param dest Destination array
+     * @param destPos Start position of the destination array
+     * @return Position of the destination array after the window
+     */
+    public static int readByte(ByteBuffer buffer, int xNum, Range yRange, Range xRange,
+            byte[] dest, int destPos) {
+        ByteBuffer bb = buffer.duplicate();
+        int start = bb.position();
+        int xFirst = xRange.first();
+        int xStride = xRange.stride();
+        int xLen = xRange.length();
+        for (int y = yRange.first(); y <= yRange.last(); y += yRange.stride()) {
+            int idx = start + y * xNum + xFirst;
+            if (xStride == 1) {
+                ((Buffer) bb).position(idx);
+                bb.get(dest, destPos, xLen);
+                destPos += xLen;
+            } else {
+                for (int i = 0; i < xLen; i++) {
+                    dest[destPos++] = bb.get(idx);
+                    idx += xStride;
+                }
+            }
+        }
+
+        return destPos;
+    }
+}
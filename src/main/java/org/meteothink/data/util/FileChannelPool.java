@@ -0,0 +1,291 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of read only file channels keyed by file path. The channels are kept
+ * opened between reads, the least recently used channel is closed when the
+ * maximum channel number is reached. In memory mapped mode the files are
+ * mapped once and the regions are got as buffer views.
+ *
+ * @author Yaqiang Wang
+ */
+public class FileChannelPool {
+
+    // <editor-fold desc="Variables">
+    private static int defaultMaxChannelNum = 64;
+    private int maxChannelNum = defaultMaxChannelNum;
+    private final Map<String, FileChannel> channels = new LinkedHashMap<String, FileChannel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileChannel> eldest) {
+            if (size() > maxChannelNum) {
+                closeChannel(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<String, MappedFile> mappedFiles = new LinkedHashMap<String, MappedFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappedFile> eldest) {
+            return size() > maxChannelNum;
+        }
+    };
+    private boolean memoryMapped = false;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     */
+    public FileChannelPool() {
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get opened channel number
+     *
+     * @return Opened channel number
+     */
+    public synchronized int getChannelNum() {
+        return channels.size();
+    }
+
+    /**
+     * Get default maximum opened channel number of the new pools
+     *
+     * @return Default maximum channel number
+     */
+    public static int getDefaultMaxChannelNum() {
+        return defaultMaxChannelNum;
+    }
+
+    /**
+     * Set default maximum opened channel number of the new pools
+     *
+     * @param value Default maximum channel number
+     */
+    public static void setDefaultMaxChannelNum(int value) {
+        defaultMaxChannelNum = Math.max(1, value);
+    }
+
+    /**
+     * Get maximum opened channel number
+     *
+     * @return Maximum channel number
+     */
+    public synchronized int getMaxChannelNum() {
+        return maxChannelNum;
+    }
+
+    /**
+     * Set maximum opened channel number, the least recently used channels
+     * beyond it are closed
+     *
+     * @param value Maximum channel number
+     */
+    public synchronized void setMaxChannelNum(int value) {
+        maxChannelNum = Math.max(1, value);
+        trim(channels);
+        trim(mappedFiles);
+    }
+
+    /**
+     * Get if the files are read by memory mapping
+     *
+     * @return Boolean
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Set if the files are read by memory mapping
+     *
+     * @param value Boolean
+     */
+    public synchronized void setMemoryMapped(boolean value) {
+        memoryMapped = value;
+        if (!value) {
+            mappedFiles.clear();
+        }
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Get the channel of a file, the file will be opened if it is not in the
+     * pool
+     *
+     * @param fileName File path
+     * @return File channel
+     * @throws IOException
+     */
+    public synchronized FileChannel getChannel(String fileName) throws IOException {
+        String key = new File(fileName).getAbsolutePath();
+        FileChannel fc = channels.get(key);
+        if (fc == null || !fc.isOpen()) {
+            fc = new RandomAccessFile(key, "r").getChannel();
+            channels.put(key, fc);
+        }
+
+        return fc;
+    }
+
+    /**
+     * Get the memory mapping of a file, the file will be mapped if it is not
+     * in the pool
+     *
+     * @param fileName File path
+     * @return Mapped file
+     * @throws IOException
+     */
+    public synchronized MappedFile getMappedFile(String fileName) throws IOException {
+        String key = new File(fileName).getAbsolutePath();
+        MappedFile mf = mappedFiles.get(key);
+        if (mf == null) {
+            mf = new MappedFile(getChannel(key));
+            mappedFiles.put(key, mf);
+        }
+
+        return mf;
+    }
+
+    /**
+     * Get a byte buffer of a file region. A view of the mapped file is
+     * returned in memory mapped mode, otherwise the bytes are read to a heap
+     * buffer. The part beyond the end of file is filled with zero.
+     *
+     * @param fileName File path
+     * @param position Start position
+     * @param length Byte number
+     * @return Byte buffer with position 0 at the start of the region
+     * @throws IOException
+     */
+    public ByteBuffer getBuffer(String fileName, long position, int length) throws IOException {
+        if (memoryMapped) {
+            return getMappedFile(fileName).getBuffer(position, length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        read(fileName, position, buffer);
+        ((Buffer) buffer).rewind();
+        return buffer;
+    }
+
+    /**
+     * Read bytes from a position of a file. The read is done again with a new
+     * channel if the channel is closed by another thread meanwhile.
+     *
+     * @param fileName File path
+     * @param position Start position
+     * @param buffer Byte buffer to be filled
+     * @return Read byte number
+     * @throws IOException
+     */
+    public int read(String fileName, long position, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        try {
+            return read(getChannel(fileName), position, buffer);
+        } catch (ClosedChannelException ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw ex;
+            }
+            ((Buffer) buffer).position(start);
+            return read(getChannel(fileName), position, buffer);
+        }
+    }
+
+    /**
+     * Read bytes from a position of a file
+     *
+     * @param fileName File path
+     * @param position Start position
+     * @param bytes Byte array to be filled
+     * @return Read byte number
+     * @throws IOException
+     */
+    public int read(String fileName, long position, byte[] bytes) throws IOException {
+        return read(fileName, position, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Read bytes from a position of a channel until the buffer is full or the
+     * end of the file is reached. Positional read is used, so the channel can
+     * be shared by several threads.
+     *
+     * @param fc File channel
+     * @param position Start position
+     * @param buffer Byte buffer to be filled
+     * @return Read byte number
+     * @throws IOException
+     */
+    public static int read(FileChannel fc, long position, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = fc.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+
+        return total;
+    }
+
+    /**
+     * Close all opened channels
+     */
+    public synchronized void close() {
+        for (FileChannel fc : channels.values()) {
+            closeChannel(fc);
+        }
+        channels.clear();
+        mappedFiles.clear();
+    }
+
+    private void trim(Map<String, ?> map) {
+        Iterator<? extends Map.Entry<String, ?>> it = map.entrySet().iterator();
+        while (map.size() > maxChannelNum && it.hasNext()) {
+            Object v = it.next().getValue();
+            if (v instanceof FileChannel) {
+                closeChannel((FileChannel) v);
+            }
+            it.remove();
+        }
+    }
+
+    private static void closeChannel(FileChannel fc) {
+        try {
+            fc.close();
+        } catch (IOException ex) {
+            Logger.getLogger(FileChannelPool.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    // </editor-fold>
+}
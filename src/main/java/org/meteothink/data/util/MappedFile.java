@@ -0,0 +1,128 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.util;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only memory mapping of a whole file. Files larger than one chunk are
+ * mapped in several overlapped chunks, so a record which is not longer than
+ * the overlap is always inside one chunk and can be got without copy.
+ *
+ * @author Yaqiang Wang
+ */
+public class MappedFile {
+
+    // <editor-fold desc="Variables">
+    /**
+     * Default chunk size - 1 GB
+     */
+    public static final long CHUNK_SIZE = 1L << 30;
+    /**
+     * Default overlap size between chunks - 64 MB
+     */
+    public static final long OVERLAP_SIZE = 1L << 26;
+    private final long length;
+    private final long chunkSize;
+    private final MappedByteBuffer[] chunks;
+
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+    /**
+     * Constructor
+     *
+     * @param fc File channel
+     * @throws IOException
+     */
+    public MappedFile(FileChannel fc) throws IOException {
+        this(fc, CHUNK_SIZE, OVERLAP_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fc File channel
+     * @param chunkSize Chunk size
+     * @param overlap Overlap size between chunks
+     * @throws IOException
+     */
+    public MappedFile(FileChannel fc, long chunkSize, long overlap) throws IOException {
+        this.length = fc.size();
+        this.chunkSize = chunkSize;
+        int n = (int) ((length + chunkSize - 1) / chunkSize);
+        chunks = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long start = i * chunkSize;
+            long size = Math.min(chunkSize + overlap, length - start);
+            chunks[i] = fc.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get file length
+     *
+     * @return File length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Get a byte buffer of a file region. A view of the mapped chunk is
+     * returned if the region is inside one chunk, otherwise the bytes are
+     * copied to a heap buffer. The part beyond the end of file is filled with
+     * zero.
+     *
+     * @param position Start position
+     * @param size Byte number
+     * @return Byte buffer with position 0 at the start of the region
+     */
+    public ByteBuffer getBuffer(long position, int size) {
+        int idx = (int) (position / chunkSize);
+        if (idx < chunks.length) {
+            MappedByteBuffer chunk = chunks[idx];
+            int offset = (int) (position - idx * chunkSize);
+            if (offset + (long) size <= chunk.capacity()) {
+                ByteBuffer view = chunk.duplicate();
+                ((Buffer) view).position(offset);
+                ((Buffer) view).limit(offset + size);
+                return view.slice();
+            }
+        }
+
+        byte[] bytes = new byte[size];
+        int n = 0;
+        while (n < size && position + n < length) {
+            idx = (int) ((position + n) / chunkSize);
+            int offset = (int) (position + n - idx * chunkSize);
+            int len = (int) Math.min(size - n, chunkSize - offset);
+            len = (int) Math.min(len, length - position - n);
+            ByteBuffer view = chunks[idx].duplicate();
+            ((Buffer) view).position(offset);
+            view.get(bytes, n, len);
+            n += len;
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
+    // </editor-fold>
+}
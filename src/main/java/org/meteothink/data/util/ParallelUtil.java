@@ -0,0 +1,246 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run independent read tasks (such as the 2D slices of a multi-dimensional
+ * read) concurrently on a shared executor.
+ *
+ * @author Yaqiang Wang
+ */
+public class ParallelUtil {
+
+    // <editor-fold desc="Variables">
+    private static ExecutorService executor = null;
+    private static boolean parallel = true;
+    private static int threadNum = Runtime.getRuntime().availableProcessors();
+    private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the tasks are run in parallel
+     *
+     * @return Boolean
+     */
+    public static boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Set if the tasks are run in parallel
+     *
+     * @param value Boolean
+     */
+    public static void setParallel(boolean value) {
+        parallel = value;
+    }
+
+    /**
+     * Get thread number of the default executor
+     *
+     * @return Thread number
+     */
+    public static int getThreadNum() {
+        return threadNum;
+    }
+
+    /**
+     * Set thread number of the default executor. The current default executor
+     * is shut down and a new one will be created when it is needed.
+     *
+     * @param value Thread number
+     */
+    public static synchronized void setThreadNum(int value) {
+        threadNum = Math.max(1, value);
+        if (executor instanceof DefaultExecutor) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Get the executor. A fixed thread pool of daemon threads is created if
+     * the executor is not set.
+     *
+     * @return The executor
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = new DefaultExecutor(threadNum);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Set the executor
+     *
+     * @param value The executor, null to use the default executor
+     */
+    public static synchronized void setExecutor(ExecutorService value) {
+        if (executor instanceof DefaultExecutor && executor != value) {
+            executor.shutdown();
+        }
+        executor = value;
+    }
+
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+    /**
+     * Get if the current thread is running a task of the executor, a nested
+     * run of tasks is run in the current thread so the pool threads never
+     * wait for their own pool
+     *
+     * @return Boolean
+     */
+    public static boolean isInTask() {
+        return depth.get()[0] > 0;
+    }
+
+    /**
+     * Wrap a task so it is marked as running in the executor, the tasks
+     * submitted to the executor directly should be wrapped
+     *
+     * @param task The task
+     * @return Wrapped task
+     */
+    public static Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                int[] d = depth.get();
+                d[0] += 1;
+                try {
+                    task.run();
+                } finally {
+                    d[0] -= 1;
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a task so it is marked as running in the executor, the tasks
+     * submitted to the executor directly should be wrapped
+     *
+     * @param task The task
+     * @return Wrapped task
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                int[] d = depth.get();
+                d[0] += 1;
+                try {
+                    return task.call();
+                } finally {
+                    d[0] -= 1;
+                }
+            }
+        };
+    }
+
+    /**
+     * Run the tasks and wait until all of them are done. The tasks are run in
+     * the current thread if parallel is disabled, there is only one task or
+     * the current thread is running a task of the executor.
+     *
+     * @param tasks The tasks
+     * @throws CancellationException If the current thread is interrupted, the
+     * tasks not done are cancelled
+     */
+    public static void invokeAll(List<Runnable> tasks) {
+        if (!parallel || tasks.size() <= 1 || isInTask()) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        List<Callable<Object>> callables = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            callables.add(Executors.callable(wrap(task)));
+        }
+        List<Future<Object>> futures = null;
+        try {
+            futures = getExecutor().invokeAll(callables);
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            if (futures != null) {
+                for (Future<Object> future : futures) {
+                    future.cancel(true);
+                }
+            }
+            Thread.currentThread().interrupt();
+            CancellationException ce = new CancellationException("The tasks are interrupted");
+            ce.initCause(ex);
+            throw ce;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+    // </editor-fold>
+
+    private static class WorkerThread extends Thread {
+
+        WorkerThread(Runnable r, String name) {
+            super(r, name);
+            this.setDaemon(true);
+        }
+    }
+
+    private static class DefaultExecutor extends ThreadPoolExecutor {
+
+        DefaultExecutor(int n) {
+            super(n, n, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new WorkerThread(r, "datasetjy-read-" + count.incrementAndGet());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.mapdata.geotiff;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.meteothink.ndarray.Array;
+import org.meteothink.ndarray.DataType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trip tests of GeoTiffWriter and GeoTiff
+ *
+ * @author Yaqiang Wang
+ */
+public class GeoTiffWriterTest {
+
+    private static final DataType[] DATA_TYPES = {DataType.BYTE, DataType.SHORT, DataType.INT,
+        DataType.FLOAT, DataType.DOUBLE};
+    private static final int[] COMPRESSIONS = {GeoTiffWriter.COMPRESSION_NONE,
+        GeoTiffWriter.COMPRESSION_LZW, GeoTiffWriter.COMPRESSION_DEFLATE};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static double value(int row, int col, int band, DataType dataType) {
+        switch (dataType) {
+            case BYTE:
+                return (row * 7 + col * 3 + band * 11) % 256;
+            case SHORT:
+                return (row * 37 - col * 13 + band * 5) % 30000;
+            case INT:
+                return row * 100003L % 2000000 - col * 7 + band;
+            case FLOAT:
+                return (float) (row * 10.5 + col * 0.25 - band * 3 + Math.sin(row * col));
+            default:
+                return row * 10.5 + col * 0.25 - band * 3 + Math.sin(row * col);
+        }
+    }
+
+    private static Array createData(int width, int height, int bandNum, DataType dataType) {
+        int[] shape = bandNum == 1 ? new int[]{height, width} : new int[]{height, width, bandNum};
+        Array a = Array.factory(DataType.DOUBLE, shape);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                for (int b = 0; b < bandNum; b++) {
+                    a.setDouble((i * width + j) * bandNum + b, value(i, j, b, dataType));
+                }
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Check the data read from a file, the rows are read from bottom to top
+     */
+    private static void checkData(String msg, Array r, int width, int height, int bandNum,
+            DataType dataType) {
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                for (int b = 0; b < bandNum; b++) {
+                    assertEquals(msg + " at " + i + "," + j + "," + b,
+                            value(height - 1 - i, j, b, dataType),
+                            r.getDouble((i * width + j) * bandNum + b), 0);
+                }
+            }
+        }
+    }
+
+    private static int readVersion(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            boolean little = raf.read() == 'I';
+            raf.read();
+            int a = raf.read();
+            int b = raf.read();
+            return little ? a | b << 8 : a << 8 | b;
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        int n = 0;
+        for (DataType dataType : DATA_TYPES) {
+            for (int compression : COMPRESSIONS) {
+                for (boolean predictor : new boolean[]{false, true}) {
+                    n += 1;
+                    int width = 70 + n;
+                    int height = 41 + n % 7;
+                    int bandNum = n % 2 == 0 ? 1 : 3;
+                    String msg = dataType + " compression " + compression + " predictor " + predictor;
+                    File file = folder.newFile("rt" + n + ".tif");
+                    GeoTiffWriter w = new GeoTiffWriter(file.getPath(), width, height, bandNum, dataType);
+                    w.setTileSize(32, 16);
+                    w.setCompression(compression);
+                    w.setPredictor(predictor);
+                    if (n % 4 == 0) {
+                        w.setByteOrder(ByteOrder.BIG_ENDIAN);
+                    }
+                    w.setTransform(100, 50, 0.1, 0.1);
+                    w.setGeographic();
+                    //Write the rows in blocks not aligned with the tiles
+                    Array data = createData(width, height, bandNum, dataType);
+                    int row = 0;
+                    while (row < height) {
+                        int rows = Math.min(height - row, 1 + (row * 7) % 13);
+                        int[] shape = bandNum == 1 ? new int[]{rows, width} : new int[]{rows, width, bandNum};
+                        Array block = Array.factory(DataType.DOUBLE, shape);
+                        int size = rows * width * bandNum;
+                        for (int k = 0; k < size; k++) {
+                            block.setDouble(k, data.getDouble(row * width * bandNum + k));
+                        }
+                        w.writeRows(block);
+                        row += rows;
+                    }
+                    w.close();
+
+                    GeoTiff g = new GeoTiff(file.getPath());
+                    try {
+                        g.read();
+                        checkData(msg, g.readArray(), width, height, bandNum, dataType);
+                        List<double[]> xy = g.readXY();
+                        assertEquals(msg, 100, xy.get(0)[0], 1e-9);
+                        assertEquals(msg, 50, xy.get(1)[height - 1], 1e-9);
+                    } finally {
+                        g.close();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTiles() throws IOException {
+        int width = 75, height = 40, bandNum = 2;
+        File file = folder.newFile("tiles.tif");
+        GeoTiffWriter w = new GeoTiffWriter(file.getPath(), width, height, bandNum, DataType.SHORT);
+        w.setTileSize(32, 16);
+        w.setCompression(GeoTiffWriter.COMPRESSION_LZW);
+        for (int tr = 0; tr < (height + 15) / 16; tr++) {
+            for (int tc = 0; tc < (width + 31) / 32; tc++) {
+                int rows = Math.min(16, height - tr * 16);
+                int cols = Math.min(32, width - tc * 32);
+                Array tile = Array.factory(DataType.DOUBLE, new int[]{rows, cols, bandNum});
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < cols; j++) {
+                        for (int b = 0; b < bandNum; b++) {
+                            tile.setDouble((i * cols + j) * bandNum + b,
+                                    value(tr * 16 + i, tc * 32 + j, b, DataType.SHORT));
+                        }
+                    }
+                }
+                w.writeTile(tr, tc, tile);
+            }
+        }
+        w.close();
+
+        GeoTiff g = new GeoTiff(file.getPath());
+        try {
+            g.read();
+            checkData("tiles", g.readArray(), width, height, bandNum, DataType.SHORT);
+        } finally {
+            g.close();
+        }
+    }
+
+    @Test
+    public void testBigTIFF() throws IOException {
+        for (DataType dataType : DATA_TYPES) {
+            int width = 40, height = 20, bandNum = 5;
+            File file = folder.newFile("big_" + dataType + ".tif");
+            GeoTiffWriter w = new GeoTiffWriter(file.getPath(), width, height, bandNum, dataType);
+            w.setTileSize(16, 16);
+            w.setBigTIFF(true);
+            w.setNoData(-99);
+            w.writeRows(createData(width, height, bandNum, dataType));
+            w.close();
+            assertEquals(43, readVersion(file));
+
+            GeoTiff g = new GeoTiff(file.getPath());
+            try {
+                g.read();
+                checkData("BigTIFF " + dataType, g.readArray(), width, height, bandNum, dataType);
+            } finally {
+                g.close();
+            }
+        }
+
+        File file = folder.newFile("classic.tif");
+        GeoTiffWriter w = new GeoTiffWriter(file.getPath(), 10, 10, 1, DataType.BYTE);
+        w.writeRows(createData(10, 10, 1, DataType.BYTE));
+        w.close();
+        assertEquals(42, readVersion(file));
+    }
+
+    @Test
+    public void testOverviews() throws IOException {
+        int width = 150, height = 90;
+        File file = folder.newFile("ov.tif");
+        GeoTiffWriter w = new GeoTiffWriter(file.getPath(), width, height, 1, DataType.INT);
+        w.setTileSize(32, 16);
+        w.setOverviewNum(3);
+        w.setResampling(Resampling.NEAREST);
+        w.writeRows(createData(width, height, 1, DataType.INT));
+        w.close();
+
+        GeoTiff g = new GeoTiff(file.getPath());
+        try {
+            g.read();
+            assertEquals(3, g.getOverviewNum());
+            for (int k = 1; k <= 3; k++) {
+                int s = 1 << k;
+                assertEquals(k - 1, g.selectOverview(s, s));
+                //The nearest pixel of an overview is the top left pixel of
+                //the 2^k block of the full resolution image
+                int ow = width, oh = height;
+                for (int i = 0; i < k; i++) {
+                    ow = (ow + 1) / 2;
+                    oh = (oh + 1) / 2;
+                }
+                g.setOverviewRead(true);
+                Array r = g.readArray(new int[]{0, 0}, new int[]{height, width}, new int[]{s, s});
+                int ny = (height - 1) / s + 1, nx = (width - 1) / s + 1;
+                for (int i = 0; i < ny; i++) {
+                    int oy = Math.min(oh - 1, (int) ((height - 1 - i * s) / ((double) height / oh)));
+                    for (int j = 0; j < nx; j++) {
+                        int ox = Math.min(ow - 1, (int) (j * s / ((double) width / ow)));
+                        assertEquals("overview " + k + " at " + i + "," + j,
+                                value(oy * s, ox * s, 0, DataType.INT), r.getDouble(i * nx + j), 0);
+                    }
+                }
+            }
+            g.setOverviewRead(false);
+            checkData("full resolution", g.readArray(), width, height, 1, DataType.INT);
+        } finally {
+            g.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        File file = folder.newFile("close.tif");
+        GeoTiffWriter w = new GeoTiffWriter(file.getPath(), 10, 10, 1, DataType.FLOAT);
+        w.writeRows(createData(10, 10, 1, DataType.FLOAT));
+        w.close();
+        long length = file.length();
+        w.close();
+        assertEquals(length, file.length());
+
+        //The rows not written are left empty, but can not be written later
+        File pfile = folder.newFile("partial.tif");
+        GeoTiffWriter pw = new GeoTiffWriter(pfile.getPath(), 10, 10, 1, DataType.FLOAT);
+        pw.writeRows(createData(10, 5, 1, DataType.FLOAT));
+        pw.close();
+        try {
+            pw.writeRows(createData(10, 1, 1, DataType.FLOAT));
+            fail("Writing after close should fail");
+        } catch (IOException ex) {
+        }
+
+        GeoTiff g = new GeoTiff(file.getPath());
+        try {
+            g.read();
+            checkData("close", g.readArray(), 10, 10, 1, DataType.FLOAT);
+        } finally {
+            g.close();
+        }
+    }
+}
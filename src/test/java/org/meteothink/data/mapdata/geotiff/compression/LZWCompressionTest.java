@@ -0,0 +1,86 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteothink.data.mapdata.geotiff.compression;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the LZW codec
+ *
+ * @author Yaqiang Wang
+ */
+public class LZWCompressionTest {
+
+    private static byte[] createData(Random rnd, int n, int mode) {
+        byte[] d = new byte[n];
+        for (int i = 0; i < n; i++) {
+            switch (mode) {
+                case 0:
+                    d[i] = (byte) rnd.nextInt(256);
+                    break;
+                case 1:
+                    d[i] = (byte) rnd.nextInt(3);
+                    break;
+                case 2:
+                    d[i] = (byte) ((i / 7) % 256);
+                    break;
+                default:
+                    d[i] = (byte) (i % 13 == 0 ? rnd.nextInt(256) : 5);
+                    break;
+            }
+        }
+        return d;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random rnd = new Random(1);
+        for (int t = 0; t < 200; t++) {
+            //Small sizes, sizes past the 9 to 12 bit code widths and sizes
+            //past the table reset
+            int n = t < 10 ? t : rnd.nextInt(t < 150 ? 3000 : 200000);
+            byte[] d = createData(rnd, n, t % 4);
+            byte[] e = new LZWCompression().encode(d, ByteOrder.BIG_ENDIAN);
+            String msg = "size " + n + " mode " + t % 4;
+            assertArrayEquals(msg, d, new LZWCompression().decode(e, ByteOrder.BIG_ENDIAN));
+            assertArrayEquals(msg, d, new LZWCompression(n).decode(e, ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    @Test
+    public void testRepeated() {
+        byte[] d = new byte[1 << 20];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = (byte) ((i / 3) % 50);
+        }
+        byte[] e = new LZWCompression().encode(d, ByteOrder.BIG_ENDIAN);
+        assertTrue(e.length < d.length / 4);
+        assertArrayEquals(d, new LZWCompression(d.length).decode(e, ByteOrder.BIG_ENDIAN));
+    }
+
+    @Test
+    public void testKnownCodes() {
+        //Clear code, "A", "B", "AB" (code 258), "A", end of information, as
+        //9 bit codes: 256, 65, 66, 258, 65, 257
+        byte[] e = {(byte) 0x80, (byte) 0x10, (byte) 0x48, (byte) 0x50, (byte) 0x22,
+            (byte) 0x0c, (byte) 0x04};
+        byte[] d = {'A', 'B', 'A', 'B', 'A'};
+        assertArrayEquals(d, new LZWCompression().decode(e, ByteOrder.BIG_ENDIAN));
+        assertArrayEquals(d, new LZWCompression(d.length).decode(e, ByteOrder.BIG_ENDIAN));
+    }
+}